@@ -29,6 +29,31 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        unitTests {
+            // Resources for Robolectric
+            isIncludeAndroidResources = true
+            all { test ->
+                if (project.hasProperty("benchmark")) {
+                    // ./gradlew :app:testDebugUnitTest -Pbenchmark [-Pbenchmark.rows=1000,100000]
+                    test.filter.includeTestsMatching("*Benchmark")
+                    test.maxHeapSize = "4g"
+                    test.systemProperty(
+                        "benchmark.rows",
+                        project.findProperty("benchmark.rows") ?: "1000,100000,1000000"
+                    )
+                    test.systemProperty(
+                        "benchmark.output",
+                        layout.buildDirectory.file("reports/benchmark/database-helper.json").get().asFile.path
+                    )
+                    test.testLogging.showStandardStreams = true
+                    test.outputs.upToDateWhen { false }
+                } else {
+                    test.exclude("**/*Benchmark*")
+                }
+            }
+        }
+    }
 }
 
 dependencies {
@@ -37,7 +62,9 @@ dependencies {
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
+    implementation(libs.recyclerview)
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.example.financemanager;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Transaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Stress test checking that account balances stay exact when several threads add,
+ * update and delete transactions on the same accounts at the same time.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BalanceConcurrencyTest {
+
+    private static final String DATABASE_NAME = "balance_concurrency_test.db";
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 250;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private int[] accountIds;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new DatabaseHelper(context, DATABASE_NAME);
+        accountIds = new int[] {
+                (int) dbHelper.addAccount(new Account("Wallet", 10_000, "Cash", "USD", "")),
+                (int) dbHelper.addAccount(new Account("Bank", 0, "Checking", "USD", ""))
+        };
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void concurrentWritersKeepBalancesExact() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final long[][] expectedDeltas = new long[THREADS][accountIds.length];
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    runWriter(thread, expectedDeltas[thread]);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+
+        long[] openingBalances = { 10_000, 0 };
+        for (int a = 0; a < accountIds.length; a++) {
+            long expected = openingBalances[a];
+            for (int t = 0; t < THREADS; t++) {
+                expected += expectedDeltas[t][a];
+            }
+            long stored = dbHelper.getAccount(accountIds[a]).getBalanceMinor();
+            long fromRows = openingBalances[a] + dbHelper.getTotalIncome(accountIds[a])
+                    - dbHelper.getTotalExpense(accountIds[a]);
+
+            assertEquals(expected, stored);
+            assertEquals(fromRows, stored);
+        }
+    }
+
+    /**
+     * Add a transaction, then update it (sometimes moving it to the other account),
+     * then delete every third one, recording the net balance effect per account
+     */
+    private void runWriter(int thread, long[] deltas) {
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            int account = (thread + i) % accountIds.length;
+            boolean income = i % 2 == 0;
+            long amount = 25 * (1 + (i % 7));
+
+            Transaction transaction = new Transaction(amount, income ? "INCOME" : "EXPENSE", "Stress",
+                    "thread " + thread, System.currentTimeMillis(), accountIds[account], null);
+            transaction.setId((int) dbHelper.addTransaction(transaction));
+
+            // Update amount, and move every fourth transaction to the other account
+            int newAccount = i % 4 == 0 ? 1 - account : account;
+            long newAmount = amount + 50;
+            transaction.setAmountMinor(newAmount);
+            transaction.setAccountId(accountIds[newAccount]);
+            assertEquals(1, dbHelper.updateTransaction(transaction));
+
+            if (i % 3 == 0) {
+                assertEquals(1, dbHelper.deleteTransaction(transaction.getId()));
+            } else {
+                deltas[newAccount] += income ? newAmount : -newAmount;
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.financemanager;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.financemanager.data.ConnectionProfile;
+import com.example.financemanager.data.DateRange;
+import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Transaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares read and write throughput of the default rollback-journal connection with the
+ * tuned WAL profile, while report readers and a writer run against the same database file
+ * at the same time. Results are written to logcat under the ConnectionProfileBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConnectionProfileBenchmark {
+
+    private static final String TAG = "ConnectionProfileBenchmark";
+    private static final String DATABASE_NAME = "connection_profile_benchmark.db";
+    private static final int SEED_ROWS = 20_000;
+    private static final int ACCOUNT_COUNT = 5;
+    private static final int READER_THREADS = 3;
+    private static final long DURATION_MILLIS = 5_000;
+    private static final String[] CATEGORIES = { "Food", "Rent", "Transport", "Salary", "Utilities", "Leisure" };
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void mixedLoadThroughput() throws Exception {
+        String defaults = measure(ConnectionProfile.defaults());
+        context.deleteDatabase(DATABASE_NAME);
+        String tuned = measure(ConnectionProfile.tuned());
+
+        Log.i(TAG, "defaults: " + defaults);
+        Log.i(TAG, "tuned: " + tuned);
+    }
+
+    private String measure(ConnectionProfile profile) throws Exception {
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DATABASE_NAME, profile);
+        try {
+            int[] accountIds = seed(dbHelper);
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final AtomicLong reads = new AtomicLong();
+            final AtomicLong writes = new AtomicLong();
+            final AtomicLong worstWriteMicros = new AtomicLong();
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+            List<Thread> threads = new ArrayList<>();
+            for (int r = 0; r < READER_THREADS; r++) {
+                final int accountId = accountIds[r % accountIds.length];
+                threads.add(new Thread(() -> {
+                    try {
+                        start.await();
+                        // A range off day boundaries scans transactions rather than the rollups
+                        long now = System.currentTimeMillis();
+                        DateRange range = new DateRange(now - 400L * 24 * 60 * 60 * 1000 + 1, now);
+                        while (running.get()) {
+                            dbHelper.getReportSnapshot(accountId, range);
+                            dbHelper.getTransactionsPage(DatabaseHelper.ALL_ACCOUNTS, null, 50);
+                            reads.incrementAndGet();
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }));
+            }
+            threads.add(new Thread(() -> {
+                Random random = new Random(7);
+                try {
+                    start.await();
+                    while (running.get()) {
+                        long begin = SystemClock.elapsedRealtimeNanos();
+                        dbHelper.addTransaction(randomTransaction(random, accountIds));
+                        long micros = (SystemClock.elapsedRealtimeNanos() - begin) / 1000;
+                        worstWriteMicros.accumulateAndGet(micros, Math::max);
+                        writes.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            start.countDown();
+            Thread.sleep(DURATION_MILLIS);
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertNull(String.valueOf(failure.get()), failure.get());
+            assertTrue(reads.get() > 0 && writes.get() > 0);
+
+            long seconds = DURATION_MILLIS / 1000;
+            return "reads/s=" + reads.get() / seconds
+                    + " writes/s=" + writes.get() / seconds
+                    + " worstWriteMicros=" + worstWriteMicros.get();
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    private int[] seed(DatabaseHelper dbHelper) {
+        int[] accountIds = new int[ACCOUNT_COUNT];
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            accountIds[i] = (int) dbHelper.addAccount(new Account("Account " + i, 0, "Checking", "USD", ""));
+        }
+
+        Random random = new Random(42);
+        List<Transaction> batch = new ArrayList<>(SEED_ROWS);
+        for (int i = 0; i < SEED_ROWS; i++) {
+            batch.add(randomTransaction(random, accountIds));
+        }
+        dbHelper.addTransactions(batch);
+        return accountIds;
+    }
+
+    private static Transaction randomTransaction(Random random, int[] accountIds) {
+        long twoYears = 2L * 365 * 24 * 60 * 60 * 1000;
+        boolean income = random.nextInt(5) == 0;
+        return new Transaction(
+                100 + random.nextInt(100_000),
+                income ? "INCOME" : "EXPENSE",
+                CATEGORIES[random.nextInt(CATEGORIES.length)],
+                "Benchmark row",
+                System.currentTimeMillis() - (long) (random.nextDouble() * twoYears),
+                accountIds[random.nextInt(accountIds.length)],
+                null);
+    }
+}
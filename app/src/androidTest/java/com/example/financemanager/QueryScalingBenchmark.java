@@ -0,0 +1,137 @@
+package com.example.financemanager;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.financemanager.data.DateRange;
+import com.example.financemanager.data.TransactionFilter;
+import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Transaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures how history and report queries scale with the size of the transactions table,
+ * with and without the transaction indexes. Results are written to logcat under the
+ * QueryScalingBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryScalingBenchmark {
+
+    private static final String TAG = "QueryScalingBenchmark";
+    private static final int[] ROW_COUNTS = { 1_000, 10_000, 100_000 };
+    private static final int ACCOUNT_COUNT = 5;
+    private static final int RUNS = 7;
+    private static final String[] CATEGORIES = { "Food", "Rent", "Transport", "Salary", "Utilities", "Leisure" };
+    private static final String[] INDEXES = {
+            "idx_transactions_account_date", "idx_transactions_date", "idx_transactions_type_category"
+    };
+
+    private DatabaseHelper dbHelper;
+    private int[] accountIds;
+    private int rowCount;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        // In-memory database so the benchmark never touches the app's data
+        dbHelper = new DatabaseHelper(context, null);
+        accountIds = new int[ACCOUNT_COUNT];
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            accountIds[i] = (int) dbHelper.addAccount(new Account("Account " + i, 0, "Checking", "USD", ""));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void queriesScaleWithTableSize() {
+        Random random = new Random(42);
+        for (int target : ROW_COUNTS) {
+            insertRows(random, target - rowCount);
+            assertEquals(target, dbHelper.getAllTransactions().size());
+
+            Log.i(TAG, "rows=" + target + " indexed: " + measureQueries());
+            dropIndexes();
+            Log.i(TAG, "rows=" + target + " unindexed: " + measureQueries());
+            DatabaseHelper.createTransactionIndexes(dbHelper.getWritableDatabase());
+        }
+        assertTrue(rowCount >= 100_000);
+    }
+
+    private void insertRows(Random random, int count) {
+        long now = System.currentTimeMillis();
+        long fiveYears = 5L * 365 * 24 * 60 * 60 * 1000;
+
+        List<Transaction> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean income = random.nextInt(5) == 0;
+            batch.add(new Transaction(
+                    100 + random.nextInt(100_000),
+                    income ? "INCOME" : "EXPENSE",
+                    CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    "Generated row " + (rowCount + i),
+                    now - (long) (random.nextDouble() * fiveYears),
+                    accountIds[random.nextInt(ACCOUNT_COUNT)],
+                    null));
+        }
+        dbHelper.addTransactions(batch);
+        rowCount += count;
+    }
+
+    private String measureQueries() {
+        final int accountId = accountIds[0];
+        StringBuilder result = new StringBuilder();
+        result.append("firstPageAll=").append(median(() -> dbHelper.getTransactionsPage(DatabaseHelper.ALL_ACCOUNTS, null, 50)));
+        result.append(" firstPageAccount=").append(median(() -> dbHelper.getTransactionsPage(accountId, null, 50)));
+        result.append(" totalIncomeAccount=").append(median(() -> dbHelper.getTotalIncome(accountId)));
+        result.append(" totalExpenseAll=").append(median(() -> dbHelper.getTotalExpense()));
+        result.append(" expensesByCategory=").append(median(() -> dbHelper.getExpensesByCategory()));
+        result.append(" incomeByCategory=").append(median(() -> dbHelper.getIncomeByCategory()));
+        result.append(" reportSnapshotAccount=").append(median(() -> dbHelper.getReportSnapshot(accountId, DateRange.all())));
+        // A rare word, and a category matching about one row in six
+        result.append(" searchRare=").append(median(() -> dbHelper.searchTransactions("row 4242", TransactionFilter.all(), null, 50)));
+        result.append(" searchCommon=").append(median(() -> dbHelper.searchTransactions("rent", TransactionFilter.all(), null, 50)));
+        return result.toString();
+    }
+
+    /**
+     * @return Median wall time of the query in microseconds
+     */
+    private long median(Runnable query) {
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            query.run();
+            samples[i] = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+        }
+        Arrays.sort(samples);
+        return samples[RUNS / 2];
+    }
+
+    private void dropIndexes() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        for (String index : INDEXES) {
+            db.execSQL("DROP INDEX IF EXISTS " + index);
+        }
+    }
+}
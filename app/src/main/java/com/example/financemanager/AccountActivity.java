@@ -5,10 +5,8 @@ import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.ListView;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -16,12 +14,25 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.financemanager.adapters.PagingScrollListener;
 import com.example.financemanager.adapters.TransactionAdapter;
+import com.example.financemanager.adapters.TransactionFormatter;
+import com.example.financemanager.adapters.TransactionListItem;
+import com.example.financemanager.data.DataChange;
+import com.example.financemanager.data.DataChangeBus;
+import com.example.financemanager.data.DataChangeSet;
+import com.example.financemanager.data.FinanceRepository;
+import com.example.financemanager.data.TransactionPageSource;
 import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Money;
 import com.example.financemanager.models.Transaction;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Currency;
 import java.util.List;
 
@@ -30,7 +41,12 @@ import java.util.List;
  */
 public class AccountActivity extends AppCompatActivity {
 
-    private DatabaseHelper dbHelper;
+    private static final String LOAD_TRANSACTIONS = "loadTransactions";
+
+    private FinanceRepository repository;
+    private final FinanceRepository.TaskGroup tasks = new FinanceRepository.TaskGroup();
+    private ScreenTracker screenTracker;
+    private FinanceRepository.Task pageTask;
     private EditText accountNameEditText;
     private EditText accountInitialBalanceEditText;
     private Spinner accountTypeSpinner;
@@ -39,22 +55,26 @@ public class AccountActivity extends AppCompatActivity {
     private Button saveAccountButton;
     private Button deleteAccountButton;
     private TextView accountTransactionsHeaderTextView;
-    private ListView transactionsListView;
+    private RecyclerView transactionsRecyclerView;
 
     private Account currentAccount;
     private int accountId;
     private boolean isNewAccount = true;
-    private List<Transaction> transactionList;
+    private List<TransactionListItem> transactionList = new ArrayList<>();
     private TransactionAdapter transactionAdapter;
+    private TransactionFormatter transactionFormatter;
+    private TransactionPageSource pageSource;
     private NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
+    private final DataChangeBus.Listener changeListener = this::onDataChanged;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        screenTracker = ScreenTracker.start(this);
         setContentView(R.layout.activity_account);
 
-        // Initialize DatabaseHelper
-        dbHelper = new DatabaseHelper(this);
+        // Initialize repository
+        repository = FinanceRepository.getInstance(this);
 
         // Initialize views
         accountNameEditText = findViewById(R.id.accountNameEditText);
@@ -65,7 +85,9 @@ public class AccountActivity extends AppCompatActivity {
         saveAccountButton = findViewById(R.id.saveAccountButton);
         deleteAccountButton = findViewById(R.id.deleteAccountButton);
         accountTransactionsHeaderTextView = findViewById(R.id.accountTransactionsHeaderTextView);
-        transactionsListView = findViewById(R.id.accountTransactionsListView);
+        transactionsRecyclerView = findViewById(R.id.accountTransactionsRecyclerView);
+        transactionsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        transactionsRecyclerView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
 
         // Get account ID from intent
         accountId = getIntent().getIntExtra("account_id", 0);
@@ -77,18 +99,17 @@ public class AccountActivity extends AppCompatActivity {
 
         // Set up view for new or existing account
         setupView();
+        repository.getChangeBus().subscribe(changeListener);
 
         // Set up click listeners
         saveAccountButton.setOnClickListener(v -> saveAccount());
         deleteAccountButton.setOnClickListener(v -> confirmDeleteAccount());
 
-        // Set up transaction list item click listener
-        transactionsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Load further pages of transactions as the user scrolls
+        transactionsRecyclerView.addOnScrollListener(new PagingScrollListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                Transaction transaction = transactionList.get(position);
-                // Open edit transaction dialog
-                showEditTransactionDialog(transaction);
+            protected void onLoadMore() {
+                loadNextTransactionPage();
             }
         });
     }
@@ -105,7 +126,6 @@ public class AccountActivity extends AppCompatActivity {
                 public boolean onMenuItemClick(@NonNull MenuItem item) {
 
                     loadAccount();
-                    loadTransactions();
 
                     return true;
                 }
@@ -126,7 +146,6 @@ public class AccountActivity extends AppCompatActivity {
             // Refresh account data and transaction list
             if (!isNewAccount) {
                 loadAccount();
-                loadTransactions();
             }
             return true;
         }
@@ -134,6 +153,14 @@ public class AccountActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onDestroy() {
+        repository.getChangeBus().unsubscribe(changeListener);
+        tasks.cancelAll();
+        screenTracker.stop();
+        super.onDestroy();
+    }
+
     /**
      * Set up view based on whether creating new account or editing existing
      */
@@ -143,23 +170,30 @@ public class AccountActivity extends AppCompatActivity {
             accountCurrencyEditText.setText("USD"); // Default currency
             deleteAccountButton.setVisibility(View.GONE);
             accountTransactionsHeaderTextView.setVisibility(View.GONE);
-            transactionsListView.setVisibility(View.GONE);
+            transactionsRecyclerView.setVisibility(View.GONE);
         } else {
             // Existing account, load data
             loadAccount();
-            loadTransactions();
         }
     }
 
     /**
-     * Load account data from database
+     * Load account data from database in the background, then its transactions
      */
     private void loadAccount() {
-        currentAccount = dbHelper.getAccount(accountId);
+        tasks.add(repository.loadAccount(accountId, this::showAccount));
+    }
+
+    /**
+     * Fill the form with the loaded account and load its first page of transactions
+     * @param account Account read from the database, or null if it no longer exists
+     */
+    private void showAccount(Account account) {
+        currentAccount = account;
 
         if (currentAccount != null) {
             accountNameEditText.setText(currentAccount.getName());
-            accountInitialBalanceEditText.setText(String.valueOf(currentAccount.getBalance()));
+            accountInitialBalanceEditText.setText(Money.toPlainString(currentAccount.getBalanceMinor(), currentAccount.getCurrency()));
 
             // Set account type in spinner
             String accountType = currentAccount.getAccountType();
@@ -172,29 +206,117 @@ public class AccountActivity extends AppCompatActivity {
 
             accountCurrencyEditText.setText(currentAccount.getCurrency());
             accountNotesEditText.setText(currentAccount.getNotes());
+
+            loadTransactions();
+        }
+    }
+
+    /**
+     * Follow changes to this account and its transactions, whichever screen made them
+     */
+    private void onDataChanged(DataChangeSet changes) {
+        if (currentAccount == null || !changes.affectsAccount(accountId)) {
+            return;
+        }
+        if (changes.contains(DataChange.Type.ACCOUNT_DELETED, accountId)) {
+            finish();
+            return;
+        }
+        refreshAccount();
+    }
+
+    /**
+     * Reload this account and its transactions. Fields the user is editing or has changed
+     * without saving keep their text.
+     */
+    private void refreshAccount() {
+        tasks.add(repository.loadAccount(accountId, account -> {
+            if (account == null || currentAccount == null) {
+                return;
+            }
+            refreshField(accountNameEditText, currentAccount.getName(), account.getName());
+            refreshField(accountInitialBalanceEditText,
+                    Money.toPlainString(currentAccount.getBalanceMinor(), currentAccount.getCurrency()),
+                    Money.toPlainString(account.getBalanceMinor(), account.getCurrency()));
+            refreshField(accountCurrencyEditText, currentAccount.getCurrency(), account.getCurrency());
+            refreshField(accountNotesEditText, currentAccount.getNotes(), account.getNotes());
+            currentAccount = account;
+            loadTransactions();
+        }));
+    }
+
+    /**
+     * Show the stored value unless the field has focus or differs from the value shown before
+     * @param shown Value the field was last filled with
+     * @param stored Value now in the database
+     */
+    private static void refreshField(EditText field, String shown, String stored) {
+        String text = field.getText().toString();
+        if (field.hasFocus() || !text.equals(shown == null ? "" : shown)) {
+            return;
         }
+        field.setText(stored);
     }
 
     /**
-     * Load transactions for this account
+     * Load the transactions for this account again, as many rows as are shown now and at
+     * least the first page. The new rows are diffed against the shown ones, so unchanged
+     * rows and the scroll position stay put.
      */
     private void loadTransactions() {
-        transactionList = dbHelper.getTransactionsByAccount(accountId);
+        if (pageTask != null) {
+            pageTask.cancel();
+            pageTask = null;
+        }
+        // A fresh source, since a cancelled load may still be advancing the old one
+        pageSource = new TransactionPageSource(repository.getDatabaseHelper(), accountId);
+
+        // Set up adapter
+        if(transactionAdapter == null){
+            transactionFormatter = new TransactionFormatter(this, currentAccount.getCurrency());
+            transactionAdapter = new TransactionAdapter(this);
+            transactionAdapter.setOnTransactionClickListener(this::showEditTransactionDialog);
+            transactionsRecyclerView.setAdapter(transactionAdapter);
+        }
+        screenTracker.beginLoad(LOAD_TRANSACTIONS);
+        pageTask = tasks.add(repository.loadNextPages(pageSource, transactionList.size(), transactionFormatter::format,
+                screenTracker.loadCallback(LOAD_TRANSACTIONS, rows -> {
+                    transactionList = rows;
+                    showTransactions();
+                })));
+    }
+
+    /**
+     * Load the next page of transactions for this account in the background and append it.
+     * Only one page is loaded at a time.
+     */
+    private void loadNextTransactionPage() {
+        if (pageSource == null || !pageSource.hasMore() || (pageTask != null && !pageTask.isDone())) {
+            return;
+        }
+        pageTask = tasks.add(repository.loadNextPage(pageSource, transactionFormatter::format, page -> {
+            if (!page.isEmpty()) {
+                List<TransactionListItem> rows = new ArrayList<>(transactionList.size() + page.size());
+                rows.addAll(transactionList);
+                rows.addAll(page);
+                transactionList = rows;
+            }
+            showTransactions();
+        }));
+    }
+
+    /**
+     * Hand the loaded rows to the adapter and update the header. The adapter keeps the
+     * submitted list, so transactionList is replaced rather than modified afterwards.
+     */
+    private void showTransactions() {
+        // Appended pages were not begun as a load, so only full loads are measured
+        transactionAdapter.submitList(transactionList, () -> screenTracker.contentShown(LOAD_TRANSACTIONS));
 
         if (transactionList.isEmpty()) {
             accountTransactionsHeaderTextView.setText("No transactions for this account");
         } else {
             accountTransactionsHeaderTextView.setText("Recent Transactions");
-
-            // Set up adapter
-            if(transactionAdapter == null){
-                transactionAdapter = new TransactionAdapter(this, transactionList, currentAccount.getCurrency());
-                transactionsListView.setAdapter(transactionAdapter);
-            } else {
-                transactionAdapter.clear();
-                transactionAdapter.addAll(transactionList);
-                transactionAdapter.notifyDataSetChanged();
-            }
         }
     }
 
@@ -202,6 +324,11 @@ public class AccountActivity extends AppCompatActivity {
      * Save account to database
      */
     private void saveAccount() {
+        // Existing account is still loading
+        if (!isNewAccount && currentAccount == null) {
+            return;
+        }
+
         // Validate input
         String name = accountNameEditText.getText().toString().trim();
         if (name.isEmpty()) {
@@ -209,51 +336,59 @@ public class AccountActivity extends AppCompatActivity {
             return;
         }
 
-        double balance;
-        try {
-            balance = Double.parseDouble(accountInitialBalanceEditText.getText().toString().trim());
-        } catch (NumberFormatException e) {
-            accountInitialBalanceEditText.setError("Please enter a valid amount");
-            return;
-        }
-
         String accountType = accountTypeSpinner.getSelectedItem().toString();
         String currency = accountCurrencyEditText.getText().toString().trim();
         if (currency.isEmpty()) {
             accountCurrencyEditText.setError("Please enter a currency code");
             return;
         }
+        // Amounts are stored in minor units of the currency and are not converted
+        if (!isNewAccount && !currency.equals(currentAccount.getCurrency()) && !transactionList.isEmpty()) {
+            accountCurrencyEditText.setError("The currency cannot change once the account has transactions");
+            return;
+        }
+
+        // Balance is stored in minor units of the account currency
+        long balance;
+        try {
+            balance = Money.toMinor(accountInitialBalanceEditText.getText().toString(), currency);
+        } catch (NumberFormatException | ArithmeticException e) {
+            accountInitialBalanceEditText.setError("Please enter a valid amount");
+            return;
+        }
 
         String notes = accountNotesEditText.getText().toString().trim();
 
         if (isNewAccount) {
             // Create new account
             Account newAccount = new Account(name, balance, accountType, currency, notes);
-            long result = dbHelper.addAccount(newAccount);
-
-            if (result > 0) {
-                Toast.makeText(this, "Account created successfully", Toast.LENGTH_SHORT).show();
-                finish();
-            } else {
-                Toast.makeText(this, "Failed to create account", Toast.LENGTH_SHORT).show();
-            }
+            saveAccountButton.setEnabled(false);
+            tasks.add(repository.addAccount(newAccount, result -> {
+                saveAccountButton.setEnabled(true);
+                if (result > 0) {
+                    Toast.makeText(this, "Account created successfully", Toast.LENGTH_SHORT).show();
+                    finish();
+                } else {
+                    Toast.makeText(this, "Failed to create account", Toast.LENGTH_SHORT).show();
+                }
+            }));
         } else {
             // Update existing account
             currentAccount.setName(name);
-            currentAccount.setBalance(balance);
+            currentAccount.setBalanceMinor(balance);
             currentAccount.setAccountType(accountType);
             currentAccount.setCurrency(currency);
             currentAccount.setNotes(notes);
 
-            int result = dbHelper.updateAccount(currentAccount);
-
-            if (result > 0) {
-                Toast.makeText(this, "Account updated successfully", Toast.LENGTH_SHORT).show();
-                loadAccount(); // Refresh account data
-                loadTransactions(); // Refresh transactions
-            } else {
-                Toast.makeText(this, "Failed to update account", Toast.LENGTH_SHORT).show();
-            }
+            saveAccountButton.setEnabled(false);
+            tasks.add(repository.updateAccount(currentAccount, result -> {
+                saveAccountButton.setEnabled(true);
+                if (result > 0) {
+                    Toast.makeText(this, "Account updated successfully", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(this, "Failed to update account", Toast.LENGTH_SHORT).show();
+                }
+            }));
         }
     }
 
@@ -278,14 +413,14 @@ public class AccountActivity extends AppCompatActivity {
      * Delete account from database
      */
     private void deleteAccount() {
-        int result = dbHelper.deleteAccount(accountId);
-
-        if (result > 0) {
-            Toast.makeText(this, "Account deleted successfully", Toast.LENGTH_SHORT).show();
-            finish();
-        } else {
-            Toast.makeText(this, "Failed to delete account", Toast.LENGTH_SHORT).show();
-        }
+        tasks.add(repository.deleteAccount(accountId, result -> {
+            if (result > 0) {
+                Toast.makeText(this, "Account deleted successfully", Toast.LENGTH_SHORT).show();
+                finish();
+            } else {
+                Toast.makeText(this, "Failed to delete account", Toast.LENGTH_SHORT).show();
+            }
+        }));
     }
 
     /**
@@ -299,7 +434,7 @@ public class AccountActivity extends AppCompatActivity {
         // For this example, we'll just show a simple confirmation dialog to delete the transaction
         new AlertDialog.Builder(this)
                 .setTitle("Transaction: " + transaction.getCategory())
-                .setMessage("Amount: " + currencyFormat.format(transaction.getAmount()) +
+                .setMessage("Amount: " + Money.format(currencyFormat, transaction.getAmountMinor(), currentAccount.getCurrency()) +
                         "\nDescription: " + transaction.getDescription())
                 .setPositiveButton("Delete", new DialogInterface.OnClickListener() {
                     @Override
@@ -316,14 +451,12 @@ public class AccountActivity extends AppCompatActivity {
      * @param transactionId ID of transaction to delete
      */
     private void deleteTransaction(int transactionId) {
-        int result = dbHelper.deleteTransaction(transactionId);
-
-        if (result > 0) {
-            Toast.makeText(this, "Transaction deleted successfully", Toast.LENGTH_SHORT).show();
-            loadAccount(); // Refresh account data (balance might have changed)
-            loadTransactions(); // Refresh transaction list
-        } else {
-            Toast.makeText(this, "Failed to delete transaction", Toast.LENGTH_SHORT).show();
-        }
+        tasks.add(repository.deleteTransaction(transactionId, result -> {
+            if (result > 0) {
+                Toast.makeText(this, "Transaction deleted successfully", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "Failed to delete transaction", Toast.LENGTH_SHORT).show();
+            }
+        }));
     }
 }
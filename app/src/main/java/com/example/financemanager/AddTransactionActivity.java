@@ -19,7 +19,9 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import com.example.financemanager.data.FinanceRepository;
 import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Money;
 import com.example.financemanager.models.Transaction;
 
 import java.text.SimpleDateFormat;
@@ -31,7 +33,8 @@ import java.util.Locale;
 
 public class AddTransactionActivity extends AppCompatActivity {
 
-    private DatabaseHelper dbHelper;
+    private FinanceRepository repository;
+    private final FinanceRepository.TaskGroup tasks = new FinanceRepository.TaskGroup();
     private EditText amountEditText;
     private RadioGroup transactionTypeRadioGroup;
     private EditText categoryEditText;
@@ -50,8 +53,8 @@ public class AddTransactionActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_add_transaction);
 
-        // Initialize DatabaseHelper
-        dbHelper = new DatabaseHelper(this);
+        // Initialize repository
+        repository = FinanceRepository.getInstance(this);
 
         // Initialize views
         amountEditText = findViewById(R.id.amountEditText);
@@ -90,6 +93,12 @@ public class AddTransactionActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onDestroy() {
+        tasks.cancelAll();
+        super.onDestroy();
+    }
+
     /**
      * Update date label text
      */
@@ -125,7 +134,15 @@ public class AddTransactionActivity extends AppCompatActivity {
      * Load accounts from database and populate spinner
      */
     private void loadAccounts(){
-        accountList = dbHelper.getAllAccounts();
+        tasks.add(repository.loadAccounts(this::showAccounts));
+    }
+
+    /**
+     * Populate spinner with the loaded accounts
+     * @param accounts Accounts read from the database
+     */
+    private void showAccounts(List<Account> accounts){
+        accountList = accounts;
 
         if (accountList.isEmpty()){
             Toast.makeText(this, "Please create an account first", Toast.LENGTH_SHORT).show();
@@ -147,6 +164,10 @@ public class AddTransactionActivity extends AppCompatActivity {
      * Save transaction to database
      */
     private void saveTransaction(){
+        // Accounts are still loading
+        if(accountList == null){
+            return;
+        }
         if(!this.validateInput()){
             return;
         }
@@ -156,8 +177,12 @@ public class AddTransactionActivity extends AppCompatActivity {
         RadioButton selectedRadioButton = findViewById(selectedRadioButtonId);
         String transactionType = selectedRadioButton.getText().toString().toUpperCase();
 
-        // Get amount
-        double amount = Double.parseDouble(amountEditText.getText().toString().trim());
+        // Get selected account
+        int accountPosition = accountSpinner.getSelectedItemPosition();
+        Account selectedAccount = accountList.get(accountPosition);
+
+        // Get amount in minor units of the account currency
+        long amount = Money.toMinor(amountEditText.getText().toString(), selectedAccount.getCurrency());
 
         // Get category
         String category = categoryEditText.getText().toString().trim();
@@ -165,30 +190,28 @@ public class AddTransactionActivity extends AppCompatActivity {
         // Get description
         String description = descriptionEditText.getText().toString().trim();
 
-        // Get selected account
-        int accountPosition = accountSpinner.getSelectedItemPosition();
-        Account selectedAccount = accountList.get(accountPosition);
-
         // Create transaction object
         Transaction transaction = new Transaction(
                 amount,
                 transactionType,
                 category,
                 description,
-                selectedDate,
+                selectedDate.getTime(),
                 selectedAccount.getId(),
                 selectedAccount.getName()
         );
 
-        // Save result
-        long result = dbHelper.addTransaction(transaction);
-
-        if(result > 0){
-            Toast.makeText(this, "Transaction added", Toast.LENGTH_SHORT).show();
-            finish();
-        } else {
-            Toast.makeText(this, "Failed to add transaction", Toast.LENGTH_SHORT).show();
-        }
+        // Save in the background
+        saveTransactionButton.setEnabled(false);
+        tasks.add(repository.addTransaction(transaction, result -> {
+            saveTransactionButton.setEnabled(true);
+            if(result > 0){
+                Toast.makeText(this, "Transaction added", Toast.LENGTH_SHORT).show();
+                finish();
+            } else {
+                Toast.makeText(this, "Failed to add transaction", Toast.LENGTH_SHORT).show();
+            }
+        }));
     }
 
     /**
@@ -204,12 +227,13 @@ public class AddTransactionActivity extends AppCompatActivity {
         }
 
         try {
-            double amount = Double.parseDouble(amountStr);
+            Account selectedAccount = accountList.get(accountSpinner.getSelectedItemPosition());
+            long amount = Money.toMinor(amountStr, selectedAccount.getCurrency());
             if (amount <= 0){
                 amountEditText.setError("Amount must be positive");
                 return false;
             }
-        } catch (NumberFormatException e){
+        } catch (NumberFormatException | ArithmeticException e){
             amountEditText.setError("Please enter a valid amount");
             return false;
         }
@@ -5,16 +5,42 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.financemanager.data.AccountCache;
+import com.example.financemanager.data.AccountSnapshot;
+import com.example.financemanager.data.BalanceDrift;
+import com.example.financemanager.data.CategoryDictionary;
+import com.example.financemanager.data.ConnectionProfile;
+import com.example.financemanager.data.DataChange;
+import com.example.financemanager.data.DataChangeBus;
+import com.example.financemanager.data.DateRange;
+import com.example.financemanager.data.Migration;
+import com.example.financemanager.data.PageKey;
+import com.example.financemanager.data.PeriodKeys;
+import com.example.financemanager.data.QueryStats;
+import com.example.financemanager.data.ReconcileCheckpoint;
+import com.example.financemanager.data.ReportSnapshot;
+import com.example.financemanager.data.RollupDeltas;
+import com.example.financemanager.data.SearchKey;
+import com.example.financemanager.data.SearchPage;
+import com.example.financemanager.data.TransactionCache;
+import com.example.financemanager.data.TransactionFilter;
+import com.example.financemanager.data.TransactionRow;
+import com.example.financemanager.data.TransactionVisitor;
 import com.example.financemanager.models.Account;
 import com.example.financemanager.models.Transaction;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 
 /**
  * Database helper class for SQLite operations
@@ -22,15 +48,26 @@ import java.util.Locale;
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     // Database Information
-    private static final String DATABASE_NAME = "finance_tracker.db";
-    private static final int DATABASE_VERSION = 2;
+    public static final String DATABASE_NAME = "finance_tracker.db";
+    private static final int DATABASE_VERSION = 12;
+
+    // Oldest schema version that can be upgraded in place; older databases are recreated
+    private static final int MIN_MIGRATABLE_VERSION = 2;
 
-    // Date formatter
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+    // Version that last changed how rollup rows are keyed; upgrades from older versions rebuild them
+    private static final int ROLLUP_SCHEMA_VERSION = 12;
+
+    // Account filter meaning "every account"
+    public static final int ALL_ACCOUNTS = -1;
 
     // Table Names
     private static final String TABLE_ACCOUNTS = "accounts";
+    private static final String TABLE_CATEGORIES = "categories";
     private static final String TABLE_TRANSACTIONS = "transactions";
+    private static final String TABLE_ROLLUP_DAILY = "rollup_daily";
+    private static final String TABLE_ROLLUP_MONTHLY = "rollup_monthly";
+    private static final String TABLE_TRANSACTIONS_FTS = "transactions_fts";
+    private static final String TABLE_RECONCILE_CHECKPOINTS = "reconcile_checkpoints";
 
     // Account Table Columns
     private static final String ACCOUNT_ID = "id";
@@ -39,60 +76,399 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String ACCOUNT_TYPE = "account_type";
     private static final String ACCOUNT_CURRENCY = "currency";
     private static final String ACCOUNT_NOTES = "notes";
+    private static final String ACCOUNT_OPENING_BALANCE = "opening_balance"; // Balance before any transaction
+    private static final String ACCOUNT_REVISION = "revision"; // Incremented by every balance-affecting write
+
+    // Category Table Columns
+    private static final String CATEGORY_ID = "id";
+    private static final String CATEGORY_NAME = "name";
 
     // Transaction Table Columns
     private static final String TRANSACTION_ID = "id";
     private static final String TRANSACTION_AMOUNT = "amount";
     private static final String TRANSACTION_TYPE = "type";
-    private static final String TRANSACTION_CATEGORY = "category";
+    private static final String TRANSACTION_CATEGORY_ID = "category_id";
     private static final String TRANSACTION_DESCRIPTION = "description";
     private static final String TRANSACTION_DATE = "date";
     private static final String TRANSACTION_ACCOUNT_ID = "account_id";
+    // Day key the rollups count the row under, see PeriodKeys. Kept with the row so that a later
+    // change reverses the same rollup rows even if the device time zone changed since.
+    private static final String TRANSACTION_PERIOD_DAY = "period_day";
+
+    // Rollup Table Columns
+    private static final String ROLLUP_ACCOUNT_ID = "account_id";
+    private static final String ROLLUP_PERIOD = "period"; // yyyyMMdd or yyyyMM, see PeriodKeys
+    private static final String ROLLUP_TYPE = "type";
+    private static final String ROLLUP_CATEGORY_ID = "category_id"; // CategoryDictionary.NONE without category
+    private static final String ROLLUP_TOTAL = "total";
+    private static final String ROLLUP_COUNT = "count";
+
+    // Reconcile Checkpoint Table Columns, see ReconcileCheckpoint
+    private static final String CHECKPOINT_ACCOUNT_ID = "account_id";
+    private static final String CHECKPOINT_REVISION = "revision";
+    private static final String CHECKPOINT_LAST_DATE = "last_date";
+    private static final String CHECKPOINT_LAST_ID = "last_id";
+    private static final String CHECKPOINT_RUNNING_TOTAL = "running_total";
 
     // Create Accounts Table Query
     private static final String CREATE_ACCOUNTS_TABLE = "CREATE TABLE " + TABLE_ACCOUNTS + "("
             + ACCOUNT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
             + ACCOUNT_NAME + " TEXT,"
-            + ACCOUNT_BALANCE + " REAL,"
+            + ACCOUNT_BALANCE + " INTEGER NOT NULL DEFAULT 0,"
             + ACCOUNT_TYPE + " TEXT,"
             + ACCOUNT_CURRENCY + " TEXT,"
-            + ACCOUNT_NOTES + " TEXT" + ")";
+            + ACCOUNT_NOTES + " TEXT,"
+            + ACCOUNT_OPENING_BALANCE + " INTEGER NOT NULL DEFAULT 0,"
+            + ACCOUNT_REVISION + " INTEGER NOT NULL DEFAULT 0" + ")";
+
+    // Create Categories Table Query; names are unique and rows are never changed or removed
+    private static final String CREATE_CATEGORIES_TABLE = "CREATE TABLE " + TABLE_CATEGORIES + "("
+            + CATEGORY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + CATEGORY_NAME + " TEXT NOT NULL UNIQUE" + ")";
+
+    // Create Reconcile Checkpoints Table Query; one row per account with a scan in progress
+    private static final String CREATE_RECONCILE_CHECKPOINTS_TABLE = "CREATE TABLE " + TABLE_RECONCILE_CHECKPOINTS + "("
+            + CHECKPOINT_ACCOUNT_ID + " INTEGER PRIMARY KEY,"
+            + CHECKPOINT_REVISION + " INTEGER NOT NULL,"
+            + CHECKPOINT_LAST_DATE + " INTEGER,"
+            + CHECKPOINT_LAST_ID + " INTEGER,"
+            + CHECKPOINT_RUNNING_TOTAL + " INTEGER NOT NULL DEFAULT 0" + ")";
 
     // Create Transactions Table Query
     private static final String CREATE_TRANSACTIONS_TABLE = "CREATE TABLE " + TABLE_TRANSACTIONS + "("
             + TRANSACTION_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-            + TRANSACTION_AMOUNT + " REAL,"
+            + TRANSACTION_AMOUNT + " INTEGER NOT NULL DEFAULT 0,"
             + TRANSACTION_TYPE + " TEXT,"
-            + TRANSACTION_CATEGORY + " TEXT,"
+            + TRANSACTION_CATEGORY_ID + " INTEGER,"
             + TRANSACTION_DESCRIPTION + " TEXT,"
-            + TRANSACTION_DATE + " TEXT,"
+            + TRANSACTION_DATE + " INTEGER NOT NULL DEFAULT 0," // Epoch milliseconds
             + TRANSACTION_ACCOUNT_ID + " INTEGER,"
+            + TRANSACTION_PERIOD_DAY + " INTEGER NOT NULL DEFAULT 0,"
+            + "FOREIGN KEY(" + TRANSACTION_CATEGORY_ID + ") REFERENCES " + TABLE_CATEGORIES + "(" + CATEGORY_ID + "),"
             + "FOREIGN KEY(" + TRANSACTION_ACCOUNT_ID + ") REFERENCES " + TABLE_ACCOUNTS + "(" + ACCOUNT_ID + ")" + ")";
 
+    // Rollup tables: total amount and number of transactions per account, period, type and category
+    private static final String CREATE_ROLLUP_DAILY_TABLE = createRollupTable(TABLE_ROLLUP_DAILY);
+    private static final String CREATE_ROLLUP_MONTHLY_TABLE = createRollupTable(TABLE_ROLLUP_MONTHLY);
+
+    // Full-text index over the description and category name of each transaction; docid is
+    // the transaction id. It keeps its own copy of the text, since the category name is no
+    // longer a column of the transactions table.
+    private static final String SEARCH_DESCRIPTION = "description";
+    private static final String SEARCH_CATEGORY = "category";
+    private static final String CREATE_TRANSACTIONS_FTS_TABLE = "CREATE VIRTUAL TABLE " + TABLE_TRANSACTIONS_FTS
+            + " USING fts4(" + SEARCH_DESCRIPTION + ", " + SEARCH_CATEGORY + ", tokenize=unicode61)";
+
+    // Triggers keeping the full-text index in sync, only rewriting an entry when its text changes
+    private static final String CHANGED_SEARCH_TEXT = "WHEN old." + TRANSACTION_DESCRIPTION + " IS NOT new."
+            + TRANSACTION_DESCRIPTION + " OR old." + TRANSACTION_CATEGORY_ID + " IS NOT new." + TRANSACTION_CATEGORY_ID + " ";
+    private static final String DELETE_SEARCH_ENTRY = "DELETE FROM " + TABLE_TRANSACTIONS_FTS
+            + " WHERE docid = old." + TRANSACTION_ID + "; END";
+    private static final String INSERT_SEARCH_ENTRY = "INSERT INTO " + TABLE_TRANSACTIONS_FTS + "(docid, "
+            + SEARCH_DESCRIPTION + ", " + SEARCH_CATEGORY + ") VALUES (new." + TRANSACTION_ID + ", new."
+            + TRANSACTION_DESCRIPTION + ", (SELECT " + CATEGORY_NAME + " FROM " + TABLE_CATEGORIES + " WHERE "
+            + CATEGORY_ID + " = new." + TRANSACTION_CATEGORY_ID + ")); END";
+    private static final String[] CREATE_TRANSACTIONS_FTS_TRIGGERS = {
+            "CREATE TRIGGER transactions_fts_before_update BEFORE UPDATE ON " + TABLE_TRANSACTIONS + " "
+                    + CHANGED_SEARCH_TEXT + "BEGIN " + DELETE_SEARCH_ENTRY,
+            "CREATE TRIGGER transactions_fts_before_delete BEFORE DELETE ON " + TABLE_TRANSACTIONS + " BEGIN "
+                    + DELETE_SEARCH_ENTRY,
+            "CREATE TRIGGER transactions_fts_after_update AFTER UPDATE ON " + TABLE_TRANSACTIONS + " "
+                    + CHANGED_SEARCH_TEXT + "BEGIN " + INSERT_SEARCH_ENTRY,
+            "CREATE TRIGGER transactions_fts_after_insert AFTER INSERT ON " + TABLE_TRANSACTIONS + " BEGIN "
+                    + INSERT_SEARCH_ENTRY,
+    };
+
+    // Search rank: number of query term occurrences in the row, so a term found twice counts
+    // twice. offsets() lists four space-separated integers per occurrence.
+    private static final String SEARCH_RANK = "(length(offsets(" + TABLE_TRANSACTIONS_FTS + ")) - length(replace(offsets("
+            + TABLE_TRANSACTIONS_FTS + "), ' ', '')) + 1) / 4";
+
+    // Number of most recent matches that are ranked. offsets() re-reads the row text, so a
+    // prefix of a common word would otherwise rank and sort every match on every page.
+    static final int SEARCH_CANDIDATE_LIMIT = 500;
+
+    // Transactions Table Indexes
+    // History pages per account: WHERE account_id = ? ORDER BY date DESC, id DESC
+    private static final String CREATE_INDEX_TRANSACTIONS_ACCOUNT_DATE = "CREATE INDEX IF NOT EXISTS idx_transactions_account_date ON "
+            + TABLE_TRANSACTIONS + "(" + TRANSACTION_ACCOUNT_ID + ", " + TRANSACTION_DATE + ")";
+    // History pages across all accounts: ORDER BY date DESC, id DESC
+    private static final String CREATE_INDEX_TRANSACTIONS_DATE = "CREATE INDEX IF NOT EXISTS idx_transactions_date ON "
+            + TABLE_TRANSACTIONS + "(" + TRANSACTION_DATE + ")";
+    // Totals and category breakdowns: covers WHERE type = ? GROUP BY category_id with SUM(amount)
+    private static final String CREATE_INDEX_TRANSACTIONS_TYPE_CATEGORY = "CREATE INDEX IF NOT EXISTS idx_transactions_type_category ON "
+            + TABLE_TRANSACTIONS + "(" + TRANSACTION_TYPE + ", " + TRANSACTION_CATEGORY_ID + ", " + TRANSACTION_AMOUNT + ")";
+
+    // Rollup Table Indexes
+    // Reports of a period across all accounts: WHERE period >= ? AND period < ?, which the
+    // primary key cannot serve since it starts with the account
+    private static final String CREATE_INDEX_ROLLUP_DAILY_PERIOD = "CREATE INDEX IF NOT EXISTS idx_rollup_daily_period ON "
+            + TABLE_ROLLUP_DAILY + "(" + ROLLUP_PERIOD + ")";
+    private static final String CREATE_INDEX_ROLLUP_MONTHLY_PERIOD = "CREATE INDEX IF NOT EXISTS idx_rollup_monthly_period ON "
+            + TABLE_ROLLUP_MONTHLY + "(" + ROLLUP_PERIOD + ")";
+
+    // In-place balance adjustment, evaluated atomically by SQLite
+    private static final String ADJUST_ACCOUNT_BALANCE = "UPDATE " + TABLE_ACCOUNTS + " SET "
+            + ACCOUNT_BALANCE + " = " + ACCOUNT_BALANCE + " + ?, "
+            + ACCOUNT_REVISION + " = " + ACCOUNT_REVISION + " + 1 WHERE " + ACCOUNT_ID + " = ?";
+
+    // Account edit; a balance typed in by the user moves the opening balance by the same amount,
+    // so the balance still equals the opening balance plus the account's transactions
+    private static final String UPDATE_ACCOUNT = "UPDATE " + TABLE_ACCOUNTS + " SET "
+            + ACCOUNT_NAME + " = ?, "
+            + ACCOUNT_OPENING_BALANCE + " = " + ACCOUNT_OPENING_BALANCE + " + ? - " + ACCOUNT_BALANCE + ", "
+            + ACCOUNT_BALANCE + " = ?, " + ACCOUNT_TYPE + " = ?, " + ACCOUNT_CURRENCY + " = ?, "
+            + ACCOUNT_NOTES + " = ?, " + ACCOUNT_REVISION + " = " + ACCOUNT_REVISION + " + 1 "
+            + "WHERE " + ACCOUNT_ID + " = ? AND (" + ACCOUNT_CURRENCY + " IS ? OR NOT EXISTS (SELECT 1 FROM "
+            + TABLE_TRANSACTIONS + " WHERE " + TRANSACTION_ACCOUNT_ID + " = ?))";
+
+    // Balance reconciliation
+    private static final String SAVE_RECONCILE_CHECKPOINT = "INSERT OR REPLACE INTO " + TABLE_RECONCILE_CHECKPOINTS + " ("
+            + CHECKPOINT_ACCOUNT_ID + ", " + CHECKPOINT_REVISION + ", " + CHECKPOINT_LAST_DATE + ", "
+            + CHECKPOINT_LAST_ID + ", " + CHECKPOINT_RUNNING_TOTAL + ") SELECT ?, ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM "
+            + TABLE_ACCOUNTS + " WHERE " + ACCOUNT_ID + " = ? AND " + ACCOUNT_REVISION + " = ?)";
+    private static final String REPAIR_ACCOUNT_BALANCE = "UPDATE " + TABLE_ACCOUNTS + " SET "
+            + ACCOUNT_BALANCE + " = ?, " + ACCOUNT_REVISION + " = " + ACCOUNT_REVISION + " + 1 WHERE " + ACCOUNT_ID + " = ?";
+
+    // Batch write statements, compiled once per batch
+    private static final String INSERT_TRANSACTION = "INSERT INTO " + TABLE_TRANSACTIONS + " ("
+            + TRANSACTION_AMOUNT + ", " + TRANSACTION_TYPE + ", " + TRANSACTION_CATEGORY_ID + ", "
+            + TRANSACTION_DESCRIPTION + ", " + TRANSACTION_DATE + ", " + TRANSACTION_ACCOUNT_ID + ", "
+            + TRANSACTION_PERIOD_DAY + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_TRANSACTION = "UPDATE " + TABLE_TRANSACTIONS + " SET "
+            + TRANSACTION_AMOUNT + " = ?, " + TRANSACTION_TYPE + " = ?, " + TRANSACTION_CATEGORY_ID + " = ?, "
+            + TRANSACTION_DESCRIPTION + " = ?, " + TRANSACTION_DATE + " = ?, " + TRANSACTION_ACCOUNT_ID + " = ?, "
+            + TRANSACTION_PERIOD_DAY + " = ? WHERE " + TRANSACTION_ID + " = ?";
+    private static final String DELETE_TRANSACTION = "DELETE FROM " + TABLE_TRANSACTIONS
+            + " WHERE " + TRANSACTION_ID + " = ?";
+
+    // Rollup row maintenance, applied per table
+    private static final String ADJUST_ROLLUP = "UPDATE %s SET " + ROLLUP_TOTAL + " = " + ROLLUP_TOTAL + " + ?, "
+            + ROLLUP_COUNT + " = " + ROLLUP_COUNT + " + ? WHERE " + ROLLUP_ACCOUNT_ID + " = ? AND "
+            + ROLLUP_PERIOD + " = ? AND " + ROLLUP_TYPE + " = ? AND " + ROLLUP_CATEGORY_ID + " = ?";
+    private static final String INSERT_ROLLUP = "INSERT INTO %s (" + ROLLUP_TOTAL + ", " + ROLLUP_COUNT + ", "
+            + ROLLUP_ACCOUNT_ID + ", " + ROLLUP_PERIOD + ", " + ROLLUP_TYPE + ", " + ROLLUP_CATEGORY_ID
+            + ") VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_EMPTY_ROLLUP = "DELETE FROM %s WHERE " + ROLLUP_ACCOUNT_ID + " = ? AND "
+            + ROLLUP_PERIOD + " = ? AND " + ROLLUP_TYPE + " = ? AND " + ROLLUP_CATEGORY_ID + " = ? AND "
+            + ROLLUP_COUNT + " <= 0";
+
+    // Rollup rebuild: rows without a stored day key, read in chunks, then every rollup row summed
+    // from the stored keys. REBUILD_ROLLUP takes the table and the period expression.
+    private static final String SELECT_MISSING_PERIOD_DAYS = "SELECT " + TRANSACTION_ID + ", " + TRANSACTION_DATE
+            + " FROM " + TABLE_TRANSACTIONS + " WHERE " + TRANSACTION_PERIOD_DAY + " = 0 LIMIT ?";
+    private static final String SET_PERIOD_DAY = "UPDATE " + TABLE_TRANSACTIONS + " SET " + TRANSACTION_PERIOD_DAY
+            + " = ? WHERE " + TRANSACTION_ID + " = ?";
+    private static final String REBUILD_ROLLUP = "INSERT INTO %s (" + ROLLUP_ACCOUNT_ID + ", " + ROLLUP_PERIOD + ", "
+            + ROLLUP_TYPE + ", " + ROLLUP_CATEGORY_ID + ", " + ROLLUP_TOTAL + ", " + ROLLUP_COUNT + ") SELECT COALESCE("
+            + TRANSACTION_ACCOUNT_ID + ", 0), %s, COALESCE(" + TRANSACTION_TYPE + ", ''), COALESCE("
+            + TRANSACTION_CATEGORY_ID + ", " + CategoryDictionary.NONE + "), SUM(" + TRANSACTION_AMOUNT + "), COUNT(*) FROM "
+            + TABLE_TRANSACTIONS + " GROUP BY 1, 2, 3, 4";
+    private static final int PERIOD_DAY_CHUNK_SIZE = 10_000;
+
+    // Single transaction with its account name and currency
+    private static final String SELECT_TRANSACTION = "SELECT t.*, a.name as account_name, a.currency as account_currency FROM "
+            + TABLE_TRANSACTIONS + " t LEFT JOIN " + TABLE_ACCOUNTS + " a ON t.account_id = a.id WHERE t.id = ?";
+
+    // Last statement of deleteAccount, as SQLiteDatabase.delete() builds it. Writes made through
+    // ContentValues are recorded in the query stats without SQL, since SQLiteDatabase builds it.
+    private static final String DELETE_ACCOUNT_SQL = "DELETE FROM " + TABLE_ACCOUNTS + " WHERE " + ACCOUNT_ID + " = ?";
+    private static final String WAL_CHECKPOINT = "PRAGMA wal_checkpoint(PASSIVE)";
+
+    // New categories, added outside of the write that first uses them
+    private static final String INSERT_CATEGORY = "INSERT OR IGNORE INTO " + TABLE_CATEGORIES
+            + " (" + CATEGORY_NAME + ") VALUES (?)";
+
+    // Maximum number of ids bound in a single IN (...) lookup, below SQLite's variable limit
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private final ConnectionProfile connectionProfile;
+    private final AccountCache accountCache = new AccountCache(this::queryAccounts);
+    private final TransactionCache transactionCache = new TransactionCache(TransactionCache.DEFAULT_MAX_ENTRIES);
+    private final CategoryDictionary categories = new CategoryDictionary(this::queryCategories);
+    private final DataChangeBus changeBus = new DataChangeBus();
+    private final QueryStats queryStats = new QueryStats();
+
     public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * @param context Context used to locate the database file
+     * @param name Database file name, or null for an in-memory database
+     */
+    public DatabaseHelper(Context context, String name) {
+        this(context, name, ConnectionProfile.defaults());
+    }
+
+    /**
+     * @param context Context used to locate the database file
+     * @param name Database file name, or null for an in-memory database
+     * @param connectionProfile Journal mode and pragmas applied when the database is opened
+     */
+    public DatabaseHelper(Context context, String name, ConnectionProfile connectionProfile) {
+        super(context, name, null, DATABASE_VERSION);
+        this.connectionProfile = connectionProfile;
+        // Lets SQLiteDatabase keep a pool of read connections next to the single writer
+        setWriteAheadLoggingEnabled(connectionProfile.isWriteAheadLogging());
+    }
+
+    public ConnectionProfile getConnectionProfile() {
+        return connectionProfile;
+    }
+
+    /**
+     * @return Bus notifying listeners of the changes made through this helper once committed
+     */
+    public DataChangeBus getChangeBus() {
+        return changeBus;
+    }
+
+    /**
+     * @return Cache of recently listed transaction rows, for its hit, miss and eviction counters
+     */
+    public TransactionCache getTransactionCache() {
+        return transactionCache;
+    }
+
+    /**
+     * @return Timings of the queries and writes made through this helper; off until enabled
+     */
+    public QueryStats getQueryStats() {
+        return queryStats;
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_ACCOUNTS_TABLE);
+        db.execSQL(CREATE_RECONCILE_CHECKPOINTS_TABLE);
+        db.execSQL(CREATE_CATEGORIES_TABLE);
         db.execSQL(CREATE_TRANSACTIONS_TABLE);
+        db.execSQL(CREATE_ROLLUP_DAILY_TABLE);
+        db.execSQL(CREATE_ROLLUP_MONTHLY_TABLE);
+        createTransactionIndexes(db);
+        db.execSQL(CREATE_INDEX_ROLLUP_DAILY_PERIOD);
+        db.execSQL(CREATE_INDEX_ROLLUP_MONTHLY_PERIOD);
+        db.execSQL(CREATE_TRANSACTIONS_FTS_TABLE);
+        for (String trigger : CREATE_TRANSACTIONS_FTS_TRIGGERS) {
+            db.execSQL(trigger);
+        }
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Drop older tables if existed
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRANSACTIONS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ACCOUNTS);
+        if (oldVersion < MIN_MIGRATABLE_VERSION) {
+            // No migration path from this schema, drop older tables and create them again
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRANSACTIONS_FTS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_ROLLUP_DAILY);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_ROLLUP_MONTHLY);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRANSACTIONS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_CATEGORIES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_RECONCILE_CHECKPOINTS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_ACCOUNTS);
+            onCreate(db);
+            return;
+        }
+
+        // Apply each migration step in turn; SQLiteOpenHelper runs this in a single transaction
+        int version = oldVersion;
+        while (version < newVersion) {
+            Migration migration = DatabaseMigrations.find(version);
+            if (migration == null) {
+                throw new IllegalStateException("No migration from database version " + version);
+            }
+            migration.migrate(db);
+            version = migration.getEndVersion();
+        }
+
+        // Rollups are derived data; fill them from the migrated transactions
+        if (oldVersion < ROLLUP_SCHEMA_VERSION) {
+            rebuildRollups(db);
+        }
+    }
 
-        // Create tables again
-        onCreate(db);
+    private static String createRollupTable(String table) {
+        return "CREATE TABLE " + table + "("
+                + ROLLUP_ACCOUNT_ID + " INTEGER NOT NULL,"
+                + ROLLUP_PERIOD + " INTEGER NOT NULL,"
+                + ROLLUP_TYPE + " TEXT NOT NULL,"
+                + ROLLUP_CATEGORY_ID + " INTEGER NOT NULL,"
+                + ROLLUP_TOTAL + " INTEGER NOT NULL DEFAULT 0," // Minor units
+                + ROLLUP_COUNT + " INTEGER NOT NULL DEFAULT 0,"
+                + "PRIMARY KEY(" + ROLLUP_ACCOUNT_ID + ", " + ROLLUP_PERIOD + ", "
+                + ROLLUP_TYPE + ", " + ROLLUP_CATEGORY_ID + "))";
+    }
+
+    /**
+     * Create the indexes on the transactions table if they do not exist yet
+     * @param db Database to modify
+     */
+    static void createTransactionIndexes(SQLiteDatabase db) {
+        db.execSQL(CREATE_INDEX_TRANSACTIONS_ACCOUNT_DATE);
+        db.execSQL(CREATE_INDEX_TRANSACTIONS_DATE);
+        db.execSQL(CREATE_INDEX_TRANSACTIONS_TYPE_CATEGORY);
     }
 
     @Override
     public void onConfigure(SQLiteDatabase db) {
         super.onConfigure(db);
         db.setForeignKeyConstraintsEnabled(true);
+
+        // These pragmas apply to the primary connection only, which runs every write and every
+        // read made inside a transaction. Android has no hook for the pooled WAL reader
+        // connections, so reads outside a transaction keep SQLite's default cache_size,
+        // mmap_size and temp_store.
+        ConnectionProfile profile = connectionProfile;
+        if (profile.getSynchronous() != null) {
+            db.execSQL("PRAGMA synchronous = " + profile.getSynchronous());
+        }
+        if (profile.getCacheSizeKib() != ConnectionProfile.UNSET) {
+            // A negative cache_size is a size in KiB rather than in pages
+            db.execSQL("PRAGMA cache_size = -" + profile.getCacheSizeKib());
+        }
+        if (profile.getMmapSizeBytes() != ConnectionProfile.UNSET) {
+            // Returns the new size, so it has to run as a query
+            queryPragma(db, "PRAGMA mmap_size = " + profile.getMmapSizeBytes());
+        }
+        if (profile.getTempStore() != null) {
+            db.execSQL("PRAGMA temp_store = " + profile.getTempStore());
+        }
+        if (profile.isWriteAheadLogging() && profile.getAutoCheckpointPages() != ConnectionProfile.UNSET) {
+            queryPragma(db, "PRAGMA wal_autocheckpoint = " + profile.getAutoCheckpointPages());
+        }
+    }
+
+    /**
+     * Copy committed pages from the write-ahead log back into the database file without
+     * waiting for readers, so the log stays short. Does nothing outside WAL mode.
+     * @return True if every page in the log was checkpointed
+     */
+    public boolean checkpoint() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        if (!db.isWriteAheadLoggingEnabled()) {
+            return true;
+        }
+        // Columns: busy flag, pages in the log, pages checkpointed
+        long start = queryStats.start();
+        Cursor cursor = db.rawQuery(WAL_CHECKPOINT, null);
+        try {
+            return cursor.moveToFirst() && cursor.getInt(0) == 0 && cursor.getInt(1) == cursor.getInt(2);
+        } finally {
+            cursor.close();
+            queryStats.record("checkpoint", start, 1, WAL_CHECKPOINT, 0);
+        }
+    }
+
+    /**
+     * Run a pragma that returns a row and discard the result
+     */
+    private static void queryPragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery(pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     // Account CRUD Operations
@@ -103,93 +479,141 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return The row ID of the newly inserted account
      */
     public long addAccount(Account account) {
+        long start = queryStats.start();
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(ACCOUNT_NAME, account.getName());
-        values.put(ACCOUNT_BALANCE, account.getBalance());
+        values.put(ACCOUNT_BALANCE, account.getBalanceMinor());
         values.put(ACCOUNT_TYPE, account.getAccountType());
         values.put(ACCOUNT_CURRENCY, account.getCurrency());
         values.put(ACCOUNT_NOTES, account.getNotes());
+        values.put(ACCOUNT_OPENING_BALANCE, account.getBalanceMinor());
 
         // Insert row
         long id = db.insert(TABLE_ACCOUNTS, null, values);
+
+        if (id != -1) {
+            publishAccountChanges(db, Collections.singleton((int) id));
+            publishChanges(DataChange.account(DataChange.Type.ACCOUNT_ADDED, (int) id));
+        }
+        queryStats.record("addAccount", start, id != -1 ? 1 : 0, null, values.size());
         return id;
     }
 
     /**
      * Get a single account by ID
+     * Served from the account cache; the returned object is a copy the caller may modify.
      * @param id Account ID
      * @return Account object
      */
     public Account getAccount(int id) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(
-                TABLE_ACCOUNTS,
-                new String[] { ACCOUNT_ID, ACCOUNT_NAME, ACCOUNT_BALANCE, ACCOUNT_TYPE, ACCOUNT_CURRENCY, ACCOUNT_NOTES },
-                ACCOUNT_ID + "=?",
-                new String[] { String.valueOf(id) },
-                null, null, null);
-
-        Account account = null;
-        if (cursor != null && cursor.moveToFirst()) {
-            account = new Account(
-                    cursor.getInt(cursor.getColumnIndex(ACCOUNT_ID)),
-                    cursor.getString(cursor.getColumnIndex(ACCOUNT_NAME)),
-                    cursor.getDouble(cursor.getColumnIndex(ACCOUNT_BALANCE)),
-                    cursor.getString(cursor.getColumnIndex(ACCOUNT_TYPE)),
-                    cursor.getString(cursor.getColumnIndex(ACCOUNT_CURRENCY)),
-                    cursor.getString(cursor.getColumnIndex(ACCOUNT_NOTES))
-            );
-            cursor.close();
-        }
-        return account;
+        Account account = getAccountSnapshot().getAccount(id);
+        return account == null ? null : new Account(account);
     }
 
     /**
      * Get all accounts from the database
+     * Served from the account cache; the returned objects are copies the caller may modify.
      * @return List of Account objects
      */
     public List<Account> getAllAccounts() {
+        List<Account> accounts = new ArrayList<>();
+        for (Account account : getAccountSnapshot().getAccounts()) {
+            accounts.add(new Account(account));
+        }
+        return accounts;
+    }
+
+    /**
+     * Get every account and the total balance as one consistent, read-only snapshot.
+     * Only the first call reads SQLite; later writes update the cached snapshot after they commit.
+     * @return Snapshot of all accounts
+     */
+    public AccountSnapshot getAccountSnapshot() {
+        return accountCache.getSnapshot();
+    }
+
+    /**
+     * Read accounts from the accounts table, in id order
+     * @param accountIds IDs of the accounts to read, or null for every account
+     * @return List of Account objects
+     */
+    private List<Account> queryAccounts(Collection<Integer> accountIds) {
         List<Account> accounts = new ArrayList<>();
         String selectQuery = "SELECT * FROM " + TABLE_ACCOUNTS;
+        String[] args = null;
+        if (accountIds != null) {
+            // Writes touch a handful of accounts, far below MAX_IDS_PER_QUERY
+            StringBuilder placeholders = new StringBuilder();
+            args = new String[accountIds.size()];
+            int i = 0;
+            for (Integer accountId : accountIds) {
+                placeholders.append(i == 0 ? "?" : ",?");
+                args[i++] = String.valueOf(accountId);
+            }
+            selectQuery += " WHERE " + ACCOUNT_ID + " IN (" + placeholders + ")";
+        }
+        selectQuery += " ORDER BY " + ACCOUNT_ID;
 
+        long start = queryStats.start();
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery(selectQuery, null);
+        Cursor cursor = db.rawQuery(selectQuery, args);
 
         if (cursor != null && cursor.moveToFirst()) {
             do {
                 Account account = new Account(
                         cursor.getInt(cursor.getColumnIndex(ACCOUNT_ID)),
                         cursor.getString(cursor.getColumnIndex(ACCOUNT_NAME)),
-                        cursor.getDouble(cursor.getColumnIndex(ACCOUNT_BALANCE)),
+                        cursor.getLong(cursor.getColumnIndex(ACCOUNT_BALANCE)),
                         cursor.getString(cursor.getColumnIndex(ACCOUNT_TYPE)),
                         cursor.getString(cursor.getColumnIndex(ACCOUNT_CURRENCY)),
                         cursor.getString(cursor.getColumnIndex(ACCOUNT_NOTES))
                 );
                 accounts.add(account);
             } while (cursor.moveToNext());
+        }
+        if (cursor != null) {
             cursor.close();
         }
+        queryStats.record("queryAccounts", start, accounts.size(), selectQuery, args == null ? 0 : args.length);
         return accounts;
     }
 
     /**
-     * Update an existing account
+     * Update an existing account. The currency can only change while the account has no
+     * transactions, since stored minor units are not converted.
      * @param account Account object to update
-     * @return Number of rows affected
+     * @return Number of rows affected, 0 when a currency change was refused
      */
     public int updateAccount(Account account) {
+        long start = queryStats.start();
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(ACCOUNT_NAME, account.getName());
-        values.put(ACCOUNT_BALANCE, account.getBalance());
-        values.put(ACCOUNT_TYPE, account.getAccountType());
-        values.put(ACCOUNT_CURRENCY, account.getCurrency());
-        values.put(ACCOUNT_NOTES, account.getNotes());
+        SQLiteStatement update = db.compileStatement(UPDATE_ACCOUNT);
+        bindNullableString(update, 1, account.getName());
+        update.bindLong(2, account.getBalanceMinor());
+        update.bindLong(3, account.getBalanceMinor());
+        bindNullableString(update, 4, account.getAccountType());
+        bindNullableString(update, 5, account.getCurrency());
+        bindNullableString(update, 6, account.getNotes());
+        update.bindLong(7, account.getId());
+        bindNullableString(update, 8, account.getCurrency());
+        update.bindLong(9, account.getId());
+
+        // Updating row; cached transactions carry the joined account name and currency
+        int result;
+        transactionCache.beginWrite();
+        try {
+            result = update.executeUpdateDelete();
+        } finally {
+            update.close();
+            transactionCache.endWrite(null);
+        }
 
-        // Updating row
-        int result = db.update(TABLE_ACCOUNTS, values, ACCOUNT_ID + " = ?",
-                new String[] { String.valueOf(account.getId()) });
+        if (result > 0) {
+            publishAccountChanges(db, Collections.singleton(account.getId()));
+            publishChanges(DataChange.account(DataChange.Type.ACCOUNT_UPDATED, account.getId()));
+        }
+        queryStats.record("updateAccount", start, result, UPDATE_ACCOUNT, 9);
         return result;
     }
 
@@ -199,60 +623,152 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return Number of rows affected
      */
     public int deleteAccount(int accountId) {
+        long start = queryStats.start();
         SQLiteDatabase db = this.getWritableDatabase();
-        // First delete all transactions related to this account
-        db.delete(TABLE_TRANSACTIONS, TRANSACTION_ACCOUNT_ID + " = ?", new String[] { String.valueOf(accountId) });
-        // Then delete the account
-        int result = db.delete(TABLE_ACCOUNTS, ACCOUNT_ID + " = ?", new String[] { String.valueOf(accountId) });
+        int result;
+        db.beginTransaction();
+        transactionCache.beginWrite();
+        try {
+            // First delete all transactions related to this account, and their rollups
+            db.delete(TABLE_TRANSACTIONS, TRANSACTION_ACCOUNT_ID + " = ?", new String[] { String.valueOf(accountId) });
+            db.delete(TABLE_ROLLUP_DAILY, ROLLUP_ACCOUNT_ID + " = ?", new String[] { String.valueOf(accountId) });
+            db.delete(TABLE_ROLLUP_MONTHLY, ROLLUP_ACCOUNT_ID + " = ?", new String[] { String.valueOf(accountId) });
+            db.delete(TABLE_RECONCILE_CHECKPOINTS, CHECKPOINT_ACCOUNT_ID + " = ?", new String[] { String.valueOf(accountId) });
+            // Then delete the account
+            result = db.delete(TABLE_ACCOUNTS, ACCOUNT_ID + " = ?", new String[] { String.valueOf(accountId) });
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            transactionCache.endWrite(null);
+        }
+
+        publishAccountChanges(db, Collections.singleton(accountId));
+        if (result > 0) {
+            publishChanges(DataChange.account(DataChange.Type.ACCOUNT_DELETED, accountId));
+        }
+        queryStats.record("deleteAccount", start, result, DELETE_ACCOUNT_SQL, 1);
         return result;
     }
 
     /**
      * Update account balance
+     * The adjustment is a single UPDATE evaluated by SQLite, so concurrent adjustments
+     * cannot overwrite each other.
      * @param accountId ID of the account
-     * @param amount Amount to adjust (positive for increase, negative for decrease)
+     * @param amount Amount to adjust in minor units (positive for increase, negative for decrease)
      * @return True if successful, false otherwise
      */
-    public boolean updateAccountBalance(int accountId, double amount) {
-        Account account = getAccount(accountId);
-        if (account == null) {
-            return false;
+    public boolean updateAccountBalance(int accountId, long amount) {
+        long start = queryStats.start();
+        SQLiteDatabase db = this.getWritableDatabase();
+        boolean adjusted = adjustBalance(db, accountId, amount);
+        if (adjusted) {
+            publishAccountChanges(db, Collections.singleton(accountId));
+            publishChanges(DataChange.account(DataChange.Type.ACCOUNT_BALANCE_CHANGED, accountId));
         }
+        queryStats.record("updateAccountBalance", start, adjusted ? 1 : 0, ADJUST_ACCOUNT_BALANCE, 2);
+        return adjusted;
+    }
 
-        double newBalance = account.getBalance() + amount;
-        account.setBalance(newBalance);
+    /**
+     * Bring the account cache up to date after a committed write to some accounts
+     * @param accountIds IDs of the accounts that were added, changed or deleted
+     */
+    private void publishAccountChanges(SQLiteDatabase db, Collection<Integer> accountIds) {
+        if (db.inTransaction()) {
+            // The caller's transaction can still roll the changes back
+            accountCache.invalidate();
+        } else {
+            accountCache.refresh(accountIds);
+        }
+    }
+
+    /**
+     * Bring the account cache up to date after committed transaction writes, and notify
+     * listeners of the transactions and of the accounts whose balance they touched
+     * @param balanceChanges Change in minor units keyed by account id
+     * @param transactionChanges Changes made to transactions
+     */
+    private void publishBalanceChanges(SQLiteDatabase db, Map<Integer, Long> balanceChanges,
+                                       List<DataChange> transactionChanges) {
+        publishAccountChanges(db, balanceChanges.keySet());
+        List<DataChange> changes = new ArrayList<>(transactionChanges);
+        for (Integer accountId : balanceChanges.keySet()) {
+            changes.add(DataChange.account(DataChange.Type.ACCOUNT_BALANCE_CHANGED, accountId));
+        }
+        changeBus.publish(changes);
+    }
+
+    private void publishChanges(DataChange change) {
+        changeBus.publish(Collections.singletonList(change));
+    }
 
-        return updateAccount(account) > 0;
+    /**
+     * Add an amount to an account balance in place, as part of the caller's database transaction
+     * @param db Writable database
+     * @param accountId ID of the account
+     * @param amount Amount to adjust in minor units (positive for increase, negative for decrease)
+     * @return True if the account exists, false otherwise
+     */
+    private static boolean adjustBalance(SQLiteDatabase db, int accountId, long amount) {
+        SQLiteStatement statement = db.compileStatement(ADJUST_ACCOUNT_BALANCE);
+        try {
+            statement.bindLong(1, amount);
+            statement.bindLong(2, accountId);
+            return statement.executeUpdateDelete() > 0;
+        } finally {
+            statement.close();
+        }
     }
 
     // Transaction CRUD Operations
 
     /**
      * Add a new transaction to the database
+     * The row insert, the balance adjustment and the rollup update are committed together.
      * @param transaction Transaction object to be added
      * @return The row ID of the newly inserted transaction
      */
     public long addTransaction(Transaction transaction) {
+        long start = queryStats.start();
         SQLiteDatabase db = this.getWritableDatabase();
 
         ContentValues values = new ContentValues();
-        values.put(TRANSACTION_AMOUNT, transaction.getAmount());
+        values.put(TRANSACTION_AMOUNT, transaction.getAmountMinor());
         values.put(TRANSACTION_TYPE, transaction.getType());
-        values.put(TRANSACTION_CATEGORY, transaction.getCategory());
+        values.put(TRANSACTION_CATEGORY_ID, resolveCategoryId(transaction.getCategory()));
         values.put(TRANSACTION_DESCRIPTION, transaction.getDescription());
-        values.put(TRANSACTION_DATE, DATE_FORMAT.format(transaction.getDate()));
+        values.put(TRANSACTION_DATE, transaction.getDateMillis());
         values.put(TRANSACTION_ACCOUNT_ID, transaction.getAccountId());
+        int periodDay = new PeriodKeys().day(transaction.getDateMillis());
+        values.put(TRANSACTION_PERIOD_DAY, periodDay);
+
+        long id;
+        long balanceChange = signedAmount(transaction.getType(), transaction.getAmountMinor());
+        db.beginTransaction();
+        try {
+            // Insert row
+            id = db.insert(TABLE_TRANSACTIONS, null, values);
+
+            // Update account balance and rollups
+            if (id != -1) {
+                adjustBalance(db, transaction.getAccountId(), balanceChange);
+
+                RollupDeltas rollupDeltas = new RollupDeltas();
+                addRollupDelta(rollupDeltas, transaction, periodDay, 1);
+                applyRollupDeltas(db, rollupDeltas);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
-        // Insert row
-        long id = db.insert(TABLE_TRANSACTIONS, null, values);
-
-        // Update account balance
-        double amountToUpdate = transaction.getType().equals("INCOME")
-                ? transaction.getAmount()
-                : -transaction.getAmount();
-
-        updateAccountBalance(transaction.getAccountId(), amountToUpdate);
-
+        if (id != -1) {
+            publishBalanceChanges(db, Collections.singletonMap(transaction.getAccountId(), balanceChange),
+                    Collections.singletonList(DataChange.transaction(DataChange.Type.TRANSACTION_ADDED,
+                            (int) id, transaction.getAccountId())));
+        }
+        queryStats.record("addTransaction", start, id != -1 ? 1 : 0, null, values.size());
         return id;
     }
 
@@ -262,32 +778,44 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return Transaction object
      */
     public Transaction getTransaction(int id) {
-        SQLiteDatabase db = this.getReadableDatabase();
+        long start = queryStats.start();
+        Transaction cached = transactionCache.get(id);
+        if (cached != null) {
+            // Kept apart so that cache hits do not hide the latency of the query
+            queryStats.record("getTransaction(cached)", start, 1, null, 0);
+            return cached;
+        }
 
-        String selectQuery = "SELECT t.*, a.name as account_name FROM " + TABLE_TRANSACTIONS + " t "
-                + "LEFT JOIN " + TABLE_ACCOUNTS + " a ON t.account_id = a.id "
-                + "WHERE t.id = ?";
+        long cacheToken = transactionCache.beginRead();
+        Transaction transaction = queryTransaction(id);
+        if (transaction != null) {
+            transactionCache.putAll(cacheToken, Collections.singletonList(transaction));
+        }
+        queryStats.record("getTransaction", start, transaction != null ? 1 : 0, SELECT_TRANSACTION, 1);
+        return transaction;
+    }
 
-        Cursor cursor = db.rawQuery(selectQuery, new String[] { String.valueOf(id) });
+    /**
+     * Get the stored row of a transaction about to be changed, from the cache when it was
+     * recently listed. Called inside the write's database transaction.
+     * @param id Transaction ID
+     * @return Transaction object, or null if it does not exist
+     */
+    private Transaction findOldTransaction(int id) {
+        Transaction cached = transactionCache.take(id);
+        return cached != null ? cached : queryTransaction(id);
+    }
+
+    /**
+     * Read a single transaction by ID from the database
+     */
+    private Transaction queryTransaction(int id) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(SELECT_TRANSACTION, new String[] { String.valueOf(id) });
 
         Transaction transaction = null;
         if (cursor != null && cursor.moveToFirst()) {
-            try {
-                Date date = DATE_FORMAT.parse(cursor.getString(cursor.getColumnIndex(TRANSACTION_DATE)));
-
-                transaction = new Transaction(
-                        cursor.getInt(cursor.getColumnIndex(TRANSACTION_ID)),
-                        cursor.getDouble(cursor.getColumnIndex(TRANSACTION_AMOUNT)),
-                        cursor.getString(cursor.getColumnIndex(TRANSACTION_TYPE)),
-                        cursor.getString(cursor.getColumnIndex(TRANSACTION_CATEGORY)),
-                        cursor.getString(cursor.getColumnIndex(TRANSACTION_DESCRIPTION)),
-                        date,
-                        cursor.getInt(cursor.getColumnIndex(TRANSACTION_ACCOUNT_ID)),
-                        cursor.getString(cursor.getColumnIndex("account_name"))
-                );
-            } catch (ParseException e) {
-                e.printStackTrace();
-            }
+            transaction = new TransactionRow(cursor, categories).toTransaction();
             cursor.close();
         }
         return transaction;
@@ -299,38 +827,18 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return List of Transaction objects
      */
     public List<Transaction> getTransactionsByAccount(int accountId) {
-        List<Transaction> transactions = new ArrayList<>();
-
-        String selectQuery = "SELECT t.*, a.name as account_name FROM " + TABLE_TRANSACTIONS + " t "
+        String selectQuery = "SELECT t.*, a.name as account_name, a.currency as account_currency FROM " + TABLE_TRANSACTIONS + " t "
                 + "LEFT JOIN " + TABLE_ACCOUNTS + " a ON t.account_id = a.id "
                 + "WHERE t.account_id = ? "
                 + "ORDER BY t.date DESC";
 
+        long start = queryStats.start();
         SQLiteDatabase db = this.getReadableDatabase();
+        long cacheToken = transactionCache.beginRead();
         Cursor cursor = db.rawQuery(selectQuery, new String[] { String.valueOf(accountId) });
-
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                try {
-                    Date date = DATE_FORMAT.parse(cursor.getString(cursor.getColumnIndex(TRANSACTION_DATE)));
-
-                    Transaction transaction = new Transaction(
-                            cursor.getInt(cursor.getColumnIndex(TRANSACTION_ID)),
-                            cursor.getDouble(cursor.getColumnIndex(TRANSACTION_AMOUNT)),
-                            cursor.getString(cursor.getColumnIndex(TRANSACTION_TYPE)),
-                            cursor.getString(cursor.getColumnIndex(TRANSACTION_CATEGORY)),
-                            cursor.getString(cursor.getColumnIndex(TRANSACTION_DESCRIPTION)),
-                            date,
-                            cursor.getInt(cursor.getColumnIndex(TRANSACTION_ACCOUNT_ID)),
-                            cursor.getString(cursor.getColumnIndex("account_name"))
-                    );
-                    transactions.add(transaction);
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                }
-            } while (cursor.moveToNext());
-            cursor.close();
-        }
+        List<Transaction> transactions = readTransactions(cursor);
+        transactionCache.putAll(cacheToken, transactions);
+        queryStats.record("getTransactionsByAccount", start, transactions.size(), selectQuery, 1);
         return transactions;
     }
 
@@ -339,35 +847,254 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return List of Transaction objects
      */
     public List<Transaction> getAllTransactions() {
-        List<Transaction> transactions = new ArrayList<>();
-
-        String selectQuery = "SELECT t.*, a.name as account_name FROM " + TABLE_TRANSACTIONS + " t "
+        String selectQuery = "SELECT t.*, a.name as account_name, a.currency as account_currency FROM " + TABLE_TRANSACTIONS + " t "
                 + "LEFT JOIN " + TABLE_ACCOUNTS + " a ON t.account_id = a.id "
                 + "ORDER BY t.date DESC";
 
+        long start = queryStats.start();
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(selectQuery, null);
+        List<Transaction> transactions = readTransactions(cursor);
+        queryStats.record("getAllTransactions", start, transactions.size(), selectQuery, 0);
+        return transactions;
+    }
+
+    /**
+     * Get one page of transactions, newest first, using a (date, id) keyset cursor.
+     * Rows are ordered by date and then by id so that the key of the last row of a page
+     * identifies exactly where the next page starts, without OFFSET scans.
+     * @param accountId Account ID, or {@link #ALL_ACCOUNTS} for every account
+     * @param after Key of the last row of the previous page, or null for the first page
+     * @param limit Maximum number of rows to return
+     * @return List of Transaction objects, empty when there are no more rows
+     */
+    public List<Transaction> getTransactionsPage(int accountId, PageKey after, int limit) {
+        StringBuilder selectQuery = new StringBuilder("SELECT t.*, a.name as account_name, a.currency as account_currency FROM ")
+                .append(TABLE_TRANSACTIONS).append(" t ")
+                .append("LEFT JOIN ").append(TABLE_ACCOUNTS).append(" a ON t.account_id = a.id ");
+        List<String> args = new ArrayList<>();
+        String conjunction = "WHERE ";
+
+        if (accountId != ALL_ACCOUNTS) {
+            selectQuery.append(conjunction).append("t.account_id = ? ");
+            args.add(String.valueOf(accountId));
+            conjunction = "AND ";
+        }
+
+        if (after != null) {
+            String afterDate = String.valueOf(after.getDateMillis());
+            selectQuery.append(conjunction).append("(t.date < ? OR (t.date = ? AND t.id < ?)) ");
+            args.add(afterDate);
+            args.add(afterDate);
+            args.add(String.valueOf(after.getId()));
+        }
+
+        selectQuery.append("ORDER BY t.date DESC, t.id DESC LIMIT ").append(limit);
+
+        long start = queryStats.start();
+        String sql = selectQuery.toString();
+        SQLiteDatabase db = this.getReadableDatabase();
+        long cacheToken = transactionCache.beginRead();
+        Cursor cursor = db.rawQuery(sql, args.toArray(new String[0]));
+        List<Transaction> transactions = readTransactions(cursor);
+        transactionCache.putAll(cacheToken, transactions);
+        queryStats.record("getTransactionsPage", start, transactions.size(), sql, args.size());
+        return transactions;
+    }
+
+    /**
+     * Stream the transactions matching a filter, oldest first, without building a list.
+     * Only the current row is held in memory, so this runs in constant memory over any
+     * number of rows.
+     * @param filter Conditions the rows must match
+     * @param visitor Receives each row; returning false stops the query
+     * @return Number of rows visited
+     */
+    public int forEachTransaction(TransactionFilter filter, TransactionVisitor visitor) {
+        StringBuilder selectQuery = new StringBuilder("SELECT t.*, a.name as account_name, a.currency as account_currency FROM ")
+                .append(TABLE_TRANSACTIONS).append(" t ")
+                .append("LEFT JOIN ").append(TABLE_ACCOUNTS).append(" a ON t.account_id = a.id ");
+        List<String> args = new ArrayList<>();
+        appendWhere(selectQuery, args, filter);
+        selectQuery.append("ORDER BY t.date, t.id");
+
+        long start = queryStats.start();
+        String sql = selectQuery.toString();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(sql, args.toArray(new String[0]));
+        int visited = 0;
+        try {
+            if (cursor.moveToFirst()) {
+                TransactionRow row = new TransactionRow(cursor, categories);
+                do {
+                    visited++;
+                    if (!visitor.visit(row)) {
+                        break;
+                    }
+                } while (cursor.moveToNext());
+            }
+        } finally {
+            cursor.close();
+        }
+        queryStats.record("forEachTransaction", start, visited, sql, args.size());
+        return visited;
+    }
+
+    /**
+     * Append a WHERE clause for the filter to a query over transactions aliased as t
+     * @param query Query to extend
+     * @param args Receives the bound values
+     * @param filter Conditions the rows must match
+     */
+    private static void appendWhere(StringBuilder query, List<String> args, TransactionFilter filter) {
+        appendConditions(query, args, filter, "WHERE ");
+    }
+
+    /**
+     * Append the filter's conditions to a query over transactions aliased as t
+     * @param conjunction "WHERE " if the query has no WHERE clause yet, otherwise "AND "
+     * @return Conjunction for the next condition
+     */
+    private static String appendConditions(StringBuilder query, List<String> args, TransactionFilter filter,
+                                           String conjunction) {
+        if (filter.hasAccount()) {
+            query.append(conjunction).append("t.account_id = ? ");
+            args.add(String.valueOf(filter.getAccountId()));
+            conjunction = "AND ";
+        }
+        if (filter.getType() != null) {
+            query.append(conjunction).append("t.type = ? ");
+            args.add(filter.getType());
+            conjunction = "AND ";
+        }
+        if (filter.getFromMillis() != Long.MIN_VALUE) {
+            query.append(conjunction).append("t.date >= ? ");
+            args.add(String.valueOf(filter.getFromMillis()));
+            conjunction = "AND ";
+        }
+        if (filter.getToMillis() != Long.MAX_VALUE) {
+            query.append(conjunction).append("t.date < ? ");
+            args.add(String.valueOf(filter.getToMillis()));
+            conjunction = "AND ";
+        }
+        return conjunction;
+    }
+
+    /**
+     * Search transaction descriptions and categories through the full-text index.
+     * Every word of the query must appear in the row, as a whole word or a word prefix,
+     * so results narrow as the user types. Only the SEARCH_CANDIDATE_LIMIT newest matching
+     * rows are returned. Among them, rows with more occurrences of the query terms come
+     * first, then newer rows; pages continue with a (rank, date, id) keyset cursor.
+     * @param query Text typed by the user; punctuation is ignored
+     * @param filter Conditions the rows must also match
+     * @param after Key of the last row of the previous page, or null for the first page
+     * @param limit Maximum number of rows to return
+     * @return Page of results, empty if there are no more or the query has no words
+     */
+    public SearchPage searchTransactions(String query, TransactionFilter filter, SearchKey after, int limit) {
+        String match = toMatchExpression(query);
+        if (match == null) {
+            return new SearchPage(new ArrayList<Transaction>(), null);
+        }
+
+        // The candidates are picked by date without computing the rank, and only they are ranked
+        StringBuilder selectQuery = new StringBuilder("SELECT t.*, a.name as account_name, a.currency as account_currency, ")
+                .append("m.search_rank FROM (SELECT docid, ").append(SEARCH_RANK).append(" AS search_rank FROM ")
+                .append(TABLE_TRANSACTIONS_FTS).append(" WHERE ").append(TABLE_TRANSACTIONS_FTS).append(" MATCH ? ")
+                .append("AND docid IN (SELECT c.docid FROM ").append(TABLE_TRANSACTIONS_FTS).append(" c JOIN ")
+                .append(TABLE_TRANSACTIONS).append(" t ON t.id = c.docid WHERE c.").append(TABLE_TRANSACTIONS_FTS)
+                .append(" MATCH ? ");
+        List<String> args = new ArrayList<>();
+        args.add(match);
+        args.add(match);
+        appendConditions(selectQuery, args, filter, "AND ");
+        selectQuery.append("ORDER BY t.date DESC, t.id DESC LIMIT ").append(SEARCH_CANDIDATE_LIMIT).append(")) m ")
+                .append("JOIN ").append(TABLE_TRANSACTIONS).append(" t ON t.id = m.docid ")
+                .append("LEFT JOIN ").append(TABLE_ACCOUNTS).append(" a ON t.account_id = a.id ");
+        String conjunction = "WHERE ";
+
+        if (after != null) {
+            // The rank is an integer expression without affinity, so it is inlined rather than
+            // bound: a bound String would compare as TEXT
+            String afterDate = String.valueOf(after.getDateMillis());
+            selectQuery.append(conjunction).append("(m.search_rank < ").append(after.getRank())
+                    .append(" OR (m.search_rank = ").append(after.getRank())
+                    .append(" AND (t.date < ? OR (t.date = ? AND t.id < ?)))) ");
+            args.add(afterDate);
+            args.add(afterDate);
+            args.add(String.valueOf(after.getId()));
+        }
+
+        selectQuery.append("ORDER BY m.search_rank DESC, t.date DESC, t.id DESC LIMIT ").append(limit);
+
+        long start = queryStats.start();
+        String sql = selectQuery.toString();
+        SQLiteDatabase db = this.getReadableDatabase();
+        long cacheToken = transactionCache.beginRead();
+        Cursor cursor = db.rawQuery(sql, args.toArray(new String[0]));
+        List<Transaction> transactions = new ArrayList<>();
+        SearchKey lastKey = null;
+        try {
+            if (cursor.moveToFirst()) {
+                TransactionRow row = new TransactionRow(cursor, categories);
+                int rankIndex = cursor.getColumnIndexOrThrow("search_rank");
+                int lastRank;
+                do {
+                    transactions.add(row.toTransaction());
+                    lastRank = cursor.getInt(rankIndex);
+                } while (cursor.moveToNext());
+                Transaction last = transactions.get(transactions.size() - 1);
+                lastKey = new SearchKey(lastRank, last.getDateMillis(), last.getId());
+            }
+        } finally {
+            cursor.close();
+        }
+        transactionCache.putAll(cacheToken, transactions);
+        queryStats.record("searchTransactions", start, transactions.size(), sql, args.size());
+        return new SearchPage(transactions, lastKey);
+    }
+
+    /**
+     * Turn search text into a full-text query requiring every word, each as a prefix
+     * @return MATCH expression, or null if the text has no letters or digits
+     */
+    static String toMatchExpression(String text) {
+        StringBuilder match = new StringBuilder();
+        int length = text == null ? 0 : text.length();
+        int wordStart = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && wordStart < 0) {
+                wordStart = i;
+            } else if (!wordChar && wordStart >= 0) {
+                // Quoted, so words such as OR and NOT are not read as operators
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append('"').append(text, wordStart, i).append("*\"");
+                wordStart = -1;
+            }
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * Read every row of a transaction query into a list and close the cursor
+     * @param cursor Cursor over transactions joined with the account name
+     * @return List of Transaction objects
+     */
+    private List<Transaction> readTransactions(Cursor cursor) {
+        List<Transaction> transactions = new ArrayList<>();
 
         if (cursor != null && cursor.moveToFirst()) {
+            // Column indices are resolved once for the whole result
+            TransactionRow row = new TransactionRow(cursor, categories);
             do {
-                try {
-                    Date date = DATE_FORMAT.parse(cursor.getString(cursor.getColumnIndex(TRANSACTION_DATE)));
-
-                    Transaction transaction = new Transaction(
-                            cursor.getInt(cursor.getColumnIndex(TRANSACTION_ID)),
-                            cursor.getDouble(cursor.getColumnIndex(TRANSACTION_AMOUNT)),
-                            cursor.getString(cursor.getColumnIndex(TRANSACTION_TYPE)),
-                            cursor.getString(cursor.getColumnIndex(TRANSACTION_CATEGORY)),
-                            cursor.getString(cursor.getColumnIndex(TRANSACTION_DESCRIPTION)),
-                            date,
-                            cursor.getInt(cursor.getColumnIndex(TRANSACTION_ACCOUNT_ID)),
-                            cursor.getString(cursor.getColumnIndex("account_name"))
-                    );
-                    transactions.add(transaction);
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                }
+                transactions.add(row.toTransaction());
             } while (cursor.moveToNext());
+        }
+        if (cursor != null) {
             cursor.close();
         }
         return transactions;
@@ -375,153 +1102,879 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
     /**
      * Update an existing transaction
+     * The old row is read, the row is rewritten and both balance adjustments and the
+     * rollup updates are applied within one database transaction.
      * @param transaction Transaction object to update
      * @return Number of rows affected
      */
     public int updateTransaction(Transaction transaction) {
+        long start = queryStats.start();
         SQLiteDatabase db = this.getWritableDatabase();
 
-        // First get the old transaction to update account balance properly
-        Transaction oldTransaction = getTransaction(transaction.getId());
-
-        if (oldTransaction != null) {
-            // Reverse the effect of the old transaction
-            double reverseAmount = oldTransaction.getType().equals("INCOME")
-                    ? -oldTransaction.getAmount()
-                    : oldTransaction.getAmount();
-
-            // Apply the new transaction
-            double newAmount = transaction.getType().equals("INCOME")
-                    ? transaction.getAmount()
-                    : -transaction.getAmount();
-
-            // If account changed, update both accounts
-            if (oldTransaction.getAccountId() != transaction.getAccountId()) {
-                updateAccountBalance(oldTransaction.getAccountId(), reverseAmount);
-                updateAccountBalance(transaction.getAccountId(), newAmount);
-            } else {
-                // Same account, just update the difference
-                updateAccountBalance(transaction.getAccountId(), reverseAmount + newAmount);
-            }
-        }
-
         ContentValues values = new ContentValues();
-        values.put(TRANSACTION_AMOUNT, transaction.getAmount());
+        values.put(TRANSACTION_AMOUNT, transaction.getAmountMinor());
         values.put(TRANSACTION_TYPE, transaction.getType());
-        values.put(TRANSACTION_CATEGORY, transaction.getCategory());
+        values.put(TRANSACTION_CATEGORY_ID, resolveCategoryId(transaction.getCategory()));
         values.put(TRANSACTION_DESCRIPTION, transaction.getDescription());
-        values.put(TRANSACTION_DATE, DATE_FORMAT.format(transaction.getDate()));
+        values.put(TRANSACTION_DATE, transaction.getDateMillis());
         values.put(TRANSACTION_ACCOUNT_ID, transaction.getAccountId());
+        int periodDay = new PeriodKeys().day(transaction.getDateMillis());
+        values.put(TRANSACTION_PERIOD_DAY, periodDay);
+
+        int result;
+        Map<Integer, Long> balanceChanges = new HashMap<>();
+        List<DataChange> transactionChanges = new ArrayList<>();
+        db.beginTransaction();
+        transactionCache.beginWrite();
+        try {
+            // First get the old transaction to update account balance properly
+            Transaction oldTransaction = findOldTransaction(transaction.getId());
+
+            // Updating row
+            result = db.update(TABLE_TRANSACTIONS, values, TRANSACTION_ID + " = ?",
+                    new String[] { String.valueOf(transaction.getId()) });
+
+            if (oldTransaction != null && result > 0) {
+                // Reverse the effect of the old transaction
+                long reverseAmount = -signedAmount(oldTransaction.getType(), oldTransaction.getAmountMinor());
+
+                // Apply the new transaction
+                long newAmount = signedAmount(transaction.getType(), transaction.getAmountMinor());
+
+                // If account changed, update both accounts
+                if (oldTransaction.getAccountId() != transaction.getAccountId()) {
+                    adjustBalance(db, oldTransaction.getAccountId(), reverseAmount);
+                    adjustBalance(db, transaction.getAccountId(), newAmount);
+                } else {
+                    // Same account, just update the difference
+                    adjustBalance(db, transaction.getAccountId(), reverseAmount + newAmount);
+                }
+                addBalanceChange(balanceChanges, oldTransaction.getAccountId(), reverseAmount);
+                addBalanceChange(balanceChanges, transaction.getAccountId(), newAmount);
+                transactionChanges.add(DataChange.transaction(DataChange.Type.TRANSACTION_UPDATED,
+                        transaction.getId(), transaction.getAccountId()));
+                if (oldTransaction.getAccountId() != transaction.getAccountId()) {
+                    // Moved out of the old account
+                    transactionChanges.add(DataChange.transaction(DataChange.Type.TRANSACTION_UPDATED,
+                            transaction.getId(), oldTransaction.getAccountId()));
+                }
 
-        // Updating row
-        int result = db.update(TABLE_TRANSACTIONS, values, TRANSACTION_ID + " = ?",
-                new String[] { String.valueOf(transaction.getId()) });
+                RollupDeltas rollupDeltas = new RollupDeltas();
+                addRollupDelta(rollupDeltas, oldTransaction, oldTransaction.getPeriodDay(), -1);
+                addRollupDelta(rollupDeltas, transaction, periodDay, 1);
+                applyRollupDeltas(db, rollupDeltas);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            transactionCache.endWrite(Collections.singleton(transaction.getId()));
+        }
+
+        publishBalanceChanges(db, balanceChanges, transactionChanges);
+        queryStats.record("updateTransaction", start, result, null, values.size() + 1);
         return result;
     }
 
     /**
      * Delete a transaction
+     * The row delete, the balance adjustment and the rollup update are committed together.
      * @param transactionId ID of the transaction to delete
      * @return Number of rows affected
      */
     public int deleteTransaction(int transactionId) {
+        long start = queryStats.start();
         SQLiteDatabase db = this.getWritableDatabase();
 
-        // First get the transaction to update account balance properly
-        Transaction transaction = getTransaction(transactionId);
+        int result;
+        Map<Integer, Long> balanceChanges = new HashMap<>();
+        List<DataChange> transactionChanges = new ArrayList<>();
+        db.beginTransaction();
+        transactionCache.beginWrite();
+        try {
+            // First get the transaction to update account balance properly
+            Transaction transaction = findOldTransaction(transactionId);
+
+            // Delete the transaction
+            result = db.delete(TABLE_TRANSACTIONS, TRANSACTION_ID + " = ?",
+                    new String[] { String.valueOf(transactionId) });
+
+            if (transaction != null && result > 0) {
+                // Reverse the effect of the transaction
+                long reverseAmount = -signedAmount(transaction.getType(), transaction.getAmountMinor());
+                adjustBalance(db, transaction.getAccountId(), reverseAmount);
+                addBalanceChange(balanceChanges, transaction.getAccountId(), reverseAmount);
+                transactionChanges.add(DataChange.transaction(DataChange.Type.TRANSACTION_DELETED,
+                        transactionId, transaction.getAccountId()));
+
+                RollupDeltas rollupDeltas = new RollupDeltas();
+                addRollupDelta(rollupDeltas, transaction, transaction.getPeriodDay(), -1);
+                applyRollupDeltas(db, rollupDeltas);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            transactionCache.endWrite(Collections.singleton(transactionId));
+        }
 
-        if (transaction != null) {
-            // Reverse the effect of the transaction
-            double reverseAmount = transaction.getType().equals("INCOME")
-                    ? -transaction.getAmount()
-                    : transaction.getAmount();
+        publishBalanceChanges(db, balanceChanges, transactionChanges);
+        queryStats.record("deleteTransaction", start, result, DELETE_TRANSACTION, 1);
+        return result;
+    }
+
+    // Batch Transaction Operations
+
+    /**
+     * Add several transactions in a single database transaction.
+     * The insert statement is compiled once, and each account balance and rollup row is
+     * written once per batch.
+     * @param transactions Transaction objects to be added
+     * @return Row IDs of the newly inserted transactions, in iteration order
+     */
+    public long[] addTransactions(Collection<Transaction> transactions) {
+        long start = queryStats.start();
+        SQLiteDatabase db = this.getWritableDatabase();
+        long[] ids = new long[transactions.size()];
+        Map<Integer, Long> balanceChanges = new HashMap<>();
+        List<DataChange> transactionChanges = new ArrayList<>(transactions.size());
+        RollupDeltas rollupDeltas = new RollupDeltas();
+        PeriodKeys periodKeys = new PeriodKeys();
+        resolveCategoryIds(transactions);
+
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement(INSERT_TRANSACTION);
+        try {
+            int i = 0;
+            for (Transaction transaction : transactions) {
+                int periodDay = periodKeys.day(transaction.getDateMillis());
+                bindTransaction(insert, transaction, periodDay);
+                ids[i] = insert.executeInsert();
+                transactionChanges.add(DataChange.transaction(DataChange.Type.TRANSACTION_ADDED,
+                        (int) ids[i++], transaction.getAccountId()));
+                addBalanceChange(balanceChanges, transaction.getAccountId(),
+                        signedAmount(transaction.getType(), transaction.getAmountMinor()));
+                addRollupDelta(rollupDeltas, transaction, periodDay, 1);
+            }
+
+            applyBalanceChanges(db, balanceChanges);
+            applyRollupDeltas(db, rollupDeltas);
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
+        }
+
+        publishBalanceChanges(db, balanceChanges, transactionChanges);
+        queryStats.record("addTransactions", start, ids.length, INSERT_TRANSACTION, 7);
+        return ids;
+    }
+
+    /**
+     * Update several transactions in a single database transaction.
+     * Old rows are read in chunks to reverse their balance and rollup effect, and each
+     * account balance and rollup row is written once per batch. A transaction listed more
+     * than once is updated once, to its last version, since its old row is reversed once.
+     * @param transactions Transaction objects to update
+     * @return Number of rows affected
+     */
+    public int updateTransactions(Collection<Transaction> transactions) {
+        long start = queryStats.start();
+        SQLiteDatabase db = this.getWritableDatabase();
+        Map<Integer, Transaction> latest = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            latest.put(transaction.getId(), transaction);
+        }
+        Collection<Transaction> updates = latest.values();
+        List<Integer> ids = new ArrayList<>(latest.keySet());
+
+        Map<Integer, Long> balanceChanges = new HashMap<>();
+        List<DataChange> transactionChanges = new ArrayList<>(updates.size());
+        RollupDeltas rollupDeltas = new RollupDeltas();
+        PeriodKeys periodKeys = new PeriodKeys();
+        int result = 0;
+        resolveCategoryIds(updates);
+
+        db.beginTransaction();
+        transactionCache.beginWrite();
+        SQLiteStatement update = db.compileStatement(UPDATE_TRANSACTION);
+        try {
+            // Reverse the effect of the old transactions
+            addReversedEffects(db, ids, balanceChanges, rollupDeltas);
+
+            for (Transaction transaction : updates) {
+                int periodDay = periodKeys.day(transaction.getDateMillis());
+                bindTransaction(update, transaction, periodDay);
+                update.bindLong(8, transaction.getId());
+                int affected = update.executeUpdateDelete();
+                if (affected > 0) {
+                    // Apply the new transaction
+                    addBalanceChange(balanceChanges, transaction.getAccountId(),
+                            signedAmount(transaction.getType(), transaction.getAmountMinor()));
+                    addRollupDelta(rollupDeltas, transaction, periodDay, 1);
+                    transactionChanges.add(DataChange.transaction(DataChange.Type.TRANSACTION_UPDATED,
+                            transaction.getId(), transaction.getAccountId()));
+                    result += affected;
+                }
+            }
+
+            applyBalanceChanges(db, balanceChanges);
+            applyRollupDeltas(db, rollupDeltas);
+            db.setTransactionSuccessful();
+        } finally {
+            update.close();
+            db.endTransaction();
+            transactionCache.endWrite(ids);
+        }
+
+        publishBalanceChanges(db, balanceChanges, transactionChanges);
+        queryStats.record("updateTransactions", start, result, UPDATE_TRANSACTION, 8);
+        return result;
+    }
+
+    /**
+     * Delete several transactions in a single database transaction.
+     * Each account balance and rollup row is written once per batch.
+     * @param transactionIds IDs of the transactions to delete
+     * @return Number of rows affected
+     */
+    public int deleteTransactions(Collection<Integer> transactionIds) {
+        long start = queryStats.start();
+        SQLiteDatabase db = this.getWritableDatabase();
+        Map<Integer, Long> balanceChanges = new HashMap<>();
+        List<DataChange> transactionChanges = new ArrayList<>(transactionIds.size());
+        RollupDeltas rollupDeltas = new RollupDeltas();
+        int result = 0;
+
+        db.beginTransaction();
+        transactionCache.beginWrite();
+        SQLiteStatement delete = db.compileStatement(DELETE_TRANSACTION);
+        try {
+            // Reverse the effect of the deleted transactions
+            addReversedEffects(db, transactionIds, balanceChanges, rollupDeltas);
+
+            for (int transactionId : transactionIds) {
+                delete.bindLong(1, transactionId);
+                if (delete.executeUpdateDelete() > 0) {
+                    // Accounts are only known per batch, through their balance change
+                    transactionChanges.add(DataChange.transaction(DataChange.Type.TRANSACTION_DELETED,
+                            transactionId, DataChange.NO_ID));
+                    result++;
+                }
+            }
+
+            applyBalanceChanges(db, balanceChanges);
+            applyRollupDeltas(db, rollupDeltas);
+            db.setTransactionSuccessful();
+        } finally {
+            delete.close();
+            db.endTransaction();
+            transactionCache.endWrite(transactionIds);
+        }
+
+        publishBalanceChanges(db, balanceChanges, transactionChanges);
+        queryStats.record("deleteTransactions", start, result, DELETE_TRANSACTION, 1);
+        return result;
+    }
+
+    /**
+     * Bind the column values of a transaction to parameters 1-7 of an insert or update statement.
+     * Its category must have been resolved with {@link #resolveCategoryIds}.
+     * @param periodDay Day key of the transaction's date, see PeriodKeys
+     */
+    private void bindTransaction(SQLiteStatement statement, Transaction transaction, int periodDay) {
+        statement.bindLong(1, transaction.getAmountMinor());
+        bindNullableString(statement, 2, transaction.getType());
+        if (isUncategorized(transaction.getCategory())) {
+            statement.bindNull(3);
+        } else {
+            statement.bindLong(3, categoryIdOf(transaction.getCategory()));
+        }
+        bindNullableString(statement, 4, transaction.getDescription());
+        statement.bindLong(5, transaction.getDateMillis());
+        statement.bindLong(6, transaction.getAccountId());
+        statement.bindLong(7, periodDay);
+    }
+
+    private static void bindNullableString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Read the stored amount, type, account, day key and category of the given transactions and
+     * add the reverse of their balance effect to balanceChanges and of their rollup effect to rollupDeltas.
+     * Rows in the transaction cache are not read again.
+     */
+    private void addReversedEffects(SQLiteDatabase db, Collection<Integer> transactionIds,
+                                    Map<Integer, Long> balanceChanges, RollupDeltas rollupDeltas) {
+        List<Integer> uncachedIds = new ArrayList<>();
+        // Each row is reversed once, however often it is listed
+        for (Integer transactionId : new LinkedHashSet<>(transactionIds)) {
+            Transaction cached = transactionCache.take(transactionId);
+            if (cached == null) {
+                uncachedIds.add(transactionId);
+            } else {
+                addBalanceChange(balanceChanges, cached.getAccountId(),
+                        -signedAmount(cached.getType(), cached.getAmountMinor()));
+                addRollupDelta(rollupDeltas, cached, cached.getPeriodDay(), -1);
+            }
+        }
+
+        Iterator<Integer> iterator = uncachedIds.iterator();
+        while (iterator.hasNext()) {
+            List<String> args = new ArrayList<>();
+            StringBuilder placeholders = new StringBuilder();
+            while (iterator.hasNext() && args.size() < MAX_IDS_PER_QUERY) {
+                placeholders.append(args.isEmpty() ? "?" : ",?");
+                args.add(String.valueOf(iterator.next()));
+            }
+
+            String query = "SELECT " + TRANSACTION_AMOUNT + ", " + TRANSACTION_TYPE + ", " + TRANSACTION_ACCOUNT_ID
+                    + ", " + TRANSACTION_PERIOD_DAY + ", COALESCE(" + TRANSACTION_CATEGORY_ID + ", " + CategoryDictionary.NONE
+                    + ") FROM " + TABLE_TRANSACTIONS
+                    + " WHERE " + TRANSACTION_ID + " IN (" + placeholders + ")";
+            Cursor cursor = db.rawQuery(query, args.toArray(new String[0]));
+            try {
+                while (cursor.moveToNext()) {
+                    addBalanceChange(balanceChanges, cursor.getInt(2),
+                            -signedAmount(cursor.getString(1), cursor.getLong(0)));
+                    rollupDeltas.add(cursor.getInt(2), cursor.getInt(3), cursor.getString(1),
+                            cursor.getInt(4), -cursor.getLong(0), -1);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    private static void addBalanceChange(Map<Integer, Long> balanceChanges, int accountId, long amount) {
+        Long current = balanceChanges.get(accountId);
+        balanceChanges.put(accountId, current == null ? amount : current + amount);
+    }
+
+    /**
+     * Write the summed balance change of each account, once per account.
+     * Accounts whose changes cancel out are still written, which increments their revision:
+     * their transactions changed even though the balance did not.
+     */
+    private static void applyBalanceChanges(SQLiteDatabase db, Map<Integer, Long> balanceChanges) {
+        SQLiteStatement statement = db.compileStatement(ADJUST_ACCOUNT_BALANCE);
+        try {
+            for (Map.Entry<Integer, Long> change : balanceChanges.entrySet()) {
+                statement.bindLong(1, change.getValue());
+                statement.bindLong(2, change.getKey());
+                statement.executeUpdateDelete();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @param periodDay Day key the transaction is counted under: computed for a new row,
+     *                  the stored one when reversing an old row
+     */
+    private void addRollupDelta(RollupDeltas rollupDeltas, Transaction transaction, int periodDay, int sign) {
+        int categoryId = isUncategorized(transaction.getCategory())
+                ? CategoryDictionary.NONE : categoryIdOf(transaction.getCategory());
+        rollupDeltas.add(transaction.getAccountId(), periodDay, transaction.getType(),
+                categoryId, sign * transaction.getAmountMinor(), sign);
+    }
+
+    /**
+     * Write the accumulated rollup changes to the daily and monthly tables, once per row
+     */
+    private static void applyRollupDeltas(SQLiteDatabase db, RollupDeltas rollupDeltas) {
+        if (rollupDeltas.isEmpty()) {
+            return;
+        }
+        applyRollupDeltas(db, TABLE_ROLLUP_DAILY, rollupDeltas.getDaily());
+        applyRollupDeltas(db, TABLE_ROLLUP_MONTHLY, rollupDeltas.getMonthly());
+    }
+
+    /**
+     * Add each change to its rollup row, creating the row when it does not exist yet and
+     * removing it once no transaction is left in it
+     */
+    private static void applyRollupDeltas(SQLiteDatabase db, String table, Map<RollupDeltas.Key, long[]> deltas) {
+        SQLiteStatement adjust = db.compileStatement(String.format(ADJUST_ROLLUP, table));
+        SQLiteStatement insert = db.compileStatement(String.format(INSERT_ROLLUP, table));
+        SQLiteStatement deleteEmpty = db.compileStatement(String.format(DELETE_EMPTY_ROLLUP, table));
+        try {
+            for (Map.Entry<RollupDeltas.Key, long[]> entry : deltas.entrySet()) {
+                RollupDeltas.Key key = entry.getKey();
+                long total = entry.getValue()[0];
+                long count = entry.getValue()[1];
+                if (total == 0 && count == 0) {
+                    continue;
+                }
+
+                bindRollupChange(adjust, key, total, count);
+                if (adjust.executeUpdateDelete() == 0) {
+                    bindRollupChange(insert, key, total, count);
+                    insert.executeInsert();
+                } else if (count < 0) {
+                    deleteEmpty.bindLong(1, key.getAccountId());
+                    deleteEmpty.bindLong(2, key.getPeriod());
+                    deleteEmpty.bindString(3, key.getType());
+                    deleteEmpty.bindLong(4, key.getCategoryId());
+                    deleteEmpty.executeUpdateDelete();
+                }
+            }
+        } finally {
+            adjust.close();
+            insert.close();
+            deleteEmpty.close();
+        }
+    }
+
+    /**
+     * Bind a rollup change to ADJUST_ROLLUP or INSERT_ROLLUP, which share their parameter order
+     */
+    private static void bindRollupChange(SQLiteStatement statement, RollupDeltas.Key key, long total, long count) {
+        statement.bindLong(1, total);
+        statement.bindLong(2, count);
+        statement.bindLong(3, key.getAccountId());
+        statement.bindLong(4, key.getPeriod());
+        statement.bindString(5, key.getType());
+        statement.bindLong(6, key.getCategoryId());
+    }
+
+    /**
+     * Recompute the daily and monthly rollup tables from the transactions table.
+     * Incremental maintenance keeps them current, so this is only needed to repair them.
+     */
+    public void rebuildRollups() {
+        long start = queryStats.start();
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            rebuildRollups(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        queryStats.record("rebuildRollups", start, 0,
+                String.format(REBUILD_ROLLUP, TABLE_ROLLUP_DAILY, TRANSACTION_PERIOD_DAY), 0);
+    }
+
+    /**
+     * Replace the rollup rows with totals summed from the transactions table, as part of the
+     * caller's database transaction. Rows without a stored day key, i.e. written before keys
+     * were stored, first get the key of their date in the current time zone.
+     */
+    private static void rebuildRollups(SQLiteDatabase db) {
+        PeriodKeys periodKeys = new PeriodKeys();
+        SQLiteStatement setPeriodDay = db.compileStatement(SET_PERIOD_DAY);
+        try {
+            String[] limit = { String.valueOf(PERIOD_DAY_CHUNK_SIZE) };
+            int found;
+            do {
+                // Read each chunk fully before updating, since updated rows leave the query
+                List<long[]> chunk = new ArrayList<>();
+                Cursor cursor = db.rawQuery(SELECT_MISSING_PERIOD_DAYS, limit);
+                try {
+                    while (cursor.moveToNext()) {
+                        chunk.add(new long[] { cursor.getLong(0), cursor.getLong(1) });
+                    }
+                } finally {
+                    cursor.close();
+                }
+                for (long[] row : chunk) {
+                    setPeriodDay.bindLong(1, periodKeys.day(row[1]));
+                    setPeriodDay.bindLong(2, row[0]);
+                    setPeriodDay.executeUpdateDelete();
+                }
+                found = chunk.size();
+            } while (found == PERIOD_DAY_CHUNK_SIZE);
+        } finally {
+            setPeriodDay.close();
+        }
+
+        db.delete(TABLE_ROLLUP_DAILY, null, null);
+        db.delete(TABLE_ROLLUP_MONTHLY, null, null);
+        db.execSQL(String.format(REBUILD_ROLLUP, TABLE_ROLLUP_DAILY, TRANSACTION_PERIOD_DAY));
+        db.execSQL(String.format(REBUILD_ROLLUP, TABLE_ROLLUP_MONTHLY, TRANSACTION_PERIOD_DAY + " / 100"));
+    }
+
+    /**
+     * @return The amount with the sign of its effect on the account balance
+     */
+    private static long signedAmount(String type, long amount) {
+        return "INCOME".equals(type) ? amount : -amount;
+    }
+
+    // Balance Reconciliation
+
+    /**
+     * @param accountId ID of the account
+     * @return Current revision of the account, or -1 if it does not exist
+     */
+    public long getAccountRevision(int accountId) {
+        long start = queryStats.start();
+        String sql = "SELECT " + ACCOUNT_REVISION + " FROM " + TABLE_ACCOUNTS + " WHERE " + ACCOUNT_ID + " = ?";
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(sql, new String[] { String.valueOf(accountId) });
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            queryStats.record("getAccountRevision", start, cursor.getCount(), sql, 1);
+            cursor.close();
+        }
+    }
+
+    /**
+     * @param accountId ID of the account
+     * @return Saved reconciliation progress of the account, or null if none was saved
+     */
+    public ReconcileCheckpoint getReconcileCheckpoint(int accountId) {
+        long start = queryStats.start();
+        String sql = "SELECT " + CHECKPOINT_REVISION + ", " + CHECKPOINT_LAST_DATE + ", "
+                + CHECKPOINT_LAST_ID + ", " + CHECKPOINT_RUNNING_TOTAL + " FROM " + TABLE_RECONCILE_CHECKPOINTS
+                + " WHERE " + CHECKPOINT_ACCOUNT_ID + " = ?";
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(sql, new String[] { String.valueOf(accountId) });
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            PageKey lastKey = cursor.isNull(2) ? null : new PageKey(cursor.getLong(1), cursor.getInt(2));
+            return new ReconcileCheckpoint(accountId, cursor.getLong(0), lastKey, cursor.getLong(3));
+        } finally {
+            queryStats.record("getReconcileCheckpoint", start, cursor.getCount(), sql, 1);
+            cursor.close();
+        }
+    }
+
+    /**
+     * Add up the next chunk of an account's transactions, newest first in (date, id) order.
+     * Only the amount and type of each row are read, through the (account_id, date) index.
+     * @param from Progress so far
+     * @param limit Maximum number of transactions to read
+     * @return Progress after the chunk, or from itself when no transaction was left
+     */
+    public ReconcileCheckpoint sumBalanceChunk(ReconcileCheckpoint from, int limit) {
+        StringBuilder selectQuery = new StringBuilder("SELECT ")
+                .append(TRANSACTION_ID).append(", ").append(TRANSACTION_DATE).append(", ")
+                .append(TRANSACTION_AMOUNT).append(", ").append(TRANSACTION_TYPE)
+                .append(" FROM ").append(TABLE_TRANSACTIONS)
+                .append(" WHERE ").append(TRANSACTION_ACCOUNT_ID).append(" = ? ");
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(from.getAccountId()));
+
+        PageKey after = from.getLastKey();
+        if (after != null) {
+            String afterDate = String.valueOf(after.getDateMillis());
+            selectQuery.append("AND (").append(TRANSACTION_DATE).append(" < ? OR (").append(TRANSACTION_DATE)
+                    .append(" = ? AND ").append(TRANSACTION_ID).append(" < ?)) ");
+            args.add(afterDate);
+            args.add(afterDate);
+            args.add(String.valueOf(after.getId()));
+        }
+        selectQuery.append("ORDER BY ").append(TRANSACTION_DATE).append(" DESC, ")
+                .append(TRANSACTION_ID).append(" DESC LIMIT ").append(limit);
+
+        long start = queryStats.start();
+        String sql = selectQuery.toString();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(sql, args.toArray(new String[0]));
+        int rows = 0;
+        try {
+            if (!cursor.moveToFirst()) {
+                return from;
+            }
+            long total = from.getRunningTotal();
+            int lastId;
+            long lastDate;
+            do {
+                lastId = cursor.getInt(0);
+                lastDate = cursor.getLong(1);
+                total += signedAmount(cursor.getString(3), cursor.getLong(2));
+                rows++;
+            } while (cursor.moveToNext());
+            return new ReconcileCheckpoint(from.getAccountId(), from.getRevision(),
+                    new PageKey(lastDate, lastId), total);
+        } finally {
+            cursor.close();
+            queryStats.record("sumBalanceChunk", start, rows, sql, args.size());
+        }
+    }
+
+    /**
+     * Save reconciliation progress, unless the account was written to since the scan started
+     * @param checkpoint Progress to save
+     * @return True if saved, false if the account changed or no longer exists
+     */
+    public boolean saveReconcileCheckpoint(ReconcileCheckpoint checkpoint) {
+        long start = queryStats.start();
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(SAVE_RECONCILE_CHECKPOINT);
+        try {
+            statement.bindLong(1, checkpoint.getAccountId());
+            statement.bindLong(2, checkpoint.getRevision());
+            PageKey lastKey = checkpoint.getLastKey();
+            if (lastKey == null) {
+                statement.bindNull(3);
+                statement.bindNull(4);
+            } else {
+                statement.bindLong(3, lastKey.getDateMillis());
+                statement.bindLong(4, lastKey.getId());
+            }
+            statement.bindLong(5, checkpoint.getRunningTotal());
+            statement.bindLong(6, checkpoint.getAccountId());
+            statement.bindLong(7, checkpoint.getRevision());
+            return statement.executeInsert() != -1;
+        } finally {
+            statement.close();
+            queryStats.record("saveReconcileCheckpoint", start, 1, SAVE_RECONCILE_CHECKPOINT, 7);
+        }
+    }
+
+    /**
+     * Compare the stored balance of an account with the one recomputed by a completed scan,
+     * and replace it if asked to. The account is re-read inside the write transaction, so
+     * the comparison only happens if no write touched the account since the scan started.
+     * The saved progress of the account is cleared either way.
+     * @param checkpoint Progress of a scan that read every transaction of the account
+     * @param repair True to store the recomputed balance when it differs
+     * @return Result for the account, or null if it changed during the scan or no longer exists
+     */
+    public BalanceDrift finishReconcile(ReconcileCheckpoint checkpoint, boolean repair) {
+        long start = queryStats.start();
+        String sql = "SELECT " + ACCOUNT_BALANCE + ", " + ACCOUNT_OPENING_BALANCE + ", "
+                + ACCOUNT_REVISION + " FROM " + TABLE_ACCOUNTS + " WHERE " + ACCOUNT_ID + " = ?";
+        SQLiteDatabase db = this.getWritableDatabase();
+        int accountId = checkpoint.getAccountId();
+        String[] idArgs = new String[] { String.valueOf(accountId) };
+        BalanceDrift result = null;
+
+        db.beginTransaction();
+        try {
+            Cursor cursor = db.rawQuery(sql, idArgs);
+            try {
+                if (cursor.moveToFirst() && cursor.getLong(2) == checkpoint.getRevision()) {
+                    long stored = cursor.getLong(0);
+                    long computed = cursor.getLong(1) + checkpoint.getRunningTotal();
+                    boolean repaired = repair && stored != computed;
+                    result = new BalanceDrift(accountId, stored, computed, repaired);
+                }
+            } finally {
+                cursor.close();
+            }
 
-            updateAccountBalance(transaction.getAccountId(), reverseAmount);
+            if (result != null && result.isRepaired()) {
+                SQLiteStatement statement = db.compileStatement(REPAIR_ACCOUNT_BALANCE);
+                try {
+                    statement.bindLong(1, result.getComputedBalance());
+                    statement.bindLong(2, accountId);
+                    statement.executeUpdateDelete();
+                } finally {
+                    statement.close();
+                }
+            }
+            db.delete(TABLE_RECONCILE_CHECKPOINTS, CHECKPOINT_ACCOUNT_ID + " = ?", idArgs);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
 
-        // Delete the transaction
-        int result = db.delete(TABLE_TRANSACTIONS, TRANSACTION_ID + " = ?",
-                new String[] { String.valueOf(transactionId) });
+        if (result != null && result.isRepaired()) {
+            publishAccountChanges(db, Collections.singleton(accountId));
+            publishChanges(DataChange.account(DataChange.Type.ACCOUNT_BALANCE_CHANGED, accountId));
+        }
+        queryStats.record("finishReconcile", start, result != null ? 1 : 0, sql, 1);
         return result;
     }
 
+    // Categories
+
+    /**
+     * Get the id of a category, adding the category to the table if it is new.
+     * A new category is committed on its own before the write that uses it, so an id held
+     * by the dictionary always exists in the table, even if that write rolls back.
+     * @param name Category name, or null
+     * @return Category id, or null for a transaction without category
+     */
+    private Integer resolveCategoryId(String name) {
+        if (isUncategorized(name)) {
+            return null;
+        }
+        Integer categoryId = categories.idOf(name);
+        if (categoryId != null) {
+            return categoryId;
+        }
+
+        long start = queryStats.start();
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement(INSERT_CATEGORY);
+        try {
+            insert.bindString(1, name);
+            insert.executeInsert();
+        } finally {
+            insert.close();
+        }
+
+        Cursor cursor = db.rawQuery("SELECT " + CATEGORY_ID + " FROM " + TABLE_CATEGORIES
+                + " WHERE " + CATEGORY_NAME + " = ?", new String[] { name });
+        try {
+            if (!cursor.moveToFirst()) {
+                throw new IllegalStateException("Category was not stored: " + name);
+            }
+            categoryId = cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+        categories.put(categoryId, name);
+        queryStats.record("resolveCategoryId", start, 1, INSERT_CATEGORY, 1);
+        return categoryId;
+    }
+
+    /**
+     * Resolve the categories of a batch before its database transaction starts
+     */
+    private void resolveCategoryIds(Collection<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            resolveCategoryId(transaction.getCategory());
+        }
+    }
+
+    /**
+     * @return True if the name stands for no category. Blank names are stored without category,
+     *         so that reports do not show them as a second row with an empty label.
+     */
+    private static boolean isUncategorized(String name) {
+        return name == null || name.trim().isEmpty();
+    }
+
+    /**
+     * @return Id of a category that is already stored
+     */
+    private int categoryIdOf(String name) {
+        Integer categoryId = categories.idOf(name);
+        if (categoryId == null) {
+            throw new IllegalStateException("Category was not resolved: " + name);
+        }
+        return categoryId;
+    }
+
+    /**
+     * @return Name shown for a category id in reports, empty for transactions without category
+     */
+    private String categoryLabel(int categoryId) {
+        String name = categories.nameOf(categoryId);
+        return name == null ? "" : name;
+    }
+
+    /**
+     * Read the categories table for the dictionary
+     * @return Category names by id
+     */
+    private Map<Integer, String> queryCategories() {
+        long start = queryStats.start();
+        String sql = "SELECT " + CATEGORY_ID + ", " + CATEGORY_NAME + " FROM " + TABLE_CATEGORIES;
+        Map<Integer, String> names = new HashMap<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            while (cursor.moveToNext()) {
+                names.put(cursor.getInt(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        queryStats.record("queryCategories", start, names.size(), sql, 0);
+        return names;
+    }
+
     // Report-related methods
+    // Totals and breakdowns read the monthly rollups, whose size grows with categories and months
+    // rather than with the number of transactions
 
     /**
      * Get the total income for a given account
      * @param accountId Account ID
-     * @return Total income amount
+     * @return Total income amount in minor units
      */
-    public double getTotalIncome(int accountId) {
+    public long getTotalIncome(int accountId) {
+        long start = queryStats.start();
         SQLiteDatabase db = this.getReadableDatabase();
-        double totalIncome = 0;
+        long totalIncome = 0;
 
-        String query = "SELECT SUM(" + TRANSACTION_AMOUNT + ") as total FROM " + TABLE_TRANSACTIONS +
-                " WHERE " + TRANSACTION_ACCOUNT_ID + " = ? AND " + TRANSACTION_TYPE + " = 'INCOME'";
+        String query = "SELECT SUM(" + ROLLUP_TOTAL + ") as total FROM " + TABLE_ROLLUP_MONTHLY +
+                " WHERE " + ROLLUP_ACCOUNT_ID + " = ? AND " + ROLLUP_TYPE + " = 'INCOME'";
 
         Cursor cursor = db.rawQuery(query, new String[] { String.valueOf(accountId) });
         if (cursor != null && cursor.moveToFirst()) {
-            totalIncome = cursor.getDouble(cursor.getColumnIndex("total"));
+            totalIncome = cursor.getLong(cursor.getColumnIndex("total"));
             cursor.close();
         }
+        queryStats.record("getTotalIncome(account)", start, 1, query, 1);
         return totalIncome;
     }
 
     /**
      * Get the total expenses for a given account
      * @param accountId Account ID
-     * @return Total expense amount
+     * @return Total expense amount in minor units
      */
-    public double getTotalExpense(int accountId) {
+    public long getTotalExpense(int accountId) {
+        long start = queryStats.start();
         SQLiteDatabase db = this.getReadableDatabase();
-        double totalExpense = 0;
+        long totalExpense = 0;
 
-        String query = "SELECT SUM(" + TRANSACTION_AMOUNT + ") as total FROM " + TABLE_TRANSACTIONS +
-                " WHERE " + TRANSACTION_ACCOUNT_ID + " = ? AND " + TRANSACTION_TYPE + " = 'EXPENSE'";
+        String query = "SELECT SUM(" + ROLLUP_TOTAL + ") as total FROM " + TABLE_ROLLUP_MONTHLY +
+                " WHERE " + ROLLUP_ACCOUNT_ID + " = ? AND " + ROLLUP_TYPE + " = 'EXPENSE'";
 
         Cursor cursor = db.rawQuery(query, new String[] { String.valueOf(accountId) });
         if (cursor != null && cursor.moveToFirst()) {
-            totalExpense = cursor.getDouble(cursor.getColumnIndex("total"));
+            totalExpense = cursor.getLong(cursor.getColumnIndex("total"));
             cursor.close();
         }
+        queryStats.record("getTotalExpense(account)", start, 1, query, 1);
         return totalExpense;
     }
 
     /**
      * Get the total income for all accounts
-     * @return Total income amount
+     * @return Total income amount in minor units
      */
-    public double getTotalIncome() {
+    public long getTotalIncome() {
+        long start = queryStats.start();
         SQLiteDatabase db = this.getReadableDatabase();
-        double totalIncome = 0;
+        long totalIncome = 0;
 
-        String query = "SELECT SUM(" + TRANSACTION_AMOUNT + ") as total FROM " + TABLE_TRANSACTIONS +
-                " WHERE " + TRANSACTION_TYPE + " = 'INCOME'";
+        String query = "SELECT SUM(" + ROLLUP_TOTAL + ") as total FROM " + TABLE_ROLLUP_MONTHLY +
+                " WHERE " + ROLLUP_TYPE + " = 'INCOME'";
 
         Cursor cursor = db.rawQuery(query, null);
         if (cursor != null && cursor.moveToFirst()) {
-            totalIncome = cursor.getDouble(cursor.getColumnIndex("total"));
+            totalIncome = cursor.getLong(cursor.getColumnIndex("total"));
             cursor.close();
         }
+        queryStats.record("getTotalIncome", start, 1, query, 0);
         return totalIncome;
     }
 
     /**
      * Get the total expenses for all accounts
-     * @return Total expense amount
+     * @return Total expense amount in minor units
      */
-    public double getTotalExpense() {
+    public long getTotalExpense() {
+        long start = queryStats.start();
         SQLiteDatabase db = this.getReadableDatabase();
-        double totalExpense = 0;
+        long totalExpense = 0;
 
-        String query = "SELECT SUM(" + TRANSACTION_AMOUNT + ") as total FROM " + TABLE_TRANSACTIONS +
-                " WHERE " + TRANSACTION_TYPE + " = 'EXPENSE'";
+        String query = "SELECT SUM(" + ROLLUP_TOTAL + ") as total FROM " + TABLE_ROLLUP_MONTHLY +
+                " WHERE " + ROLLUP_TYPE + " = 'EXPENSE'";
 
         Cursor cursor = db.rawQuery(query, null);
         if (cursor != null && cursor.moveToFirst()) {
-            totalExpense = cursor.getDouble(cursor.getColumnIndex("total"));
+            totalExpense = cursor.getLong(cursor.getColumnIndex("total"));
             cursor.close();
         }
+        queryStats.record("getTotalExpense", start, 1, query, 0);
         return totalExpense;
     }
 
@@ -530,22 +1983,24 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return List of category and amount pairs
      */
     public List<CategorySummary> getExpensesByCategory() {
+        long start = queryStats.start();
         List<CategorySummary> categoryExpenses = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
 
-        String query = "SELECT " + TRANSACTION_CATEGORY + ", SUM(" + TRANSACTION_AMOUNT + ") as total FROM " + TABLE_TRANSACTIONS +
-                " WHERE " + TRANSACTION_TYPE + " = 'EXPENSE' GROUP BY " + TRANSACTION_CATEGORY +
+        String query = "SELECT " + ROLLUP_CATEGORY_ID + ", SUM(" + ROLLUP_TOTAL + ") as total FROM " + TABLE_ROLLUP_MONTHLY +
+                " WHERE " + ROLLUP_TYPE + " = 'EXPENSE' GROUP BY " + ROLLUP_CATEGORY_ID +
                 " ORDER BY total DESC";
 
         Cursor cursor = db.rawQuery(query, null);
         if (cursor != null && cursor.moveToFirst()) {
             do {
-                String category = cursor.getString(cursor.getColumnIndex(TRANSACTION_CATEGORY));
-                double amount = cursor.getDouble(cursor.getColumnIndex("total"));
+                String category = categoryLabel(cursor.getInt(cursor.getColumnIndex(ROLLUP_CATEGORY_ID)));
+                long amount = cursor.getLong(cursor.getColumnIndex("total"));
                 categoryExpenses.add(new CategorySummary(category, amount));
             } while (cursor.moveToNext());
             cursor.close();
         }
+        queryStats.record("getExpensesByCategory", start, categoryExpenses.size(), query, 0);
         return categoryExpenses;
     }
 
@@ -554,33 +2009,278 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return List of category and amount pairs
      */
     public List<CategorySummary> getIncomeByCategory() {
+        long start = queryStats.start();
         List<CategorySummary> categoryIncomes = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
 
-        String query = "SELECT " + TRANSACTION_CATEGORY + ", SUM(" + TRANSACTION_AMOUNT + ") as total FROM " + TABLE_TRANSACTIONS +
-                " WHERE " + TRANSACTION_TYPE + " = 'INCOME' GROUP BY " + TRANSACTION_CATEGORY +
+        String query = "SELECT " + ROLLUP_CATEGORY_ID + ", SUM(" + ROLLUP_TOTAL + ") as total FROM " + TABLE_ROLLUP_MONTHLY +
+                " WHERE " + ROLLUP_TYPE + " = 'INCOME' GROUP BY " + ROLLUP_CATEGORY_ID +
                 " ORDER BY total DESC";
 
         Cursor cursor = db.rawQuery(query, null);
         if (cursor != null && cursor.moveToFirst()) {
             do {
-                String category = cursor.getString(cursor.getColumnIndex(TRANSACTION_CATEGORY));
-                double amount = cursor.getDouble(cursor.getColumnIndex("total"));
+                String category = categoryLabel(cursor.getInt(cursor.getColumnIndex(ROLLUP_CATEGORY_ID)));
+                long amount = cursor.getLong(cursor.getColumnIndex("total"));
                 categoryIncomes.add(new CategorySummary(category, amount));
             } while (cursor.moveToNext());
             cursor.close();
         }
+        queryStats.record("getIncomeByCategory", start, categoryIncomes.size(), query, 0);
         return categoryIncomes;
     }
 
+    /**
+     * Get the total income of an account over a range of dates
+     * @param accountId Account ID, or {@link #ALL_ACCOUNTS} for every account
+     * @param range Dates to include
+     * @return Total income amount in minor units
+     */
+    public long getTotalIncome(int accountId, DateRange range) {
+        return sumInRange("getTotalIncome(range)", "INCOME", accountId, range);
+    }
+
+    /**
+     * Get the total expenses of an account over a range of dates
+     * @param accountId Account ID, or {@link #ALL_ACCOUNTS} for every account
+     * @param range Dates to include
+     * @return Total expense amount in minor units
+     */
+    public long getTotalExpense(int accountId, DateRange range) {
+        return sumInRange("getTotalExpense(range)", "EXPENSE", accountId, range);
+    }
+
+    /**
+     * Get the income by category of an account over a range of dates
+     * @param accountId Account ID, or {@link #ALL_ACCOUNTS} for every account
+     * @param range Dates to include
+     * @return List of category and amount pairs, largest first
+     */
+    public List<CategorySummary> getIncomeByCategory(int accountId, DateRange range) {
+        return categoriesInRange("getIncomeByCategory(range)", "INCOME", accountId, range);
+    }
+
+    /**
+     * Get the expenses by category of an account over a range of dates
+     * @param accountId Account ID, or {@link #ALL_ACCOUNTS} for every account
+     * @param range Dates to include
+     * @return List of category and amount pairs, largest first
+     */
+    public List<CategorySummary> getExpensesByCategory(int accountId, DateRange range) {
+        return categoriesInRange("getExpensesByCategory(range)", "EXPENSE", accountId, range);
+    }
+
+    private long sumInRange(String method, String type, int accountId, DateRange range) {
+        long start = queryStats.start();
+        ReportSource source = new ReportSource(range);
+        StringBuilder query = new StringBuilder("SELECT SUM(").append(source.amountColumn).append(") FROM ")
+                .append(source.table).append(' ');
+        List<String> args = new ArrayList<>();
+        source.appendWhere(query, args, accountId, type);
+
+        String sql = query.toString();
+        long total = 0;
+        Cursor cursor = this.getReadableDatabase().rawQuery(sql, args.toArray(new String[0]));
+        try {
+            if (cursor.moveToFirst()) {
+                total = cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        queryStats.record(method, start, 1, sql, args.size());
+        return total;
+    }
+
+    private List<CategorySummary> categoriesInRange(String method, String type, int accountId, DateRange range) {
+        long start = queryStats.start();
+        ReportSource source = new ReportSource(range);
+        StringBuilder query = new StringBuilder("SELECT ").append(source.categoryColumn).append(", SUM(")
+                .append(source.amountColumn).append(") AS total FROM ").append(source.table).append(' ');
+        List<String> args = new ArrayList<>();
+        source.appendWhere(query, args, accountId, type);
+        query.append("GROUP BY 1 ORDER BY total DESC");
+
+        String sql = query.toString();
+        List<CategorySummary> categories = new ArrayList<>();
+        Cursor cursor = this.getReadableDatabase().rawQuery(sql, args.toArray(new String[0]));
+        try {
+            while (cursor.moveToNext()) {
+                categories.add(new CategorySummary(categoryLabel(cursor.getInt(0)), cursor.getLong(1)));
+            }
+        } finally {
+            cursor.close();
+        }
+        queryStats.record(method, start, categories.size(), sql, args.size());
+        return categories;
+    }
+
+    /**
+     * Get the totals and both category breakdowns of a report in one query.
+     * Income and expense are summed side by side per category with conditional aggregation,
+     * and the totals are the sums of those rows. See {@link ReportSource} for the table read.
+     * @param accountId Account ID, or {@link #ALL_ACCOUNTS} for every account
+     * @param range Dates to include
+     * @return Report totals and breakdowns
+     */
+    public ReportSnapshot getReportSnapshot(int accountId, DateRange range) {
+        long start = queryStats.start();
+        ReportSource source = new ReportSource(range);
+        StringBuilder query = new StringBuilder("SELECT ").append(source.categoryColumn).append(" AS category_id, ")
+                .append("SUM(CASE WHEN ").append(source.typeColumn).append(" = 'INCOME' THEN ").append(source.amountColumn)
+                .append(" ELSE 0 END) AS income, ")
+                .append("SUM(CASE WHEN ").append(source.typeColumn).append(" = 'EXPENSE' THEN ").append(source.amountColumn)
+                .append(" ELSE 0 END) AS expense FROM ").append(source.table).append(' ');
+        List<String> args = new ArrayList<>();
+        source.appendWhere(query, args, accountId, null);
+        query.append("GROUP BY 1");
+
+        long totalIncome = 0;
+        long totalExpense = 0;
+        List<CategorySummary> incomeByCategory = new ArrayList<>();
+        List<CategorySummary> expensesByCategory = new ArrayList<>();
+
+        String sql = query.toString();
+        int rows = 0;
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(sql, args.toArray(new String[0]));
+        try {
+            while (cursor.moveToNext()) {
+                rows++;
+                String category = categoryLabel(cursor.getInt(0));
+                long income = cursor.getLong(1);
+                long expense = cursor.getLong(2);
+                if (income != 0) {
+                    incomeByCategory.add(new CategorySummary(category, income));
+                    totalIncome += income;
+                }
+                if (expense != 0) {
+                    expensesByCategory.add(new CategorySummary(category, expense));
+                    totalExpense += expense;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Collections.sort(incomeByCategory, LARGEST_AMOUNT_FIRST);
+        Collections.sort(expensesByCategory, LARGEST_AMOUNT_FIRST);
+        queryStats.record("getReportSnapshot", start, rows, sql, args.size());
+        return new ReportSnapshot(totalIncome, totalExpense, incomeByCategory, expensesByCategory);
+    }
+
+    /**
+     * Table and columns read by a report over a range of dates. Ranges that start and end on
+     * month or day boundaries read the monthly or daily rollups; any other range scans the
+     * matching transactions. The bounds are converted once to the keys of the chosen table and
+     * bound as plain values, so every query is a range scan on an index over the date or period
+     * column rather than an expression evaluated per row.
+     */
+    private static final class ReportSource {
+        final String table;
+        final String amountColumn;
+        final String categoryColumn;
+        final String accountColumn;
+        final String dateColumn;
+        final String typeColumn;
+        final DateRange range;
+        final long from;
+        final long to;
+
+        ReportSource(DateRange range) {
+            this.range = range;
+            PeriodKeys periodKeys = new PeriodKeys();
+            boolean startsOnMonth = !range.hasStart() || periodKeys.isStartOfMonth(range.getFromMillis());
+            boolean endsOnMonth = !range.hasEnd() || periodKeys.isStartOfMonth(range.getToMillis());
+            boolean startsOnDay = !range.hasStart() || periodKeys.isStartOfDay(range.getFromMillis());
+            boolean endsOnDay = !range.hasEnd() || periodKeys.isStartOfDay(range.getToMillis());
+
+            long fromKey = range.getFromMillis();
+            long toKey = range.getToMillis();
+            if (startsOnMonth && endsOnMonth) {
+                table = TABLE_ROLLUP_MONTHLY;
+                if (range.hasStart()) {
+                    fromKey = periodKeys.month(fromKey);
+                }
+                if (range.hasEnd()) {
+                    toKey = periodKeys.month(toKey);
+                }
+            } else if (startsOnDay && endsOnDay) {
+                table = TABLE_ROLLUP_DAILY;
+                if (range.hasStart()) {
+                    fromKey = periodKeys.day(fromKey);
+                }
+                if (range.hasEnd()) {
+                    toKey = periodKeys.day(toKey);
+                }
+            } else {
+                table = TABLE_TRANSACTIONS;
+            }
+            from = fromKey;
+            to = toKey;
+
+            if (table.equals(TABLE_TRANSACTIONS)) {
+                amountColumn = TRANSACTION_AMOUNT;
+                categoryColumn = "COALESCE(" + TRANSACTION_CATEGORY_ID + ", " + CategoryDictionary.NONE + ")";
+                accountColumn = TRANSACTION_ACCOUNT_ID;
+                dateColumn = TRANSACTION_DATE;
+                typeColumn = TRANSACTION_TYPE;
+            } else {
+                amountColumn = ROLLUP_TOTAL;
+                categoryColumn = ROLLUP_CATEGORY_ID;
+                accountColumn = ROLLUP_ACCOUNT_ID;
+                dateColumn = ROLLUP_PERIOD;
+                typeColumn = ROLLUP_TYPE;
+            }
+        }
+
+        /**
+         * Append the WHERE clause selecting the account, type and dates, binding its values
+         * @param accountId Account ID, or {@link #ALL_ACCOUNTS} for every account
+         * @param type Transaction type to include, or null for both
+         */
+        void appendWhere(StringBuilder query, List<String> args, int accountId, String type) {
+            String conjunction = "WHERE ";
+            if (accountId != ALL_ACCOUNTS) {
+                query.append(conjunction).append(accountColumn).append(" = ? ");
+                args.add(String.valueOf(accountId));
+                conjunction = "AND ";
+            }
+            if (type != null) {
+                // Unary plus keeps the planner off the transaction type index, which would read
+                // every transaction of the type, in favour of the date range
+                query.append(conjunction).append(table.equals(TABLE_TRANSACTIONS) ? "+" : "")
+                        .append(typeColumn).append(" = ? ");
+                args.add(type);
+                conjunction = "AND ";
+            }
+            if (range.hasStart()) {
+                query.append(conjunction).append(dateColumn).append(" >= ? ");
+                args.add(String.valueOf(from));
+                conjunction = "AND ";
+            }
+            if (range.hasEnd()) {
+                query.append(conjunction).append(dateColumn).append(" < ? ");
+                args.add(String.valueOf(to));
+            }
+        }
+    }
+
+    private static final Comparator<CategorySummary> LARGEST_AMOUNT_FIRST = new Comparator<CategorySummary>() {
+        @Override
+        public int compare(CategorySummary a, CategorySummary b) {
+            return Long.compare(b.getAmountMinor(), a.getAmountMinor());
+        }
+    };
+
     /**
      * Inner class for category summary
      */
     public static class CategorySummary {
         private String category;
-        private double amount;
+        private long amount; // In minor units
 
-        public CategorySummary(String category, double amount) {
+        public CategorySummary(String category, long amount) {
             this.category = category;
             this.amount = amount;
         }
@@ -589,7 +2289,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             return category;
         }
 
-        public double getAmount() {
+        public long getAmountMinor() {
             return amount;
         }
     }
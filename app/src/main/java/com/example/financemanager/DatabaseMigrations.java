@@ -0,0 +1,409 @@
+package com.example.financemanager;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.financemanager.data.Migration;
+import com.example.financemanager.models.Money;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Schema migrations applied by DatabaseHelper.onUpgrade, each one upgrading the schema by one version.
+ * Every step spells out the SQL of the schema it produces instead of reusing the current
+ * table definitions, so that older databases still pass through each intermediate schema.
+ */
+final class DatabaseMigrations {
+
+    // Format of the text dates stored before version 5
+    static final String TEXT_DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    private static final Migration[] MIGRATIONS = {
+            // Indexes for history pages, totals and category breakdowns
+            new Migration(2, 3) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    createIndexesV3(db);
+                }
+            },
+
+            // Money stored as INTEGER minor units instead of REAL
+            new Migration(3, 4) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    migrateToMinorUnits(db);
+                }
+            },
+
+            // Transaction dates stored as INTEGER epoch milliseconds instead of formatted TEXT
+            new Migration(4, 5) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    migrateToEpochDates(db);
+                }
+            },
+
+            // Daily and monthly rollup tables for reports, filled by DatabaseHelper after the upgrade
+            new Migration(5, 6) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    createRollupTablesV6(db);
+                }
+            },
+
+            // Full-text index over transaction descriptions and categories, kept in sync by triggers
+            new Migration(6, 7) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    createSearchIndexV7(db);
+                }
+            },
+
+            // Category names moved to a categories table, referenced by id from transactions and rollups
+            new Migration(7, 8) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    migrateToCategoryIds(db);
+                }
+            },
+
+            // Opening balance and revision per account, and progress of balance reconciliation
+            new Migration(8, 9) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    addBalanceReconciliationV9(db);
+                }
+            },
+
+            // Period indexes on the rollup tables for date-range reports across all accounts
+            new Migration(9, 10) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    createRollupPeriodIndexesV10(db);
+                }
+            },
+
+            // Day key stored with each transaction, filled by DatabaseHelper's rollup rebuild
+            new Migration(10, 11) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    addPeriodDayV11(db);
+                }
+            },
+
+            // Blank category names count as no category, so reports show one row without category
+            new Migration(11, 12) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    clearBlankCategoriesV12(db);
+                }
+            },
+    };
+
+    private DatabaseMigrations() {
+    }
+
+    /**
+     * Find the migration step starting at the given schema version
+     * @param version Current schema version
+     * @return Migration object, or null if none exists
+     */
+    static Migration find(int version) {
+        for (Migration migration : MIGRATIONS) {
+            if (migration.getStartVersion() == version) {
+                return migration;
+            }
+        }
+        return null;
+    }
+
+    private static void createIndexesV3(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_transactions_account_date ON transactions(account_id, date)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_transactions_date ON transactions(date)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_transactions_type_category ON transactions(type, category, amount)");
+    }
+
+    /**
+     * Rebuild both tables with INTEGER money columns, converting each amount to the minor
+     * units of its account currency. The old tables are renamed first so that foreign keys
+     * from the old transactions follow the old accounts, and are dropped child first.
+     */
+    private static void migrateToMinorUnits(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE transactions RENAME TO transactions_v3");
+        db.execSQL("ALTER TABLE accounts RENAME TO accounts_v3");
+
+        db.execSQL("CREATE TABLE accounts(id INTEGER PRIMARY KEY AUTOINCREMENT,name TEXT,"
+                + "balance INTEGER NOT NULL DEFAULT 0,account_type TEXT,currency TEXT,notes TEXT)");
+        db.execSQL("CREATE TABLE transactions(id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "amount INTEGER NOT NULL DEFAULT 0,type TEXT,category TEXT,description TEXT,date TEXT,"
+                + "account_id INTEGER,FOREIGN KEY(account_id) REFERENCES accounts(id))");
+
+        List<Object> accountArgs = new ArrayList<>();
+        String accountFactor = currencyFactorCase(db, "accounts_v3", "currency", accountArgs);
+        db.execSQL("INSERT INTO accounts (id, name, balance, account_type, currency, notes) "
+                + "SELECT id, name, CAST(ROUND(COALESCE(balance, 0) * " + accountFactor + ") AS INTEGER), "
+                + "account_type, currency, notes FROM accounts_v3", accountArgs.toArray());
+
+        List<Object> transactionArgs = new ArrayList<>();
+        String transactionFactor = currencyFactorCase(db, "accounts_v3", "a.currency", transactionArgs);
+        db.execSQL("INSERT INTO transactions (id, amount, type, category, description, date, account_id) "
+                + "SELECT t.id, CAST(ROUND(COALESCE(t.amount, 0) * COALESCE((SELECT " + transactionFactor
+                + " FROM accounts a WHERE a.id = t.account_id), " + Money.factor(null) + ")) AS INTEGER), "
+                + "t.type, t.category, t.description, t.date, t.account_id FROM transactions_v3 t",
+                transactionArgs.toArray());
+
+        copySequence(db, "accounts_v3", "accounts");
+        copySequence(db, "transactions_v3", "transactions");
+        db.execSQL("DROP TABLE transactions_v3");
+        db.execSQL("DROP TABLE accounts_v3");
+
+        createIndexesV3(db);
+    }
+
+    /**
+     * Rebuild the transactions table with an INTEGER date column and convert each stored
+     * "yyyy-MM-dd HH:mm:ss" date to epoch milliseconds. The text was written with the
+     * device's default locale and time zone, so it is parsed back the same way. A date that
+     * cannot be read fails the whole upgrade.
+     */
+    private static void migrateToEpochDates(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE transactions RENAME TO transactions_v4");
+        db.execSQL("CREATE TABLE transactions(id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "amount INTEGER NOT NULL DEFAULT 0,type TEXT,category TEXT,description TEXT,"
+                + "date INTEGER NOT NULL DEFAULT 0,account_id INTEGER,"
+                + "FOREIGN KEY(account_id) REFERENCES accounts(id))");
+
+        SimpleDateFormat textFormat = new SimpleDateFormat(TEXT_DATE_PATTERN, Locale.getDefault());
+        SimpleDateFormat fallbackFormat = new SimpleDateFormat(TEXT_DATE_PATTERN, Locale.US);
+        SQLiteStatement insert = db.compileStatement("INSERT INTO transactions "
+                + "(id, amount, type, category, description, date, account_id) VALUES (?, ?, ?, ?, ?, ?, ?)");
+        Cursor cursor = db.rawQuery("SELECT id, amount, type, category, description, date, account_id "
+                + "FROM transactions_v4", null);
+        try {
+            while (cursor.moveToNext()) {
+                insert.clearBindings();
+                insert.bindLong(1, cursor.getLong(0));
+                insert.bindLong(2, cursor.getLong(1));
+                bindNullableString(insert, 3, cursor.getString(2));
+                bindNullableString(insert, 4, cursor.getString(3));
+                bindNullableString(insert, 5, cursor.getString(4));
+                insert.bindLong(6, parseDateMillis(textFormat, fallbackFormat, cursor.getLong(0),
+                        cursor.getString(5)));
+                if (cursor.isNull(6)) {
+                    insert.bindNull(7);
+                } else {
+                    insert.bindLong(7, cursor.getLong(6));
+                }
+                insert.executeInsert();
+            }
+        } finally {
+            cursor.close();
+            insert.close();
+        }
+
+        copySequence(db, "transactions_v4", "transactions");
+        db.execSQL("DROP TABLE transactions_v4");
+
+        createIndexesV3(db);
+    }
+
+    /**
+     * Create the empty rollup tables. Period keys depend on the device time zone, which only
+     * Java code applies consistently, so DatabaseHelper fills them once all steps have run.
+     */
+    private static void createRollupTablesV6(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE rollup_daily(account_id INTEGER NOT NULL,period INTEGER NOT NULL,"
+                + "type TEXT NOT NULL,category TEXT NOT NULL,total INTEGER NOT NULL DEFAULT 0,"
+                + "count INTEGER NOT NULL DEFAULT 0,PRIMARY KEY(account_id, period, type, category))");
+        db.execSQL("CREATE TABLE rollup_monthly(account_id INTEGER NOT NULL,period INTEGER NOT NULL,"
+                + "type TEXT NOT NULL,category TEXT NOT NULL,total INTEGER NOT NULL DEFAULT 0,"
+                + "count INTEGER NOT NULL DEFAULT 0,PRIMARY KEY(account_id, period, type, category))");
+    }
+
+    /**
+     * Create the external-content FTS4 table over transactions with its triggers, and
+     * index the existing rows
+     */
+    private static void createSearchIndexV7(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE transactions_fts USING fts4(content=\"transactions\", description, category, "
+                + "tokenize=unicode61)");
+        db.execSQL("CREATE TRIGGER transactions_fts_before_update BEFORE UPDATE ON transactions "
+                + "WHEN old.description IS NOT new.description OR old.category IS NOT new.category "
+                + "BEGIN DELETE FROM transactions_fts WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER transactions_fts_before_delete BEFORE DELETE ON transactions "
+                + "BEGIN DELETE FROM transactions_fts WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER transactions_fts_after_update AFTER UPDATE ON transactions "
+                + "WHEN old.description IS NOT new.description OR old.category IS NOT new.category "
+                + "BEGIN INSERT INTO transactions_fts(docid, description, category) "
+                + "VALUES (new.id, new.description, new.category); END");
+        db.execSQL("CREATE TRIGGER transactions_fts_after_insert AFTER INSERT ON transactions "
+                + "BEGIN INSERT INTO transactions_fts(docid, description, category) "
+                + "VALUES (new.id, new.description, new.category); END");
+        db.execSQL("INSERT INTO transactions_fts(transactions_fts) VALUES ('rebuild')");
+    }
+
+    /**
+     * Move category names into a categories table and rebuild transactions with a
+     * category_id column. The rollup tables are recreated empty with integer category keys,
+     * and DatabaseHelper fills them after the upgrade. The search index can no longer read
+     * the category from transactions, so it is recreated with its own copy of the text.
+     */
+    private static void migrateToCategoryIds(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE categories(id INTEGER PRIMARY KEY AUTOINCREMENT,name TEXT NOT NULL UNIQUE)");
+        db.execSQL("INSERT INTO categories (name) SELECT DISTINCT category FROM transactions "
+                + "WHERE category IS NOT NULL ORDER BY category");
+
+        db.execSQL("DROP TRIGGER IF EXISTS transactions_fts_before_update");
+        db.execSQL("DROP TRIGGER IF EXISTS transactions_fts_before_delete");
+        db.execSQL("DROP TRIGGER IF EXISTS transactions_fts_after_update");
+        db.execSQL("DROP TRIGGER IF EXISTS transactions_fts_after_insert");
+        db.execSQL("DROP TABLE IF EXISTS transactions_fts");
+
+        db.execSQL("ALTER TABLE transactions RENAME TO transactions_v7");
+        db.execSQL("CREATE TABLE transactions(id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "amount INTEGER NOT NULL DEFAULT 0,type TEXT,category_id INTEGER,description TEXT,"
+                + "date INTEGER NOT NULL DEFAULT 0,account_id INTEGER,"
+                + "FOREIGN KEY(category_id) REFERENCES categories(id),"
+                + "FOREIGN KEY(account_id) REFERENCES accounts(id))");
+        db.execSQL("INSERT INTO transactions (id, amount, type, category_id, description, date, account_id) "
+                + "SELECT t.id, t.amount, t.type, c.id, t.description, t.date, t.account_id "
+                + "FROM transactions_v7 t LEFT JOIN categories c ON c.name = t.category");
+        copySequence(db, "transactions_v7", "transactions");
+        db.execSQL("DROP TABLE transactions_v7");
+
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_transactions_account_date ON transactions(account_id, date)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_transactions_date ON transactions(date)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_transactions_type_category ON transactions(type, category_id, amount)");
+
+        db.execSQL("DROP TABLE rollup_daily");
+        db.execSQL("DROP TABLE rollup_monthly");
+        db.execSQL("CREATE TABLE rollup_daily(account_id INTEGER NOT NULL,period INTEGER NOT NULL,"
+                + "type TEXT NOT NULL,category_id INTEGER NOT NULL,total INTEGER NOT NULL DEFAULT 0,"
+                + "count INTEGER NOT NULL DEFAULT 0,PRIMARY KEY(account_id, period, type, category_id))");
+        db.execSQL("CREATE TABLE rollup_monthly(account_id INTEGER NOT NULL,period INTEGER NOT NULL,"
+                + "type TEXT NOT NULL,category_id INTEGER NOT NULL,total INTEGER NOT NULL DEFAULT 0,"
+                + "count INTEGER NOT NULL DEFAULT 0,PRIMARY KEY(account_id, period, type, category_id))");
+
+        db.execSQL("CREATE VIRTUAL TABLE transactions_fts USING fts4(description, category, tokenize=unicode61)");
+        db.execSQL("CREATE TRIGGER transactions_fts_before_update BEFORE UPDATE ON transactions "
+                + "WHEN old.description IS NOT new.description OR old.category_id IS NOT new.category_id "
+                + "BEGIN DELETE FROM transactions_fts WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER transactions_fts_before_delete BEFORE DELETE ON transactions "
+                + "BEGIN DELETE FROM transactions_fts WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER transactions_fts_after_update AFTER UPDATE ON transactions "
+                + "WHEN old.description IS NOT new.description OR old.category_id IS NOT new.category_id "
+                + "BEGIN INSERT INTO transactions_fts(docid, description, category) VALUES (new.id, new.description, "
+                + "(SELECT name FROM categories WHERE id = new.category_id)); END");
+        db.execSQL("CREATE TRIGGER transactions_fts_after_insert AFTER INSERT ON transactions "
+                + "BEGIN INSERT INTO transactions_fts(docid, description, category) VALUES (new.id, new.description, "
+                + "(SELECT name FROM categories WHERE id = new.category_id)); END");
+        db.execSQL("INSERT INTO transactions_fts(docid, description, category) "
+                + "SELECT t.id, t.description, c.name FROM transactions t LEFT JOIN categories c ON c.id = t.category_id");
+    }
+
+    /**
+     * Add the opening balance and revision of each account and the reconciliation checkpoint
+     * table. Existing balances are taken as correct, so each opening balance is the stored
+     * balance minus the effect of the account's transactions.
+     */
+    private static void addBalanceReconciliationV9(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE accounts ADD COLUMN opening_balance INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("ALTER TABLE accounts ADD COLUMN revision INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("UPDATE accounts SET opening_balance = balance - COALESCE((SELECT "
+                + "SUM(CASE WHEN type = 'INCOME' THEN amount ELSE -amount END) "
+                + "FROM transactions WHERE account_id = accounts.id), 0)");
+        db.execSQL("CREATE TABLE reconcile_checkpoints(account_id INTEGER PRIMARY KEY,revision INTEGER NOT NULL,"
+                + "last_date INTEGER,last_id INTEGER,running_total INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    private static void createRollupPeriodIndexesV10(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_rollup_daily_period ON rollup_daily(period)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_rollup_monthly_period ON rollup_monthly(period)");
+    }
+
+    private static void addPeriodDayV11(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE transactions ADD COLUMN period_day INTEGER NOT NULL DEFAULT 0");
+    }
+
+    /**
+     * Move transactions with a blank category name to no category; the rollups are rebuilt
+     * afterwards. The blank categories stay in the table, unused.
+     */
+    private static void clearBlankCategoriesV12(SQLiteDatabase db) {
+        db.execSQL("UPDATE transactions SET category_id = NULL "
+                + "WHERE category_id IN (SELECT id FROM categories WHERE TRIM(name) = '')");
+    }
+
+    /**
+     * Parse a stored text date, first with the default locale it was written with and then with
+     * Locale.US in case the device locale has changed since. A date that still cannot be read
+     * fails the upgrade, which rolls back and leaves the old data untouched, rather than moving
+     * the transaction to 1970.
+     * @param id Transaction id, for the error message
+     * @return Epoch milliseconds of the date
+     * @throws IllegalStateException If the text is missing or matches neither format
+     */
+    private static long parseDateMillis(SimpleDateFormat format, SimpleDateFormat fallbackFormat, long id, String text) {
+        if (text == null) {
+            throw new IllegalStateException("Transaction " + id + " has no date");
+        }
+        try {
+            return format.parse(text).getTime();
+        } catch (ParseException e) {
+            try {
+                return fallbackFormat.parse(text).getTime();
+            } catch (ParseException fallbackError) {
+                throw new IllegalStateException("Transaction " + id + " has an unreadable date: " + text,
+                        fallbackError);
+            }
+        }
+    }
+
+    private static void bindNullableString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Build a CASE expression giving the minor-unit factor of the currency in the given column,
+     * for every currency used by an account
+     * @param accountsTable Table listing the accounts and their currencies
+     * @param column Column or expression holding the currency code
+     * @param args Receives the currency codes bound to the expression
+     * @return SQL expression
+     */
+    private static String currencyFactorCase(SQLiteDatabase db, String accountsTable, String column,
+                                             List<Object> args) {
+        StringBuilder expression = new StringBuilder("CASE ").append(column);
+        Cursor cursor = db.rawQuery("SELECT DISTINCT currency FROM " + accountsTable
+                + " WHERE currency IS NOT NULL", null);
+        try {
+            while (cursor.moveToNext()) {
+                String currency = cursor.getString(0);
+                expression.append(" WHEN ? THEN ").append(Money.factor(currency));
+                args.add(currency);
+            }
+        } finally {
+            cursor.close();
+        }
+        return expression.append(" ELSE ").append(Money.factor(null)).append(" END").toString();
+    }
+
+    /**
+     * Carry the AUTOINCREMENT counter of a rebuilt table over to its replacement,
+     * so ids of deleted rows are not handed out again
+     */
+    private static void copySequence(SQLiteDatabase db, String from, String to) {
+        db.execSQL("UPDATE sqlite_sequence SET seq = MAX(seq, (SELECT seq FROM sqlite_sequence WHERE name = ?)) "
+                + "WHERE name = ? AND EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = ?)",
+                new Object[] { from, to, from });
+    }
+}
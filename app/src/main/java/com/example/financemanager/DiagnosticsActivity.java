@@ -0,0 +1,254 @@
+package com.example.financemanager;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.MenuItem;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.financemanager.data.AccountSnapshot;
+import com.example.financemanager.data.BalanceDrift;
+import com.example.financemanager.data.BalanceReport;
+import com.example.financemanager.data.DiagnosticsReport;
+import com.example.financemanager.data.FinanceRepository;
+import com.example.financemanager.data.ScreenMetrics;
+import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Money;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shows how long database calls and screens take: per-method latency and row counts, the
+ * slow query log, the transaction cache counters, and per-screen load and frame timings.
+ * The same data can be shared as JSON or exported to files. Account balances can be
+ * checked against their transactions here, and repaired once the user confirms.
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    // Written to the app's external files directory, readable with adb without root
+    private static final String EXPORT_DIRECTORY = "diagnostics";
+    private static final String QUERIES_FILE = "queries.json";
+    private static final String SCREENS_FILE = "screens.json";
+
+    private FinanceRepository repository;
+    private ScreenMetrics screenMetrics;
+    private final FinanceRepository.TaskGroup tasks = new FinanceRepository.TaskGroup();
+    private TextView diagnosticsTextView;
+    private Button checkBalancesButton;
+    private DiagnosticsReport currentReport;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+
+        repository = FinanceRepository.getInstance(this);
+        screenMetrics = ScreenMetrics.getInstance(this);
+
+        diagnosticsTextView = findViewById(R.id.diagnosticsTextView);
+        CheckBox queryTimingCheckBox = findViewById(R.id.queryTimingCheckBox);
+        CheckBox screenTimingCheckBox = findViewById(R.id.screenTimingCheckBox);
+        Button refreshButton = findViewById(R.id.refreshDiagnosticsButton);
+        Button resetButton = findViewById(R.id.resetDiagnosticsButton);
+        Button shareButton = findViewById(R.id.shareDiagnosticsButton);
+        Button exportButton = findViewById(R.id.exportDiagnosticsButton);
+        checkBalancesButton = findViewById(R.id.checkBalancesButton);
+
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        getSupportActionBar().setTitle("Diagnostics");
+
+        queryTimingCheckBox.setChecked(repository.isQueryTimingEnabled());
+        queryTimingCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            repository.setQueryTimingEnabled(isChecked);
+            loadDiagnostics();
+        });
+        screenTimingCheckBox.setChecked(screenMetrics.isEnabled());
+        screenTimingCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            screenMetrics.setEnabled(isChecked);
+            loadDiagnostics();
+        });
+        refreshButton.setOnClickListener(v -> loadDiagnostics());
+        resetButton.setOnClickListener(v -> {
+            repository.resetQueryStats();
+            screenMetrics.reset();
+            loadDiagnostics();
+        });
+        shareButton.setOnClickListener(v -> shareReport());
+        exportButton.setOnClickListener(v -> exportReports());
+        checkBalancesButton.setOnClickListener(v -> reconcileBalances(false));
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        loadDiagnostics();
+    }
+
+    @Override
+    protected void onDestroy() {
+        tasks.cancelAll();
+        super.onDestroy();
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Take a new snapshot in the background and show it
+     */
+    private void loadDiagnostics() {
+        tasks.add(repository.loadDiagnostics(report -> {
+            currentReport = report;
+            diagnosticsTextView.setText(report.toText() + "\n" + screenMetrics.toText());
+        }));
+    }
+
+    /**
+     * Send the shown query snapshot and the screen timings as JSON to any app that accepts text
+     */
+    private void shareReport() {
+        if (currentReport == null) {
+            return;
+        }
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("application/json");
+        intent.putExtra(Intent.EXTRA_SUBJECT, "Finance Tracker diagnostics");
+        intent.putExtra(Intent.EXTRA_TEXT, combinedJson());
+        startActivity(Intent.createChooser(intent, getString(R.string.title_diagnostics)));
+    }
+
+    /**
+     * @return The query snapshot and the screen timings in one JSON object
+     */
+    private String combinedJson() {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("queries", new JSONObject(currentReport.toJson()));
+            json.put("screens", new JSONObject(screenMetrics.toJson()));
+            return json.toString(2);
+        } catch (JSONException e) {
+            // Both parts are JSON written by the app itself
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write the query and screen summaries to JSON files in the background, replacing the
+     * previous export, e.g. to pull them with adb and compare builds
+     */
+    private void exportReports() {
+        File directory = getExternalFilesDir(EXPORT_DIRECTORY);
+        if (directory == null) {
+            Toast.makeText(this, "Storage is not available", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        tasks.add(repository.loadDiagnostics(report -> {
+            String screens = screenMetrics.toJson();
+            tasks.add(repository.runInBackground(() -> {
+                writeFile(new File(directory, QUERIES_FILE), report.toJson());
+                writeFile(new File(directory, SCREENS_FILE), screens);
+                return directory;
+            }, new FinanceRepository.Callback<File>() {
+                @Override
+                public void onResult(File result) {
+                    Toast.makeText(DiagnosticsActivity.this, "Exported to " + result.getAbsolutePath(),
+                            Toast.LENGTH_LONG).show();
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    Toast.makeText(DiagnosticsActivity.this, "Could not export diagnostics", Toast.LENGTH_SHORT).show();
+                }
+            }));
+        }));
+    }
+
+    /**
+     * Recompute every balance from the transactions in the background. A check only reports
+     * the accounts that drifted and offers to repair them; a repair replaces their balances.
+     * A run cut short resumes from its saved progress the next time.
+     * @param repair True to replace drifted balances, false to only report them
+     */
+    private void reconcileBalances(boolean repair) {
+        checkBalancesButton.setEnabled(false);
+        tasks.add(repository.reconcileBalances(repair, new FinanceRepository.Callback<BalanceReport>() {
+            @Override
+            public void onResult(BalanceReport report) {
+                // Names and currencies of the accounts in the report
+                tasks.add(repository.loadAccountSnapshot(accounts -> {
+                    checkBalancesButton.setEnabled(true);
+                    showBalanceReport(report, accounts, repair);
+                }));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                checkBalancesButton.setEnabled(true);
+                Toast.makeText(DiagnosticsActivity.this, "Could not check balances", Toast.LENGTH_SHORT).show();
+            }
+        }));
+    }
+
+    private void showBalanceReport(BalanceReport report, AccountSnapshot accounts, boolean repaired) {
+        StringBuilder message = new StringBuilder();
+        message.append(report.getCheckedAccounts()).append(" accounts checked, ")
+                .append(report.getDrifts().size()).append(repaired ? " repaired" : " with a wrong balance");
+        for (BalanceDrift drift : report.getDrifts()) {
+            Account account = findAccount(accounts, drift.getAccountId());
+            String name = account != null ? account.getName() : "Account " + drift.getAccountId();
+            String currency = account != null ? account.getCurrency() : null;
+            message.append("\n\n").append(name)
+                    .append("\nStored: ").append(Money.toPlainString(drift.getStoredBalance(), currency))
+                    .append("\nFrom transactions: ").append(Money.toPlainString(drift.getComputedBalance(), currency));
+        }
+        if (!report.getSkippedAccountIds().isEmpty()) {
+            message.append("\n\n").append(report.getSkippedAccountIds().size())
+                    .append(" accounts kept changing and were skipped");
+        }
+
+        AlertDialog.Builder dialog = new AlertDialog.Builder(this)
+                .setTitle(repaired ? "Balances repaired" : "Balance check")
+                .setMessage(message.toString());
+        if (!repaired && !report.getDrifts().isEmpty()) {
+            dialog.setPositiveButton("Repair", (d, which) -> reconcileBalances(true))
+                    .setNegativeButton("Close", null);
+        } else {
+            dialog.setPositiveButton("Close", null);
+        }
+        dialog.show();
+    }
+
+    private static Account findAccount(AccountSnapshot accounts, int accountId) {
+        for (Account account : accounts.getAccounts()) {
+            if (account.getId() == accountId) {
+                return account;
+            }
+        }
+        return null;
+    }
+
+    private static void writeFile(File file, String text) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(text);
+        }
+    }
+}
@@ -1,46 +1,67 @@
 package com.example.financemanager;
 
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
-import android.view.View;
-import android.widget.AdapterView;
 import android.widget.Button;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.financemanager.adapters.AccountAdapter;
+import com.example.financemanager.data.AccountSnapshot;
+import com.example.financemanager.data.DataChangeBus;
+import com.example.financemanager.data.DataChangeSet;
+import com.example.financemanager.data.FinanceRepository;
+import com.example.financemanager.data.LedgerGenerator;
 import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Money;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Currency;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Main activity displaying account overview and providing navigation to other features
  */
 public class MainActivity extends AppCompatActivity {
 
-    private DatabaseHelper dbHelper;
-    private ListView accountsListView;
+    // Sizes offered by the debug menu's sample data generator
+    private static final int[] LEDGER_SIZES = { 1_000, 100_000, 1_000_000 };
+    private static final int LEDGER_ACCOUNTS = 5;
+    private static final int LEDGER_MONTHS = 36;
+    private static final long LEDGER_SEED = 42;
+    private static final String LOAD_ACCOUNTS = "loadAccounts";
+
+    private FinanceRepository repository;
+    private final FinanceRepository.TaskGroup tasks = new FinanceRepository.TaskGroup();
+    private ScreenTracker screenTracker;
+    private RecyclerView accountsRecyclerView;
     private AccountAdapter accountAdapter;
     private List<Account> accountList;
     private TextView totalBalanceTextView;
-    private NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
+    private final DataChangeBus.Listener changeListener = this::onDataChanged;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        screenTracker = ScreenTracker.start(this);
         setContentView(R.layout.activity_main);
 
-        dbHelper = new DatabaseHelper(this);
+        repository = FinanceRepository.getInstance(this);
 
         // Initialize views
-        accountsListView = findViewById(R.id.accountsListView);
+        accountsRecyclerView = findViewById(R.id.accountsRecyclerView);
         totalBalanceTextView = findViewById(R.id.totalBalanceTextView);
         Button addAccountButton = findViewById(R.id.addAccountButton);
         Button addTransactionButton = findViewById(R.id.addTransactionButton);
@@ -62,29 +83,32 @@ public class MainActivity extends AppCompatActivity {
 
         viewHistoryButton.setOnClickListener(v -> openTransactionHistoryActivity());
 
-        // Set item click listener for account list
-        accountsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-            @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                Account account = accountList.get(position);
-                openAccountActivity(account.getId());
-            }
-        });
+        // Set up the account list once; refreshes only rebind the rows that changed
+        accountAdapter = new AccountAdapter(this);
+        accountAdapter.setOnAccountClickListener(account -> openAccountActivity(account.getId()));
+        accountsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        accountsRecyclerView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        accountsRecyclerView.setAdapter(accountAdapter);
 
-        // Load accounts
+        // Load accounts, then follow changes made on any screen
+        repository.getChangeBus().subscribe(changeListener);
         loadAccounts();
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        // Refresh account list when returning to this activity
-        loadAccounts();
+    protected void onDestroy() {
+        repository.getChangeBus().unsubscribe(changeListener);
+        tasks.cancelAll();
+        screenTracker.stop();
+        super.onDestroy();
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        if (isDebuggable()) {
+            getMenuInflater().inflate(R.menu.menu_debug, menu);
+        }
         return true;
     }
 
@@ -96,46 +120,118 @@ public class MainActivity extends AppCompatActivity {
             loadAccounts();
             return true;
         }
+        if (id == R.id.action_diagnostics) {
+            startActivity(new Intent(this, DiagnosticsActivity.class));
+            return true;
+        }
+        if (id == R.id.action_generate_ledger) {
+            showGenerateLedgerDialog();
+            return true;
+        }
 
         return super.onOptionsItemSelected(item);
     }
 
     /**
-     * Load accounts from database and display in ListView
+     * Load accounts from database in the background and display them in the list
      */
     private void loadAccounts() {
-        accountList = dbHelper.getAllAccounts();
+        screenTracker.beginLoad(LOAD_ACCOUNTS);
+        tasks.add(repository.loadAccountSnapshot(screenTracker.loadCallback(LOAD_ACCOUNTS, this::showAccounts)));
+    }
 
-        if(accountList.isEmpty()){
-            currencyFormat.setCurrency(Currency.getInstance("IDR"));
+    /**
+     * Reload the accounts when any account or balance changed. They are served from the
+     * account cache and diffed, so only the changed rows and the total are redrawn.
+     */
+    private void onDataChanged(DataChangeSet changes) {
+        if (changes.hasAccountChanges()) {
+            loadAccounts();
+        }
+    }
 
-        } else {
-            currencyFormat.setCurrency(Currency.getInstance(accountList.get(0).getCurrency()));
+    /**
+     * @return True for debug builds, which get the debug menu
+     */
+    private boolean isDebuggable() {
+        return (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    /**
+     * Let the user pick a ledger size and generate it into new accounts. The same seed is
+     * used every time, so equal sizes give equal data apart from the dates, which end today.
+     */
+    private void showGenerateLedgerDialog() {
+        String[] labels = new String[LEDGER_SIZES.length];
+        for (int i = 0; i < LEDGER_SIZES.length; i++) {
+            labels[i] = String.format(Locale.getDefault(), "%,d transactions", LEDGER_SIZES[i]);
         }
 
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_generate_ledger)
+                .setItems(labels, (dialog, which) -> generateLedger(LEDGER_SIZES[which]))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void generateLedger(int transactionCount) {
+        Toast.makeText(this, "Generating " + String.format(Locale.getDefault(), "%,d", transactionCount) + " transactions...",
+                Toast.LENGTH_SHORT).show();
+        LedgerGenerator generator = new LedgerGenerator(LEDGER_SEED, LEDGER_ACCOUNTS, LEDGER_MONTHS,
+                System.currentTimeMillis());
+        // The new accounts reach the list as data changes
+        tasks.add(repository.generateLedger(generator, transactionCount, new FinanceRepository.Callback<int[]>() {
+            @Override
+            public void onResult(int[] accountIds) {
+                Toast.makeText(MainActivity.this, "Sample data generated", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(MainActivity.this, "Could not generate sample data", Toast.LENGTH_SHORT).show();
+            }
+        }));
+    }
+
+    /**
+     * Display loaded accounts and their total balance
+     * @param snapshot Accounts read from the account cache
+     */
+    private void showAccounts(AccountSnapshot snapshot) {
+        accountList = new ArrayList<>(snapshot.getAccounts());
+
         if (accountList.isEmpty()) {
             // Show a message if no accounts exist
             totalBalanceTextView.setText("No accounts. Add an account to get started.");
         } else {
-            // Calculate total balance across all accounts
-            double totalBalance = 0;
-            for (Account account : accountList) {
-                totalBalance += account.getBalance();
+            // Total balance per currency, one line each when accounts use several
+            Map<String, Long> totals = snapshot.getTotalsByCurrency();
+            StringBuilder text = new StringBuilder("Total Balance:");
+            boolean negative = false;
+            for (Map.Entry<String, Long> total : totals.entrySet()) {
+                NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
+                try {
+                    currencyFormat.setCurrency(Currency.getInstance(total.getKey()));
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    // If currency code is invalid, fallback to default locale currency
+                    currencyFormat.setCurrency(Currency.getInstance(Locale.getDefault()));
+                }
+                text.append(totals.size() == 1 ? " " : "\n")
+                        .append(Money.format(currencyFormat, total.getValue(), total.getKey()));
+                negative |= total.getValue() < 0;
             }
-
-            totalBalanceTextView.setText("Total Balance: " + currencyFormat.format(totalBalance));
+            totalBalanceTextView.setText(text);
 
             // Set text color based on balance
-            if (totalBalance < 0) {
+            if (negative) {
                 totalBalanceTextView.setTextColor(getResources().getColor(android.R.color.holo_red_dark));
             } else {
                 totalBalanceTextView.setTextColor(getResources().getColor(android.R.color.holo_green_dark));
             }
         }
 
-        // Update ListView with account data
-        accountAdapter = new AccountAdapter(MainActivity.this, accountList);
-        accountsListView.setAdapter(accountAdapter);
+        // Update the list; the diff runs in the background
+        accountAdapter.submitList(accountList, () -> screenTracker.contentShown(LOAD_ACCOUNTS));
     }
 
     /**
@@ -1,15 +1,13 @@
 package com.example.financemanager;
 
-import android.graphics.Typeface;
+import android.app.DatePickerDialog;
 import android.os.Bundle;
 import android.util.Log;
-import android.view.Gravity;
 import android.view.MenuItem;
 import android.view.View;
-import android.view.ViewGroup;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
-import android.widget.LinearLayout;
+import android.widget.CheckBox;
 import android.widget.Spinner;
 import android.widget.TextView;
 
@@ -18,47 +16,97 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
-
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.financemanager.adapters.CategoryBreakdownAdapter;
+import com.example.financemanager.data.CategoryBreakdown;
+import com.example.financemanager.data.DataChangeBus;
+import com.example.financemanager.data.DataChangeSet;
+import com.example.financemanager.data.DateRange;
+import com.example.financemanager.data.FinanceRepository;
+import com.example.financemanager.data.ReportPeriod;
+import com.example.financemanager.data.ReportSnapshot;
 import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Money;
 
+import java.text.DateFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Currency;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 
 public class ReportActivity extends AppCompatActivity {
 
-    private DatabaseHelper dbHelper;
+    // Categories shown before the rest are folded into "Other"
+    private static final int TOP_CATEGORY_COUNT = 5;
+    private static final String[] SORT_LABELS = {"Largest first", "Smallest first", "By name"};
+    // In the order of ReportPeriod
+    private static final String[] PERIOD_LABELS = {
+            "All time", "This month", "Last month", "Last 30 days", "Last 90 days", "This year", "Custom range"
+    };
+    private static final String LOAD_REPORT = "updateReportData";
+    private static final String MIXED_CURRENCIES = "mixed currencies, select an account";
+
+    private FinanceRepository repository;
+    private final FinanceRepository.TaskGroup tasks = new FinanceRepository.TaskGroup();
+    private ScreenTracker screenTracker;
+    private FinanceRepository.Task reportTask;
     private Spinner accountSpinner;
+    private Spinner periodSpinner;
+    private TextView rangeTextView;
     private TextView totalIncomeTextView;
     private TextView totalExpenseTextView;
     private TextView netBalanceTextView;
-    private LinearLayout categoryBreakdownLayout;
+    private Spinner breakdownSortSpinner;
+    private CheckBox breakdownTopOnlyCheckBox;
+    private RecyclerView categoryBreakdownRecyclerView;
+    private CategoryBreakdownAdapter breakdownAdapter;
 
     private List<Account> accountList;
     private NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
-    private int selectedAccountId = -1; // -1 indicates all account
+    private String currencyCode = "IDR";
+    private int selectedAccountId = DatabaseHelper.ALL_ACCOUNTS;
+    private ReportPeriod selectedPeriod = ReportPeriod.ALL_TIME;
+    // Dates of the custom period, null until picked
+    private DateRange customRange;
+    private final DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM);
+    private ReportSnapshot currentSnapshot;
+    private CategoryBreakdown.Sort breakdownSort = CategoryBreakdown.Sort.AMOUNT_DESCENDING;
+    private final DataChangeBus.Listener changeListener = this::onDataChanged;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        screenTracker = ScreenTracker.start(this);
         setContentView(R.layout.activity_report);
 
-        // Initialize DatabaseHelper
-        dbHelper = new DatabaseHelper(this);
+        // Initialize repository
+        repository = FinanceRepository.getInstance(this);
 
         // Initialize Views
         accountSpinner = findViewById(R.id.reportAccountSpinner);
+        periodSpinner = findViewById(R.id.reportPeriodSpinner);
+        rangeTextView = findViewById(R.id.reportRangeTextView);
         totalIncomeTextView = findViewById(R.id.totalIncomeTextView);
         totalExpenseTextView = findViewById(R.id.totalExpenseTextView);
         netBalanceTextView = findViewById(R.id.netBalanceTextView);
-        categoryBreakdownLayout = findViewById(R.id.categoryBreakdownLayout);
+        breakdownSortSpinner = findViewById(R.id.breakdownSortSpinner);
+        breakdownTopOnlyCheckBox = findViewById(R.id.breakdownTopOnlyCheckBox);
+        categoryBreakdownRecyclerView = findViewById(R.id.categoryBreakdownRecyclerView);
+        breakdownAdapter = new CategoryBreakdownAdapter(this);
+        categoryBreakdownRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        categoryBreakdownRecyclerView.setAdapter(breakdownAdapter);
 
         // Set up action bar
         getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         getSupportActionBar().setTitle("Financial Reports");
 
-        // Load account
+        // Load account, then follow changes made on any screen
+        repository.getChangeBus().subscribe(changeListener);
         this.loadAccounts();
 
         // Set spinner listener
@@ -67,7 +115,7 @@ public class ReportActivity extends AppCompatActivity {
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 // position 0 = "All Accounts"
                 if (position == 0) {
-                    selectedAccountId = -1;
+                    selectedAccountId = DatabaseHelper.ALL_ACCOUNTS;
                 } else {
                     selectedAccountId = accountList.get(position - 1).getId();
                 }
@@ -79,10 +127,63 @@ public class ReportActivity extends AppCompatActivity {
 
             @Override
             public void onNothingSelected(AdapterView<?> parent) {
-                selectedAccountId = -1;
+                selectedAccountId = DatabaseHelper.ALL_ACCOUNTS;
+                updateReportData();
+            }
+        });
+
+        // Presets are recomputed on every load so that rolling periods follow the current day
+        ArrayAdapter<String> periodAdapter = new ArrayAdapter<>(
+                this,
+                android.R.layout.simple_spinner_item,
+                PERIOD_LABELS
+        );
+        periodAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        periodSpinner.setAdapter(periodAdapter);
+        periodSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                ReportPeriod period = ReportPeriod.values()[position];
+                if (period == selectedPeriod) {
+                    return;
+                }
+                selectedPeriod = period;
                 updateReportData();
+                if (period == ReportPeriod.CUSTOM && customRange == null) {
+                    pickCustomRange();
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+        rangeTextView.setOnClickListener(v -> {
+            if (selectedPeriod == ReportPeriod.CUSTOM) {
+                pickCustomRange();
+            }
+        });
+
+        // Sorting and collapsing only rearrange the loaded report
+        ArrayAdapter<String> sortAdapter = new ArrayAdapter<>(
+                this,
+                android.R.layout.simple_spinner_item,
+                SORT_LABELS
+        );
+        sortAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        breakdownSortSpinner.setAdapter(sortAdapter);
+        breakdownSortSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                breakdownSort = CategoryBreakdown.Sort.values()[position];
+                updateCategoryBreakdown();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
             }
         });
+        breakdownTopOnlyCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> updateCategoryBreakdown());
     }
 
     @Override
@@ -94,11 +195,27 @@ public class ReportActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onDestroy() {
+        repository.getChangeBus().unsubscribe(changeListener);
+        tasks.cancelAll();
+        screenTracker.stop();
+        super.onDestroy();
+    }
+
     /**
      * Load account from database and populate spinner
      */
     private void loadAccounts(){
-        accountList = dbHelper.getAllAccounts();
+        tasks.add(repository.loadAccounts(this::showAccounts));
+    }
+
+    /**
+     * Populate spinner with the loaded accounts
+     * @param accounts Accounts read from the database
+     */
+    private void showAccounts(List<Account> accounts){
+        accountList = accounts;
 
         List<String> spinnerItems = new ArrayList<>();
         spinnerItems.add("All Accounts");
@@ -114,39 +231,128 @@ public class ReportActivity extends AppCompatActivity {
         );
         adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         accountSpinner.setAdapter(adapter);
+
+        // Keep the selected account when the list is reloaded
+        for (int i = 0; i < accountList.size(); i++) {
+            if (accountList.get(i).getId() == selectedAccountId) {
+                accountSpinner.setSelection(i + 1);
+                break;
+            }
+        }
+        // A report loaded before the accounts could not pick its currency yet
+        if (currentSnapshot != null) {
+            showReport(currentSnapshot);
+        }
     }
 
     /**
-     * Load account from database and populate spinner
+     * Reload the account list when accounts were added, removed, renamed or changed currency,
+     * and the report when transactions it covers changed
+     */
+    private void onDataChanged(DataChangeSet changes) {
+        if (changes.hasAccountDetailChanges()) {
+            loadAccounts();
+        } else if (changes.hasTransactionChanges()
+                && (selectedAccountId == DatabaseHelper.ALL_ACCOUNTS || changes.affectsAccount(selectedAccountId))) {
+            updateReportData();
+        }
+    }
+
+    /**
+     * Read the report of the selected account and period in the background, replacing any
+     * report still loading
      */
     private void updateReportData() {
-        double totalIncome, totalExpense, netBalance;
-        List<Account> accountList = dbHelper.getAllAccounts();
-        if(accountList.isEmpty()){
-            currencyFormat.setCurrency(Currency.getInstance("IDR"));
-        } else {
-            currencyFormat.setCurrency(Currency.getInstance(accountList.get(0).getCurrency()));
+        if (reportTask != null) {
+            reportTask.cancel();
         }
+        DateRange range = selectedRange();
+        showRange(range);
+        screenTracker.beginLoad(LOAD_REPORT);
+        reportTask = tasks.add(repository.loadReportSnapshot(selectedAccountId, range,
+                screenTracker.loadCallback(LOAD_REPORT, this::showReport)));
+    }
 
-        if(selectedAccountId == -1){
+    /**
+     * @return Dates of the selected period, all dates for a custom period not picked yet
+     */
+    private DateRange selectedRange() {
+        if (selectedPeriod == ReportPeriod.CUSTOM) {
+            return customRange == null ? DateRange.all() : customRange;
+        }
+        return selectedPeriod.toRange(System.currentTimeMillis());
+    }
 
-            // All accounts
-            totalIncome = dbHelper.getTotalIncome();
-            totalExpense = dbHelper.getTotalExpense();
+    private void showRange(DateRange range) {
+        if (range.isAll()) {
+            rangeTextView.setText(selectedPeriod == ReportPeriod.CUSTOM ? "Tap to pick dates" : "All dates");
+            return;
+        }
+        // The range ends at the start of the day after the last one shown
+        rangeTextView.setText(dateFormat.format(range.getFromMillis()) + " - "
+                + dateFormat.format(range.getToMillis() - 1));
+    }
 
+    /**
+     * Ask for the first and then the last day of a custom period, and show its report.
+     * Until both are picked the report covers all dates.
+     */
+    private void pickCustomRange() {
+        Calendar first = Calendar.getInstance();
+        if (customRange != null) {
+            first.setTimeInMillis(customRange.getFromMillis());
         } else {
+            first.set(Calendar.DAY_OF_MONTH, 1);
+        }
+        new DatePickerDialog(this, (view, year, month, dayOfMonth) -> {
+            first.set(year, month, dayOfMonth);
+            Calendar last = Calendar.getInstance();
+            if (customRange != null) {
+                last.setTimeInMillis(customRange.getToMillis() - 1);
+            }
+            new DatePickerDialog(this, (lastView, lastYear, lastMonth, lastDayOfMonth) -> {
+                last.set(lastYear, lastMonth, lastDayOfMonth);
+                customRange = ReportPeriod.days(first.getTimeInMillis(), last.getTimeInMillis());
+                updateReportData();
+            }, last.get(Calendar.YEAR), last.get(Calendar.MONTH), last.get(Calendar.DAY_OF_MONTH)).show();
+        }, first.get(Calendar.YEAR), first.get(Calendar.MONTH), first.get(Calendar.DAY_OF_MONTH)).show();
+    }
 
-            totalIncome = dbHelper.getTotalIncome(selectedAccountId);
-            totalExpense = dbHelper.getTotalExpense(selectedAccountId);
-
+    /**
+     * Show the totals and breakdowns of a report
+     * @param snapshot Report of the selected account
+     */
+    private void showReport(ReportSnapshot snapshot) {
+        currentSnapshot = snapshot;
+        if (accountList == null) {
+            // Shown by showAccounts once the accounts are loaded
+            return;
+        }
+        currencyCode = reportCurrency();
+        if (currencyCode == null) {
+            // Minor units of different currencies cannot be added up
+            totalIncomeTextView.setText("Total Income: " + MIXED_CURRENCIES);
+            totalExpenseTextView.setText("Total Expense: " + MIXED_CURRENCIES);
+            netBalanceTextView.setText("Net Balance: " + MIXED_CURRENCIES);
+            netBalanceTextView.setTextColor(getResources().getColor(android.R.color.darker_gray));
+            updateCategoryBreakdown();
+            return;
+        }
+        try {
+            currencyFormat.setCurrency(Currency.getInstance(currencyCode));
+        } catch (IllegalArgumentException e) {
+            // If currency code is invalid, fallback to default locale currency
+            currencyFormat.setCurrency(Currency.getInstance(Locale.getDefault()));
         }
 
-        netBalance = totalIncome - totalExpense;
+        long totalIncome = snapshot.getTotalIncome();
+        long totalExpense = snapshot.getTotalExpense();
+        long netBalance = snapshot.getNetBalance();
 
         // Update UI
-        totalIncomeTextView.setText("Total Income: " + currencyFormat.format(totalIncome));
-        totalExpenseTextView.setText("Total Expense: " + currencyFormat.format(totalExpense));
-        netBalanceTextView.setText("Net Balance: " + currencyFormat.format(netBalance));
+        totalIncomeTextView.setText("Total Income: " + Money.format(currencyFormat, totalIncome, currencyCode));
+        totalExpenseTextView.setText("Total Expense: " + Money.format(currencyFormat, totalExpense, currencyCode));
+        netBalanceTextView.setText("Net Balance: " + Money.format(currencyFormat, netBalance, currencyCode));
 
         // Set color for net balance
         if (netBalance < 0) {
@@ -160,90 +366,60 @@ public class ReportActivity extends AppCompatActivity {
     }
 
     /**
-     * Update category breakdown section
+     * @return Currency of the selected account, or the one currency of all accounts;
+     *         null for all accounts when they use different currencies
      */
-    public void updateCategoryBreakdown() {
-        // Clear previous views
-        categoryBreakdownLayout.removeAllViews();
-
-        // Expense breakdown
-        List<DatabaseHelper.CategorySummary> expenseCategories = dbHelper.getExpensesByCategory();
-        if (!expenseCategories.isEmpty()) {
-            addTitle("Expense Breakdown by Category");
-            addCategoryRows(expenseCategories);
-        } else {
-            addTitle("Expense Breakdown by Category");
-            addNoDataMessage("No expense data available");
+    private String reportCurrency() {
+        for (Account account : accountList) {
+            if (account.getId() == selectedAccountId) {
+                return account.getCurrency();
+            }
         }
-
-        // Income breakdown
-        List<DatabaseHelper.CategorySummary> incomeCategories = dbHelper.getIncomeByCategory();
-        if (!incomeCategories.isEmpty()) {
-            addTitle("Income Breakdown by Category");
-            addCategoryRows(incomeCategories);
-        } else {
-            addTitle("Income Breakdown by Category");
-            addNoDataMessage("No income data available");
+        if (accountList.isEmpty()) {
+            return "IDR";
         }
-    }
-
-    private void addTitle(String titleText) {
-        TextView titleTextView = createTextView(titleText, 18, Typeface.BOLD);
-        titleTextView.setPadding(0, dpToPx(20), 0, dpToPx(10));
-        categoryBreakdownLayout.addView(titleTextView);
-    }
-
-    private void addNoDataMessage(String message) {
-        TextView noDataTextView = createTextView(message, 16, Typeface.NORMAL);
-        noDataTextView.setGravity(Gravity.CENTER);
-        categoryBreakdownLayout.addView(noDataTextView);
-    }
-
-    private void addCategoryRows(List<DatabaseHelper.CategorySummary> categories) {
-        for (DatabaseHelper.CategorySummary category : categories) {
-            LinearLayout row = createCategoryRow(category);
-            categoryBreakdownLayout.addView(row);
+        String currency = accountList.get(0).getCurrency();
+        for (Account account : accountList) {
+            if (!Objects.equals(currency, account.getCurrency())) {
+                return null;
+            }
         }
+        return currency;
     }
 
-    private LinearLayout createCategoryRow(DatabaseHelper.CategorySummary category) {
-        LinearLayout row = new LinearLayout(this);
-        row.setOrientation(LinearLayout.HORIZONTAL);
-        row.setPadding(dpToPx(10), dpToPx(5), dpToPx(10), dpToPx(5));
-
-        LinearLayout.LayoutParams rowParams = new LinearLayout.LayoutParams(
-                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
-        rowParams.setMargins(0, dpToPx(2), 0, dpToPx(2));
-        row.setLayoutParams(rowParams);
-
-        // Category Name Text
-        TextView categoryNameTextView = createTextView(category.getCategory(), 16, Typeface.NORMAL);
-        categoryNameTextView.setLayoutParams(new LinearLayout.LayoutParams(
-                0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
-
-        // Amount Text
-        TextView amountTextView = createTextView(currencyFormat.format(category.getAmount()), 16, Typeface.NORMAL);
-        amountTextView.setLayoutParams(new LinearLayout.LayoutParams(
-                0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
-        amountTextView.setGravity(Gravity.END);
-
-        row.addView(categoryNameTextView);
-        row.addView(amountTextView);
-
-        return row;
-    }
-
-
-    private TextView createTextView(String text, int textSizeSp, int typeface) {
-        TextView textView = new TextView(this);
-        textView.setText(text);
-        textView.setTextSize(textSizeSp);
-        textView.setTypeface(null, typeface);
-        return textView;
+    /**
+     * Show the breakdowns of the current report with the selected sorting and collapsing.
+     * Rows are diffed against the shown ones and only the visible rows are bound.
+     */
+    private void updateCategoryBreakdown() {
+        if (currentSnapshot == null) {
+            return;
+        }
+        List<CategoryBreakdownAdapter.Item> items = new ArrayList<>();
+        addSection(items, 0, "Expense Breakdown by Category", currentSnapshot.getExpensesByCategory(),
+                "No expense data available");
+        addSection(items, 1, "Income Breakdown by Category", currentSnapshot.getIncomeByCategory(),
+                "No income data available");
+        // Only measured after a report load; re-sorting was not begun as one
+        breakdownAdapter.submitList(items, () -> screenTracker.contentShown(LOAD_REPORT));
     }
 
-    private int dpToPx(int dp) {
-        float density = this.getResources().getDisplayMetrics().density;
-        return Math.round(dp * density);
+    private void addSection(List<CategoryBreakdownAdapter.Item> items, int section, String title,
+                            List<DatabaseHelper.CategorySummary> categories, String emptyMessage) {
+        items.add(CategoryBreakdownAdapter.Item.title(section, title));
+        if (categories.isEmpty()) {
+            items.add(CategoryBreakdownAdapter.Item.message(section, emptyMessage));
+            return;
+        }
+        if (currencyCode == null) {
+            items.add(CategoryBreakdownAdapter.Item.message(section, "Select an account to see amounts in "
+                    + "different currencies"));
+            return;
+        }
+        int topCount = breakdownTopOnlyCheckBox.isChecked() ? TOP_CATEGORY_COUNT : CategoryBreakdown.ALL_CATEGORIES;
+        for (DatabaseHelper.CategorySummary category : CategoryBreakdown.arrange(categories, breakdownSort, topCount)) {
+            items.add(CategoryBreakdownAdapter.Item.category(section, category.getCategory(),
+                    Money.format(currencyFormat, category.getAmountMinor(), currencyCode)));
+        }
     }
 }
@@ -0,0 +1,221 @@
+package com.example.financemanager;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.FrameMetrics;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.Window;
+
+import com.example.financemanager.data.FinanceRepository;
+import com.example.financemanager.data.ScreenMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures one open screen for {@link ScreenMetrics}: the time from its creation to its
+ * first drawn frame, the time from each data request to the first frame drawn with the
+ * result, the slow frames in the second that follows, and the duration of every frame.
+ * <p>
+ * An activity starts a tracker in onCreate, marks its loads with {@link #beginLoad} and
+ * {@link #contentShown}, passes their callbacks through {@link #loadCallback} so failed loads
+ * are dropped, and stops the tracker in onDestroy. While screen timing is off
+ * the tracker does nothing. Methods other than the frame listener run on the main thread.
+ */
+public class ScreenTracker {
+
+    // Slow frames are attributed to the latest load for this long after its content is drawn
+    private static final long JANK_WINDOW_NANOS = 1_000_000_000L;
+
+    // Frame metrics arrive on a shared background thread, away from the frames they describe
+    private static Handler frameMetricsHandler;
+
+    private final ScreenMetrics metrics;
+    private final String screen;
+    private final Window window;
+    private final View decorView;
+    private final long createdNanos;
+    // Earliest unanswered request per load, main thread only
+    private final Map<String, Long> pendingLoads = new HashMap<>();
+    private Window.OnFrameMetricsAvailableListener frameListener;
+
+    // Window after the latest content, shared with the frame metrics thread
+    private String jankLoad;
+    private long jankWindowEnd;
+    private int jankSlowFrames;
+
+    private ScreenTracker(ScreenMetrics metrics, Activity activity) {
+        this.metrics = metrics;
+        this.screen = activity.getClass().getSimpleName();
+        this.window = activity.getWindow();
+        this.decorView = window.getDecorView();
+        this.createdNanos = System.nanoTime();
+    }
+
+    /**
+     * Start measuring a screen; call at the start of onCreate
+     * @return Tracker of the screen, inactive while screen timing is off
+     */
+    public static ScreenTracker start(Activity activity) {
+        ScreenMetrics metrics = ScreenMetrics.getInstance(activity);
+        ScreenTracker tracker = new ScreenTracker(metrics.isEnabled() ? metrics : null, activity);
+        if (tracker.metrics != null) {
+            tracker.onNextDraw(drawnNanos -> metrics.recordFirstDraw(tracker.screen, drawnNanos - tracker.createdNanos));
+            tracker.listenToFrames();
+        }
+        return tracker;
+    }
+
+    /**
+     * Mark that the screen requested data. A load requested again before its content was
+     * shown keeps the first request time, since the user has been waiting since then.
+     * @param load Name of the load, e.g. the requesting method
+     */
+    public void beginLoad(String load) {
+        if (metrics != null && !pendingLoads.containsKey(load)) {
+            pendingLoads.put(load, System.nanoTime());
+        }
+    }
+
+    /**
+     * Forget a load that will not be shown, so that its next request is measured on its own
+     */
+    public void cancelLoad(String load) {
+        if (metrics != null) {
+            pendingLoads.remove(load);
+        }
+    }
+
+    /**
+     * @return The callback of a load, cancelling the load if its task fails
+     */
+    public <T> FinanceRepository.Callback<T> loadCallback(String load, FinanceRepository.Callback<T> callback) {
+        return new FinanceRepository.Callback<T>() {
+            @Override
+            public void onResult(T result) {
+                callback.onResult(result);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                cancelLoad(load);
+                callback.onError(e);
+            }
+        };
+    }
+
+    /**
+     * Mark that the result of a load was handed to the views; it is measured up to the next
+     * drawn frame. Does nothing if the load was not begun, e.g. for appended pages.
+     */
+    public void contentShown(String load) {
+        if (metrics == null) {
+            return;
+        }
+        Long requestedNanos = pendingLoads.remove(load);
+        if (requestedNanos == null) {
+            return;
+        }
+        onNextDraw(drawnNanos -> {
+            metrics.recordContent(screen, load, drawnNanos - requestedNanos);
+            startJankWindow(load, drawnNanos);
+        });
+    }
+
+    /**
+     * Stop measuring; call in onDestroy
+     */
+    public void stop() {
+        if (metrics == null) {
+            return;
+        }
+        // Loads still running are cancelled with the screen
+        pendingLoads.clear();
+        if (frameListener != null) {
+            window.removeOnFrameMetricsAvailableListener(frameListener);
+            frameListener = null;
+        }
+        synchronized (this) {
+            finishJankWindow();
+        }
+    }
+
+    private interface DrawCallback {
+        void onDrawn(long drawnNanos);
+    }
+
+    /**
+     * Run a callback when the next frame of the screen is drawn
+     */
+    private void onNextDraw(DrawCallback callback) {
+        ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+            private boolean drawn;
+
+            @Override
+            public void onDraw() {
+                if (drawn) {
+                    return;
+                }
+                drawn = true;
+                callback.onDrawn(System.nanoTime());
+                // Listeners cannot be removed while the tree is being drawn
+                decorView.post(() -> decorView.getViewTreeObserver().removeOnDrawListener(this));
+            }
+        };
+        decorView.getViewTreeObserver().addOnDrawListener(listener);
+        // Make sure a frame follows even if the content looks the same
+        decorView.invalidate();
+    }
+
+    private void listenToFrames() {
+        frameListener = (frameWindow, frameMetrics, dropCount) -> {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    && frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1) {
+                // Covered by the time to first draw
+                return;
+            }
+            long duration = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+            metrics.recordFrame(screen, duration);
+            synchronized (this) {
+                if (jankLoad == null) {
+                    return;
+                }
+                if (System.nanoTime() > jankWindowEnd) {
+                    finishJankWindow();
+                } else if (duration >= ScreenMetrics.SLOW_FRAME_NANOS) {
+                    jankSlowFrames++;
+                }
+            }
+        };
+        window.addOnFrameMetricsAvailableListener(frameListener, frameMetricsHandler());
+    }
+
+    private synchronized void startJankWindow(String load, long drawnNanos) {
+        finishJankWindow();
+        jankLoad = load;
+        jankWindowEnd = drawnNanos + JANK_WINDOW_NANOS;
+        jankSlowFrames = 0;
+    }
+
+    /**
+     * Record the slow frames of the current window, if any; called holding the lock
+     */
+    private void finishJankWindow() {
+        if (jankLoad != null) {
+            metrics.recordSlowFramesAfterContent(screen, jankLoad, jankSlowFrames);
+            jankLoad = null;
+        }
+    }
+
+    private static synchronized Handler frameMetricsHandler() {
+        if (frameMetricsHandler == null) {
+            HandlerThread thread = new HandlerThread("frame-metrics");
+            thread.start();
+            frameMetricsHandler = new Handler(thread.getLooper());
+        }
+        return frameMetricsHandler;
+    }
+}
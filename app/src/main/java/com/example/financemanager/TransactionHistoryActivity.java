@@ -1,9 +1,13 @@
 package com.example.financemanager;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.ListView;
+import android.widget.EditText;
 import android.widget.TextView;
 
 import androidx.activity.EdgeToEdge;
@@ -11,38 +15,97 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.financemanager.adapters.PagingScrollListener;
 import com.example.financemanager.adapters.TransactionAdapter;
-import com.example.financemanager.models.Transaction;
-
+import com.example.financemanager.adapters.TransactionFormatter;
+import com.example.financemanager.adapters.TransactionListItem;
+import com.example.financemanager.data.DataChangeBus;
+import com.example.financemanager.data.DataChangeSet;
+import com.example.financemanager.data.FinanceRepository;
+import com.example.financemanager.data.TransactionFilter;
+import com.example.financemanager.data.TransactionPageSource;
+
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
 public class TransactionHistoryActivity extends AppCompatActivity {
 
-    private DatabaseHelper dbHelper;
-    private ListView transactionsListView;
+    // Wait for a pause in typing before searching, so each keystroke does not start a query
+    private static final long SEARCH_DELAY_MILLIS = 300;
+    private static final String LOAD_TRANSACTIONS = "loadTransactions";
+
+    private FinanceRepository repository;
+    private final FinanceRepository.TaskGroup tasks = new FinanceRepository.TaskGroup();
+    private ScreenTracker screenTracker;
+    private FinanceRepository.Task pageTask;
+    private RecyclerView transactionsRecyclerView;
     private TextView noTransactionsTextView;
-    private List<Transaction> transactionList;
+    private EditText searchEditText;
+    private List<TransactionListItem> transactionList;
     private TransactionAdapter transactionAdapter;
+    private TransactionFormatter transactionFormatter;
+    private TransactionPageSource pageSource;
+    private String searchQuery = "";
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = this::applySearch;
+    private final DataChangeBus.Listener changeListener = this::onDataChanged;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        screenTracker = ScreenTracker.start(this);
         setContentView(R.layout.activity_transaction_history);
 
-        // Initialize DatabaseHelper
-        dbHelper = new DatabaseHelper(this);
+        // Initialize repository
+        repository = FinanceRepository.getInstance(this);
 
         // Initialize Views
-        transactionsListView = findViewById(R.id.transactionsHistoryListView);
+        transactionsRecyclerView = findViewById(R.id.transactionsHistoryRecyclerView);
         noTransactionsTextView = findViewById(R.id.noTransactionsTextView);
+        searchEditText = findViewById(R.id.searchEditText);
 
         // Set up action bar
         getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         getSupportActionBar().setTitle("Transaction History");
 
-        // Load transaction
+        // Set up paging: rows are appended as the user scrolls
+        transactionList = new ArrayList<>();
+        transactionFormatter = new TransactionFormatter(this, "IDR");
+        transactionAdapter = new TransactionAdapter(this);
+        transactionsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        transactionsRecyclerView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        transactionsRecyclerView.setAdapter(transactionAdapter);
+        transactionsRecyclerView.addOnScrollListener(new PagingScrollListener() {
+            @Override
+            protected void onLoadMore() {
+                loadNextPage();
+            }
+        });
+
+        // Search as the user types
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DELAY_MILLIS);
+            }
+        });
+
+        // Load transaction, then follow changes made on any screen
+        repository.getChangeBus().subscribe(changeListener);
         this.loadTransactions();
     }
 
@@ -55,24 +118,112 @@ public class TransactionHistoryActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onDestroy() {
+        searchHandler.removeCallbacks(searchRunnable);
+        repository.getChangeBus().unsubscribe(changeListener);
+        tasks.cancelAll();
+        screenTracker.stop();
+        super.onDestroy();
+    }
+
     /**
-     * Load transactions from database
+     * Reload the list for the text in the search box, unless it has not changed
+     */
+    private void applySearch() {
+        String query = searchEditText.getText().toString().trim();
+        if (query.equals(searchQuery)) {
+            return;
+        }
+        searchQuery = query;
+        loadTransactions();
+    }
+
+    /**
+     * Reload the shown rows when transactions change, or accounts whose names the rows show
+     */
+    private void onDataChanged(DataChangeSet changes) {
+        // Balance-only account changes leave the shown rows as they are
+        if (changes.hasTransactionChanges() || changes.hasAccountDetailChanges()) {
+            reloadTransactions(transactionList.size());
+        }
+    }
+
+    /**
+     * Load the first page of transactions from database, or of search results while the
+     * search box has text. It replaces the shown rows once loaded, and the adapter animates
+     * only the rows that differ.
      */
     private void loadTransactions() {
-        transactionList = dbHelper.getAllTransactions();
+        reloadTransactions(0);
+    }
 
+    /**
+     * Load transactions again from the first page, at least minRows of them so a refreshed
+     * list keeps the rows the user has scrolled through
+     * @param minRows Number of rows wanted
+     */
+    private void reloadTransactions(int minRows) {
+        if (pageTask != null) {
+            pageTask.cancel();
+            pageTask = null;
+        }
+        // A fresh source, since a cancelled load may still be advancing the old one
+        if (searchQuery.isEmpty()) {
+            pageSource = new TransactionPageSource(repository.getDatabaseHelper(), DatabaseHelper.ALL_ACCOUNTS);
+        } else {
+            pageSource = TransactionPageSource.search(repository.getDatabaseHelper(), searchQuery,
+                    TransactionFilter.all());
+        }
+        screenTracker.beginLoad(LOAD_TRANSACTIONS);
+        pageTask = tasks.add(repository.loadNextPages(pageSource, minRows, transactionFormatter::format,
+                screenTracker.loadCallback(LOAD_TRANSACTIONS, rows -> {
+                    transactionList = rows;
+                    showTransactions();
+                })));
+    }
+
+    /**
+     * Show the list, or the empty message when there are no transactions
+     */
+    private void updateEmptyState() {
         if(transactionList.isEmpty()){
             noTransactionsTextView.setText("No transactions found.");
-            transactionsListView.setVisibility(View.GONE);
+            transactionsRecyclerView.setVisibility(View.GONE);
             noTransactionsTextView.setVisibility(View.VISIBLE);
         } else {
             noTransactionsTextView.setVisibility(android.view.View.GONE);
-            transactionsListView.setVisibility(android.view.View.VISIBLE);
+            transactionsRecyclerView.setVisibility(android.view.View.VISIBLE);
+        }
+    }
 
-            // Set up adapter
-            transactionAdapter = new TransactionAdapter(this, transactionList, "IDR");
-            transactionsListView.setAdapter(transactionAdapter);
+    /**
+     * Load the next page of transactions in the background and append it to the list.
+     * Only one page is loaded at a time.
+     */
+    private void loadNextPage() {
+        if (!pageSource.hasMore() || (pageTask != null && !pageTask.isDone())) {
+            return;
         }
+        pageTask = tasks.add(repository.loadNextPage(pageSource, transactionFormatter::format, page -> {
+            if (!page.isEmpty()) {
+                List<TransactionListItem> rows = new ArrayList<>(transactionList.size() + page.size());
+                rows.addAll(transactionList);
+                rows.addAll(page);
+                transactionList = rows;
+            }
+            showTransactions();
+        }));
+    }
+
+    /**
+     * Hand the loaded rows to the adapter, which diffs them in the background. The adapter
+     * keeps the submitted list, so transactionList is replaced rather than modified afterwards.
+     */
+    private void showTransactions() {
+        // Appended pages were not begun as a load, so only full loads are measured
+        transactionAdapter.submitList(transactionList, () -> screenTracker.contentShown(LOAD_TRANSACTIONS));
+        updateEmptyState();
     }
 
 }
\ No newline at end of file
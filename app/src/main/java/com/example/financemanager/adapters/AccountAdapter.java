@@ -4,48 +4,86 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.financemanager.R;
 import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Money;
 
 import java.text.NumberFormat;
-import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Adapter for displaying account items in a RecyclerView.
+ * Lists passed to {@link #submitList} are diffed on a background thread and only the rows
+ * that changed are rebound; rows keep their account id as a stable item id.
+ */
+public class AccountAdapter extends ListAdapter<Account, AccountAdapter.ViewHolder> {
+
+    /**
+     * Receives taps on an account row
+     */
+    public interface OnAccountClickListener {
+        void onAccountClick(Account account);
+    }
 
-public class AccountAdapter extends ArrayAdapter<Account> {
+    private static final DiffUtil.ItemCallback<Account> DIFF_CALLBACK = new DiffUtil.ItemCallback<Account>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Account oldItem, @NonNull Account newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Account oldItem, @NonNull Account newItem) {
+            return oldItem.getBalanceMinor() == newItem.getBalanceMinor()
+                    && Objects.equals(oldItem.getName(), newItem.getName())
+                    && Objects.equals(oldItem.getAccountType(), newItem.getAccountType())
+                    && Objects.equals(oldItem.getCurrency(), newItem.getCurrency());
+        }
+    };
 
     private final Context context;
-    private final List<Account> accounts;
     private final NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
+    private OnAccountClickListener clickListener;
 
-    public AccountAdapter(@NonNull Context context, List<Account> accounts) {
-        super(context, R.layout.item_account, accounts);
+    public AccountAdapter(@NonNull Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.accounts = accounts;
+        setHasStableIds(true);
     }
 
-    @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-
-        View rowView = convertView;
-        if (rowView == null) {
-            rowView = inflater.inflate(R.layout.item_account, parent, false);
+    public void setOnAccountClickListener(OnAccountClickListener listener) {
+        this.clickListener = listener;
+    }
 
-            ViewHolder viewHolder = new ViewHolder();
-            viewHolder.accountName = rowView.findViewById(R.id.accountName);
-            viewHolder.accountType = rowView.findViewById(R.id.accountType);
-            viewHolder.accountBalance = rowView.findViewById(R.id.accountBalance);
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
 
-            rowView.setTag(viewHolder);
-        }
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View rowView = LayoutInflater.from(context).inflate(R.layout.item_account, parent, false);
+        ViewHolder holder = new ViewHolder(rowView);
+        rowView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (clickListener != null && position != RecyclerView.NO_POSITION) {
+                clickListener.onAccountClick(getItem(position));
+            }
+        });
+        return holder;
+    }
 
-        ViewHolder holder = (ViewHolder) rowView.getTag();
-        Account account = accounts.get(position);
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        Account account = getItem(position);
 
         holder.accountName.setText(account.getName());
         holder.accountType.setText(account.getAccountType());
@@ -60,21 +98,26 @@ public class AccountAdapter extends ArrayAdapter<Account> {
             }
         }
 
-        holder.accountBalance.setText(currencyFormat.format(account.getBalance()));
+        holder.accountBalance.setText(Money.format(currencyFormat, account.getBalanceMinor(), account.getCurrency()));
 
         // Set text color based on balance
-        if (account.getBalance() < 0) {
+        if (account.getBalanceMinor() < 0) {
             holder.accountBalance.setTextColor(context.getResources().getColor(android.R.color.holo_red_dark));
         } else {
             holder.accountBalance.setTextColor(context.getResources().getColor(android.R.color.holo_green_dark));
         }
-
-        return rowView;
     }
 
-    static class ViewHolder {
-        TextView accountName;
-        TextView accountType;
-        TextView accountBalance;
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView accountName;
+        final TextView accountType;
+        final TextView accountBalance;
+
+        ViewHolder(View rowView) {
+            super(rowView);
+            accountName = rowView.findViewById(R.id.accountName);
+            accountType = rowView.findViewById(R.id.accountType);
+            accountBalance = rowView.findViewById(R.id.accountBalance);
+        }
     }
 }
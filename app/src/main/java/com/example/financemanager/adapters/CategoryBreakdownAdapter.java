@@ -0,0 +1,123 @@
+package com.example.financemanager.adapters;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.financemanager.R;
+
+/**
+ * Adapter for the category breakdown of a report. Section titles, empty messages and
+ * category rows share one recycled list, so redrawing a report only binds the visible rows.
+ */
+public class CategoryBreakdownAdapter extends ListAdapter<CategoryBreakdownAdapter.Item, CategoryBreakdownAdapter.ViewHolder> {
+
+    static final int TYPE_TITLE = 0;
+    static final int TYPE_MESSAGE = 1;
+    static final int TYPE_CATEGORY = 2;
+
+    /**
+     * One row of the breakdown, with its text already formatted
+     */
+    public static final class Item {
+        private final int type;
+        private final int section;
+        private final String label;
+        private final String amountText;
+
+        private Item(int type, int section, String label, String amountText) {
+            this.type = type;
+            this.section = section;
+            this.label = label;
+            this.amountText = amountText;
+        }
+
+        /**
+         * @param section Index of the section the title starts; the same category may
+         *                appear once per section
+         */
+        public static Item title(int section, String text) {
+            return new Item(TYPE_TITLE, section, text, "");
+        }
+
+        public static Item message(int section, String text) {
+            return new Item(TYPE_MESSAGE, section, text, "");
+        }
+
+        public static Item category(int section, String category, String amountText) {
+            return new Item(TYPE_CATEGORY, section, category, amountText);
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Item> DIFF_CALLBACK = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.type == newItem.type && oldItem.section == newItem.section
+                    && oldItem.label.equals(newItem.label);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.amountText.equals(newItem.amountText);
+        }
+    };
+
+    private final Context context;
+
+    public CategoryBreakdownAdapter(@NonNull Context context) {
+        super(DIFF_CALLBACK);
+        this.context = context;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position).type;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        int layout;
+        switch (viewType) {
+            case TYPE_TITLE:
+                layout = R.layout.item_breakdown_title;
+                break;
+            case TYPE_MESSAGE:
+                layout = R.layout.item_breakdown_message;
+                break;
+            default:
+                layout = R.layout.item_category_breakdown;
+                break;
+        }
+        return new ViewHolder(LayoutInflater.from(context).inflate(layout, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        Item item = getItem(position);
+
+        holder.label.setText(item.label);
+        if (holder.amount != null) {
+            holder.amount.setText(item.amountText);
+        }
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView label;
+        final TextView amount;
+
+        ViewHolder(View rowView) {
+            super(rowView);
+            label = rowView.findViewById(R.id.breakdownLabel);
+            // Only category rows have an amount
+            amount = rowView.findViewById(R.id.breakdownAmount);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.financemanager.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Scroll listener that asks for the next page when the list gets close to its last row.
+ * The RecyclerView must use a {@link LinearLayoutManager}.
+ */
+public abstract class PagingScrollListener extends RecyclerView.OnScrollListener {
+
+    private static final int DEFAULT_PREFETCH_DISTANCE = 10;
+
+    private final int prefetchDistance;
+
+    public PagingScrollListener() {
+        this(DEFAULT_PREFETCH_DISTANCE);
+    }
+
+    public PagingScrollListener(int prefetchDistance) {
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int totalItemCount = layoutManager.getItemCount();
+        if (totalItemCount > 0 && layoutManager.findLastVisibleItemPosition() >= totalItemCount - 1 - prefetchDistance) {
+            onLoadMore();
+        }
+    }
+
+    /**
+     * Called when more rows should be appended to the list
+     */
+    protected abstract void onLoadMore();
+}
@@ -4,86 +4,101 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
 import com.example.financemanager.R;
 import com.example.financemanager.models.Transaction;
 
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
-import java.util.Currency;
-import java.util.List;
-import java.util.Locale;
-
 /**
- * Adapter for displaying transaction items in a ListView
+ * Adapter for displaying transaction items in a RecyclerView.
+ * Lists passed to {@link #submitList} are diffed on a background thread and only the rows
+ * that changed are rebound; rows keep their transaction id as a stable item id.
+ * Items arrive already formatted by {@link TransactionFormatter}, so binding a row only sets text.
  */
-public class TransactionAdapter extends ArrayAdapter<Transaction> {
-
-    private final Context context;
-    private final List<Transaction> transactions;
-    private final NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
+public class TransactionAdapter extends ListAdapter<TransactionListItem, TransactionAdapter.ViewHolder> {
 
-    public TransactionAdapter(Context context, List<Transaction> transactions, String currency) {
-        super(context, R.layout.item_transaction, transactions);
-        this.context = context;
-        this.transactions = transactions;
-        this.currencyFormat.setCurrency(Currency.getInstance(currency));
+    /**
+     * Receives taps on a transaction row
+     */
+    public interface OnTransactionClickListener {
+        void onTransactionClick(Transaction transaction);
     }
 
-    @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-
-        View rowView = convertView;
-        if (rowView == null) {
-            rowView = inflater.inflate(R.layout.item_transaction, parent, false);
-
-            ViewHolder viewHolder = new ViewHolder();
-            viewHolder.transactionAmount = rowView.findViewById(R.id.transactionAmount);
-            viewHolder.transactionCategory = rowView.findViewById(R.id.transactionCategory);
-            viewHolder.transactionDescription = rowView.findViewById(R.id.transactionDescription);
-            viewHolder.transactionDate = rowView.findViewById(R.id.transactionDate);
-            viewHolder.transactionAccount = rowView.findViewById(R.id.transactionAccount);
-
-            rowView.setTag(viewHolder);
+    private static final DiffUtil.ItemCallback<TransactionListItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<TransactionListItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull TransactionListItem oldItem, @NonNull TransactionListItem newItem) {
+            return oldItem.getId() == newItem.getId();
         }
 
-        ViewHolder holder = (ViewHolder) rowView.getTag();
-        Transaction transaction = transactions.get(position);
-
-        // Format amount with + or - sign
-        String formattedAmount;
-        if (transaction.isIncome()) {
-            formattedAmount = "+ " + currencyFormat.format(transaction.getAmount());
-            holder.transactionAmount.setTextColor(context.getResources().getColor(android.R.color.holo_green_dark));
-        } else {
-            formattedAmount = "- " + currencyFormat.format(transaction.getAmount());
-            holder.transactionAmount.setTextColor(context.getResources().getColor(android.R.color.holo_red_dark));
+        @Override
+        public boolean areContentsTheSame(@NonNull TransactionListItem oldItem, @NonNull TransactionListItem newItem) {
+            return oldItem.looksSameAs(newItem);
         }
+    };
 
-        holder.transactionAmount.setText(formattedAmount);
-        holder.transactionCategory.setText(transaction.getCategory());
-        holder.transactionDescription.setText(transaction.getDescription());
+    private final Context context;
+    private OnTransactionClickListener clickListener;
 
-        if (transaction.getDate() != null) {
-            holder.transactionDate.setText(dateFormat.format(transaction.getDate()));
-        } else {
-            holder.transactionDate.setText("");
-        }
+    public TransactionAdapter(Context context) {
+        super(DIFF_CALLBACK);
+        this.context = context;
+        setHasStableIds(true);
+    }
 
-        holder.transactionAccount.setText(transaction.getAccountName());
+    public void setOnTransactionClickListener(OnTransactionClickListener listener) {
+        this.clickListener = listener;
+    }
 
-        return rowView;
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
-    static class ViewHolder {
-        TextView transactionAmount;
-        TextView transactionCategory;
-        TextView transactionDescription;
-        TextView transactionDate;
-        TextView transactionAccount;
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View rowView = LayoutInflater.from(context).inflate(R.layout.item_transaction, parent, false);
+        ViewHolder holder = new ViewHolder(rowView);
+        rowView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (clickListener != null && position != RecyclerView.NO_POSITION) {
+                clickListener.onTransactionClick(getItem(position).getTransaction());
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        TransactionListItem item = getItem(position);
+
+        holder.transactionAmount.setText(item.getAmountText());
+        holder.transactionAmount.setTextColor(item.getAmountColor());
+        holder.transactionCategory.setText(item.getCategoryText());
+        holder.transactionDescription.setText(item.getDescriptionText());
+        holder.transactionDate.setText(item.getDateText());
+        holder.transactionAccount.setText(item.getAccountText());
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView transactionAmount;
+        final TextView transactionCategory;
+        final TextView transactionDescription;
+        final TextView transactionDate;
+        final TextView transactionAccount;
+
+        ViewHolder(View rowView) {
+            super(rowView);
+            transactionAmount = rowView.findViewById(R.id.transactionAmount);
+            transactionCategory = rowView.findViewById(R.id.transactionCategory);
+            transactionDescription = rowView.findViewById(R.id.transactionDescription);
+            transactionDate = rowView.findViewById(R.id.transactionDate);
+            transactionAccount = rowView.findViewById(R.id.transactionAccount);
+        }
     }
 }
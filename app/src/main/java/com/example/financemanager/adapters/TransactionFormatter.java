@@ -0,0 +1,90 @@
+package com.example.financemanager.adapters;
+
+import android.content.Context;
+
+import com.example.financemanager.models.Money;
+import com.example.financemanager.models.Transaction;
+
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Formats transactions into {@link TransactionListItem}s. Meant to run on the thread that
+ * loaded a page, so that binding rows on the main thread does no formatting at all.
+ * Formats and colors are set up once and reused; calls are serialized because the
+ * java.text formats are not thread-safe.
+ */
+public class TransactionFormatter {
+
+    private final String defaultCurrency;
+    private final int incomeColor;
+    private final int expenseColor;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
+    private final Date date = new Date();
+    // One currency format per currency code seen
+    private final Map<String, NumberFormat> currencyFormats = new HashMap<>();
+
+    /**
+     * @param context Context to resolve the amount colors with
+     * @param defaultCurrency Currency of transactions whose account currency is unknown
+     */
+    public TransactionFormatter(Context context, String defaultCurrency) {
+        this.defaultCurrency = defaultCurrency;
+        this.incomeColor = context.getResources().getColor(android.R.color.holo_green_dark);
+        this.expenseColor = context.getResources().getColor(android.R.color.holo_red_dark);
+    }
+
+    /**
+     * @param transactions Transactions of a loaded page
+     * @return One item per transaction, in the same order
+     */
+    public synchronized List<TransactionListItem> format(List<Transaction> transactions) {
+        List<TransactionListItem> items = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            items.add(format(transaction));
+        }
+        return items;
+    }
+
+    private TransactionListItem format(Transaction transaction) {
+        // Amounts are in minor units of the transaction's account currency
+        String currency = transaction.getAccountCurrency() != null ? transaction.getAccountCurrency() : defaultCurrency;
+        String amount = Money.format(currencyFormat(currency), transaction.getAmountMinor(), currency);
+
+        date.setTime(transaction.getDateMillis());
+        return new TransactionListItem(
+                transaction,
+                (transaction.isIncome() ? "+ " : "- ") + amount,
+                transaction.isIncome() ? incomeColor : expenseColor,
+                nonNull(transaction.getCategory()),
+                nonNull(transaction.getDescription()),
+                dateFormat.format(date),
+                nonNull(transaction.getAccountName()));
+    }
+
+    private NumberFormat currencyFormat(String currency) {
+        NumberFormat format = currencyFormats.get(currency);
+        if (format == null) {
+            format = NumberFormat.getCurrencyInstance();
+            try {
+                format.setCurrency(Currency.getInstance(currency));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                // If currency code is invalid, fallback to default locale currency
+                format.setCurrency(Currency.getInstance(Locale.getDefault()));
+            }
+            currencyFormats.put(currency, format);
+        }
+        return format;
+    }
+
+    private static String nonNull(String text) {
+        return text == null ? "" : text;
+    }
+}
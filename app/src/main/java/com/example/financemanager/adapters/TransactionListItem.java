@@ -0,0 +1,72 @@
+package com.example.financemanager.adapters;
+
+import com.example.financemanager.models.Transaction;
+
+/**
+ * A transaction row with its text and amount color already formatted by
+ * {@link TransactionFormatter}, so binding it to a view only sets fields
+ */
+public final class TransactionListItem {
+    private final Transaction transaction;
+    private final String amountText;
+    private final int amountColor;
+    private final String categoryText;
+    private final String descriptionText;
+    private final String dateText;
+    private final String accountText;
+
+    TransactionListItem(Transaction transaction, String amountText, int amountColor, String categoryText,
+                        String descriptionText, String dateText, String accountText) {
+        this.transaction = transaction;
+        this.amountText = amountText;
+        this.amountColor = amountColor;
+        this.categoryText = categoryText;
+        this.descriptionText = descriptionText;
+        this.dateText = dateText;
+        this.accountText = accountText;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    public int getId() {
+        return transaction.getId();
+    }
+
+    public String getAmountText() {
+        return amountText;
+    }
+
+    public int getAmountColor() {
+        return amountColor;
+    }
+
+    public String getCategoryText() {
+        return categoryText;
+    }
+
+    public String getDescriptionText() {
+        return descriptionText;
+    }
+
+    public String getDateText() {
+        return dateText;
+    }
+
+    public String getAccountText() {
+        return accountText;
+    }
+
+    /**
+     * @return True if both items display exactly the same row
+     */
+    boolean looksSameAs(TransactionListItem other) {
+        return amountColor == other.amountColor
+                && amountText.equals(other.amountText)
+                && categoryText.equals(other.categoryText)
+                && descriptionText.equals(other.descriptionText)
+                && dateText.equals(other.dateText)
+                && accountText.equals(other.accountText);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.financemanager.data;
+
+import com.example.financemanager.models.Account;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory copy of the accounts table, kept current by DatabaseHelper after each
+ * committed write. Every change publishes a new {@link AccountSnapshot} (copy on write),
+ * so readers never lock and always see a consistent set of accounts and balances.
+ * The cache starts empty and is filled by the first read.
+ *
+ * Writers refresh the rows they touched from the database rather than applying deltas,
+ * and refreshes and loads run one at a time, so the last published snapshot always
+ * reflects the latest committed state however commits and refreshes interleave.
+ */
+public class AccountCache {
+
+    /**
+     * Reads accounts from the database
+     */
+    public interface Source {
+        /**
+         * @param accountIds IDs of the accounts to read, or null for every account
+         * @return Accounts that exist, in id order
+         */
+        List<Account> read(Collection<Integer> accountIds);
+    }
+
+    private final Source source;
+    private final Object refreshLock = new Object();
+    private volatile AccountSnapshot snapshot;
+    // Bumped by invalidate, so a load or refresh that raced with it is not published
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public AccountCache(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * @return The current snapshot, loading it from the database if needed
+     */
+    public AccountSnapshot getSnapshot() {
+        AccountSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (refreshLock) {
+            current = snapshot;
+            if (current == null) {
+                int startGeneration = generation.get();
+                LinkedHashMap<Integer, Account> accountsById = new LinkedHashMap<>();
+                for (Account account : source.read(null)) {
+                    accountsById.put(account.getId(), account);
+                }
+                current = new AccountSnapshot(accountsById);
+                if (generation.get() == startGeneration) {
+                    snapshot = current;
+                }
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Re-read accounts after a committed write changed them. Accounts that no longer
+     * exist are removed. Does nothing until the cache has been loaded.
+     * @param accountIds IDs of the changed accounts
+     */
+    public void refresh(Collection<Integer> accountIds) {
+        if (accountIds.isEmpty()) {
+            return;
+        }
+        synchronized (refreshLock) {
+            AccountSnapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+            int startGeneration = generation.get();
+            LinkedHashMap<Integer, Account> accountsById = new LinkedHashMap<>(current.getAccountsById());
+            for (Integer accountId : accountIds) {
+                accountsById.remove(accountId);
+            }
+            for (Account account : source.read(accountIds)) {
+                accountsById.put(account.getId(), account);
+            }
+            if (generation.get() == startGeneration) {
+                snapshot = new AccountSnapshot(sortedById(accountsById));
+            }
+        }
+    }
+
+    /**
+     * Drop the cached accounts so the next read loads them again
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    private static LinkedHashMap<Integer, Account> sortedById(LinkedHashMap<Integer, Account> accountsById) {
+        Integer[] ids = accountsById.keySet().toArray(new Integer[0]);
+        Arrays.sort(ids);
+        LinkedHashMap<Integer, Account> sorted = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            sorted.put(id, accountsById.get(id));
+        }
+        return sorted;
+    }
+}
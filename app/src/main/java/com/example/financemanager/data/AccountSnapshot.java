@@ -0,0 +1,65 @@
+package com.example.financemanager.data;
+
+import com.example.financemanager.models.Account;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable view of every account at one point in time, in id order.
+ * The Account objects are shared by all readers of the snapshot and must not be modified;
+ * copy them first when they are edited.
+ */
+public class AccountSnapshot {
+    private final Map<Integer, Account> accountsById;
+    private final List<Account> accounts;
+    private final Map<String, Long> totalsByCurrency;
+
+    /**
+     * @param accountsById Accounts keyed by id in id order; the snapshot takes ownership of the map
+     */
+    AccountSnapshot(LinkedHashMap<Integer, Account> accountsById) {
+        this.accountsById = Collections.unmodifiableMap(accountsById);
+        this.accounts = Collections.unmodifiableList(new ArrayList<>(accountsById.values()));
+        // Minor units of different currencies differ in value and scale, so they are only summed per currency
+        Map<String, Long> totals = new TreeMap<>();
+        for (Account account : accounts) {
+            Long total = totals.get(account.getCurrency());
+            totals.put(account.getCurrency(), (total == null ? 0 : total) + account.getBalanceMinor());
+        }
+        this.totalsByCurrency = Collections.unmodifiableMap(totals);
+    }
+
+    /**
+     * @return Every account, in id order
+     */
+    public List<Account> getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * @return The account with this id, or null if there is none
+     */
+    public Account getAccount(int accountId) {
+        return accountsById.get(accountId);
+    }
+
+    /**
+     * @return Sum of the balances of each currency in its minor units, by currency code
+     */
+    public Map<String, Long> getTotalsByCurrency() {
+        return totalsByCurrency;
+    }
+
+    public boolean isEmpty() {
+        return accounts.isEmpty();
+    }
+
+    Map<Integer, Account> getAccountsById() {
+        return accountsById;
+    }
+}
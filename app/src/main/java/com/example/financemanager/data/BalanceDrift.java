@@ -0,0 +1,55 @@
+package com.example.financemanager.data;
+
+/**
+ * Result of reconciling one account: its stored balance against the balance recomputed
+ * from its opening balance and transactions
+ */
+public class BalanceDrift {
+    private final int accountId;
+    private final long storedBalance;
+    private final long computedBalance;
+    private final boolean repaired;
+
+    public BalanceDrift(int accountId, long storedBalance, long computedBalance, boolean repaired) {
+        this.accountId = accountId;
+        this.storedBalance = storedBalance;
+        this.computedBalance = computedBalance;
+        this.repaired = repaired;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return Balance in minor units found in the accounts table
+     */
+    public long getStoredBalance() {
+        return storedBalance;
+    }
+
+    /**
+     * @return Opening balance plus the signed sum of the account's transactions, in minor units
+     */
+    public long getComputedBalance() {
+        return computedBalance;
+    }
+
+    /**
+     * @return Stored minus computed balance; 0 when the account is consistent
+     */
+    public long getDrift() {
+        return storedBalance - computedBalance;
+    }
+
+    public boolean hasDrift() {
+        return storedBalance != computedBalance;
+    }
+
+    /**
+     * @return True if the stored balance was replaced by the computed one
+     */
+    public boolean isRepaired() {
+        return repaired;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.financemanager.data;
+
+import android.util.Log;
+
+import com.example.financemanager.DatabaseHelper;
+import com.example.financemanager.models.Account;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Recomputes every account balance from its opening balance and transactions and compares
+ * it with the stored balance, optionally repairing accounts that drifted.
+ * <p>
+ * The work is split into short steps so that it can share the database with the app:
+ * {@link #scan()} reads one chunk of an account's transactions and belongs on a reader
+ * thread, {@link #commit()} saves the progress or finishes the account and belongs on the
+ * writer thread. Progress is kept in the database, so a run that is stopped resumes where
+ * it was on the next run. An account written to during its scan is scanned again from the
+ * start, up to {@link #MAX_RESTARTS} times before it is left for a later run.
+ * <p>
+ * Not thread-safe; the caller runs the steps one after another.
+ */
+public class BalanceReconciler {
+
+    private static final String TAG = "BalanceReconciler";
+
+    static final int CHUNK_SIZE = 1000;
+    static final int MAX_RESTARTS = 3;
+
+    private final DatabaseHelper dbHelper;
+    private final boolean repair;
+    private final Deque<Integer> pendingAccountIds = new ArrayDeque<>();
+    private final BalanceReport report = new BalanceReport();
+
+    private boolean started;
+    private ReconcileCheckpoint current;
+    private boolean scanComplete;
+    private int restarts;
+
+    /**
+     * @param repair True to replace drifted balances with the recomputed ones, false to only report them
+     */
+    public BalanceReconciler(DatabaseHelper dbHelper, boolean repair) {
+        this.dbHelper = dbHelper;
+        this.repair = repair;
+    }
+
+    /**
+     * Read the next chunk of transactions, starting on the next account if needed
+     */
+    public void scan() {
+        if (!started) {
+            // Accounts added later are covered by the next run
+            for (Account account : dbHelper.getAccountSnapshot().getAccounts()) {
+                pendingAccountIds.add(account.getId());
+            }
+            started = true;
+        }
+        if (current == null) {
+            if (pendingAccountIds.isEmpty()) {
+                return;
+            }
+            current = resume(pendingAccountIds.peekFirst());
+            restarts = 0;
+            if (current == null) {
+                // The account was deleted
+                pendingAccountIds.removeFirst();
+                return;
+            }
+        }
+
+        ReconcileCheckpoint next = dbHelper.sumBalanceChunk(current, CHUNK_SIZE);
+        // The same checkpoint comes back once there is nothing left to read
+        scanComplete = next == current;
+        current = next;
+    }
+
+    /**
+     * Save the progress of the current account, or compare and repair its balance once all
+     * of its transactions have been read
+     * @return True when every account has been reconciled
+     */
+    public boolean commit() {
+        if (current == null) {
+            return pendingAccountIds.isEmpty();
+        }
+
+        if (!scanComplete) {
+            if (!dbHelper.saveReconcileCheckpoint(current)) {
+                restart();
+            }
+            return false;
+        }
+
+        BalanceDrift result = dbHelper.finishReconcile(current, repair);
+        if (result == null) {
+            restart();
+            return false;
+        }
+        report.addResult(result);
+        if (result.hasDrift()) {
+            Log.w(TAG, "Balance of account " + result.getAccountId() + " is off by " + result.getDrift()
+                    + (result.isRepaired() ? ", repaired" : ""));
+        }
+        nextAccount();
+        return pendingAccountIds.isEmpty();
+    }
+
+    /**
+     * @return Results of the accounts reconciled so far
+     */
+    public BalanceReport getReport() {
+        return report;
+    }
+
+    /**
+     * @return Saved progress of the account if it is still valid, a fresh start otherwise,
+     *         or null if the account does not exist
+     */
+    private ReconcileCheckpoint resume(int accountId) {
+        long revision = dbHelper.getAccountRevision(accountId);
+        if (revision < 0) {
+            return null;
+        }
+        ReconcileCheckpoint saved = dbHelper.getReconcileCheckpoint(accountId);
+        if (saved != null && saved.getRevision() == revision) {
+            return saved;
+        }
+        return ReconcileCheckpoint.start(accountId, revision);
+    }
+
+    /**
+     * Scan the current account again after it was written to
+     */
+    private void restart() {
+        int accountId = current.getAccountId();
+        long revision = dbHelper.getAccountRevision(accountId);
+        if (revision < 0 || ++restarts > MAX_RESTARTS) {
+            if (revision >= 0) {
+                report.addSkipped(accountId);
+            }
+            nextAccount();
+            return;
+        }
+        current = ReconcileCheckpoint.start(accountId, revision);
+        scanComplete = false;
+    }
+
+    private void nextAccount() {
+        pendingAccountIds.removeFirst();
+        current = null;
+        scanComplete = false;
+    }
+}
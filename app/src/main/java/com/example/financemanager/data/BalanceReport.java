@@ -0,0 +1,55 @@
+package com.example.financemanager.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a {@link BalanceReconciler} run over every account
+ */
+public class BalanceReport {
+    private final List<BalanceDrift> drifts = new ArrayList<>();
+    private final List<Integer> skippedAccountIds = new ArrayList<>();
+    private int checkedAccounts;
+
+    void addResult(BalanceDrift result) {
+        checkedAccounts++;
+        if (result.hasDrift()) {
+            drifts.add(result);
+        }
+    }
+
+    void addSkipped(int accountId) {
+        skippedAccountIds.add(accountId);
+    }
+
+    /**
+     * @return Accounts whose stored balance differed from the recomputed one
+     */
+    public List<BalanceDrift> getDrifts() {
+        return Collections.unmodifiableList(drifts);
+    }
+
+    /**
+     * @return Accounts that kept changing while being scanned and were left for a later run
+     */
+    public List<Integer> getSkippedAccountIds() {
+        return Collections.unmodifiableList(skippedAccountIds);
+    }
+
+    public int getCheckedAccounts() {
+        return checkedAccounts;
+    }
+
+    /**
+     * @return True if any stored balance was changed
+     */
+    public boolean hasRepairs() {
+        for (BalanceDrift drift : drifts) {
+            if (drift.isRepaired()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
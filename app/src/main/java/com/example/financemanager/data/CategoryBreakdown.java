@@ -0,0 +1,77 @@
+package com.example.financemanager.data;
+
+import com.example.financemanager.DatabaseHelper.CategorySummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Orders a category breakdown for display and optionally folds its smaller categories
+ * into one "Other" row
+ */
+public final class CategoryBreakdown {
+
+    public static final String OTHER_LABEL = "Other";
+
+    // Show every category instead of collapsing the tail
+    public static final int ALL_CATEGORIES = 0;
+
+    /**
+     * Order of the rows of a breakdown
+     */
+    public enum Sort {
+        AMOUNT_DESCENDING,
+        AMOUNT_ASCENDING,
+        NAME
+    }
+
+    private static final Comparator<CategorySummary> BY_AMOUNT =
+            (a, b) -> Long.compare(a.getAmountMinor(), b.getAmountMinor());
+    private static final Comparator<CategorySummary> BY_NAME =
+            (a, b) -> a.getCategory().compareToIgnoreCase(b.getCategory());
+
+    private CategoryBreakdown() {
+    }
+
+    /**
+     * @param categories Breakdown as read from the database
+     * @param sort Order of the returned rows
+     * @param topCount Number of largest categories to keep, the rest summed into an "Other" row
+     *                 placed last; {@link #ALL_CATEGORIES} keeps every category
+     * @return New list of rows to show
+     */
+    public static List<CategorySummary> arrange(List<CategorySummary> categories, Sort sort, int topCount) {
+        List<CategorySummary> rows = new ArrayList<>(categories);
+        CategorySummary other = null;
+
+        if (topCount != ALL_CATEGORIES && rows.size() > topCount + 1) {
+            // Keep the largest ones, whatever order they are shown in
+            Collections.sort(rows, Collections.reverseOrder(BY_AMOUNT));
+            long otherAmount = 0;
+            for (int i = topCount; i < rows.size(); i++) {
+                otherAmount += rows.get(i).getAmountMinor();
+            }
+            rows = new ArrayList<>(rows.subList(0, topCount));
+            other = new CategorySummary(OTHER_LABEL, otherAmount);
+        }
+
+        switch (sort) {
+            case AMOUNT_ASCENDING:
+                Collections.sort(rows, BY_AMOUNT);
+                break;
+            case NAME:
+                Collections.sort(rows, BY_NAME);
+                break;
+            default:
+                Collections.sort(rows, Collections.reverseOrder(BY_AMOUNT));
+                break;
+        }
+
+        if (other != null) {
+            rows.add(other);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.financemanager.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory copy of the categories table, mapping category names to their integer ids
+ * and back. Each name is held once, so transactions read from the database share the
+ * same String instances instead of allocating one per row.
+ *
+ * Categories are never renamed or removed, so entries never go stale. Additions publish
+ * new maps (copy on write) and lookups never lock. An id the copy does not know yet, for
+ * example one added by a migration, is found by reading the table again.
+ */
+public class CategoryDictionary {
+
+    // Category id stored in rollup rows of transactions without a category
+    public static final int NONE = 0;
+
+    /**
+     * Reads the categories table
+     */
+    public interface Source {
+        /**
+         * @return Every category name by id
+         */
+        Map<Integer, String> read();
+    }
+
+    private final Source source;
+    private volatile Entries entries = new Entries(Collections.<Integer, String>emptyMap());
+
+    public CategoryDictionary(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * @param categoryId Category id
+     * @return The shared name of the category, or null if no category has this id
+     */
+    public String nameOf(int categoryId) {
+        if (categoryId == NONE) {
+            return null;
+        }
+        String name = entries.names.get(categoryId);
+        if (name == null) {
+            name = reload().names.get(categoryId);
+        }
+        return name;
+    }
+
+    /**
+     * @param name Category name
+     * @return The id of the category, or null if it is not known
+     */
+    public Integer idOf(String name) {
+        Integer id = entries.ids.get(name);
+        if (id == null && !entries.loaded) {
+            id = reload().ids.get(name);
+        }
+        return id;
+    }
+
+    /**
+     * Record a category once it has been committed to the table
+     */
+    public synchronized void put(int categoryId, String name) {
+        if (entries.names.containsKey(categoryId)) {
+            return;
+        }
+        Map<Integer, String> names = new HashMap<>(entries.names);
+        names.put(categoryId, name);
+        entries = new Entries(names, entries.loaded);
+    }
+
+    /**
+     * @return Number of categories currently held in memory
+     */
+    public int size() {
+        return entries.names.size();
+    }
+
+    private synchronized Entries reload() {
+        Map<Integer, String> names = new HashMap<>(source.read());
+        // Keep the instances already handed out
+        for (Map.Entry<Integer, String> entry : entries.names.entrySet()) {
+            names.put(entry.getKey(), entry.getValue());
+        }
+        entries = new Entries(names, true);
+        return entries;
+    }
+
+    private static final class Entries {
+        final Map<Integer, String> names;
+        final Map<String, Integer> ids;
+        // True once the whole table has been read
+        final boolean loaded;
+
+        Entries(Map<Integer, String> names) {
+            this(names, false);
+        }
+
+        Entries(Map<Integer, String> names, boolean loaded) {
+            this.names = names;
+            this.ids = new HashMap<>(names.size() * 2);
+            for (Map.Entry<Integer, String> entry : names.entrySet()) {
+                ids.put(entry.getValue(), entry.getKey());
+            }
+            this.loaded = loaded;
+        }
+    }
+}
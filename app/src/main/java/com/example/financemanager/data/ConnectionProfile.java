@@ -0,0 +1,111 @@
+package com.example.financemanager.data;
+
+/**
+ * SQLite connection settings applied by DatabaseHelper when the database is opened.
+ * The pragmas are set on the primary connection, which runs the writes and the reads made
+ * inside transactions; pooled WAL reader connections keep SQLite's defaults.
+ * {@link #defaults()} keeps SQLite's rollback journal and built-in settings;
+ * {@link #tuned()} opts into write-ahead logging so report reads and writes no longer
+ * block each other.
+ */
+public class ConnectionProfile {
+
+    // Values of PRAGMA synchronous
+    public static final String SYNCHRONOUS_FULL = "FULL";
+    public static final String SYNCHRONOUS_NORMAL = "NORMAL";
+
+    // Values of PRAGMA temp_store
+    public static final String TEMP_STORE_DEFAULT = "DEFAULT";
+    public static final String TEMP_STORE_MEMORY = "MEMORY";
+
+    // Marks a numeric setting left at SQLite's default
+    public static final long UNSET = -1;
+
+    private static final ConnectionProfile DEFAULTS =
+            new ConnectionProfile(false, null, UNSET, UNSET, null, UNSET, UNSET);
+    private static final ConnectionProfile TUNED =
+            new ConnectionProfile(true, SYNCHRONOUS_NORMAL, 8 * 1024, 64L * 1024 * 1024, TEMP_STORE_MEMORY,
+                    4000, 2000);
+
+    private final boolean writeAheadLogging;
+    private final String synchronous;
+    private final long cacheSizeKib;
+    private final long mmapSizeBytes;
+    private final String tempStore;
+    private final long autoCheckpointPages;
+    private final long checkpointDelayMillis;
+
+    /**
+     * @param writeAheadLogging True to use WAL journaling with concurrent readers
+     * @param synchronous PRAGMA synchronous level, or null for SQLite's default
+     * @param cacheSizeKib Page cache size of the primary connection in KiB, or {@link #UNSET}
+     * @param mmapSizeBytes Memory-mapped I/O size in bytes, or {@link #UNSET}
+     * @param tempStore PRAGMA temp_store value, or null for SQLite's default
+     * @param autoCheckpointPages WAL size in pages at which a commit checkpoints inline, or {@link #UNSET}
+     * @param checkpointDelayMillis Idle time after the last write before a background checkpoint,
+     *                              or {@link #UNSET} for no background checkpoints
+     */
+    public ConnectionProfile(boolean writeAheadLogging, String synchronous, long cacheSizeKib, long mmapSizeBytes,
+                             String tempStore, long autoCheckpointPages, long checkpointDelayMillis) {
+        this.writeAheadLogging = writeAheadLogging;
+        this.synchronous = synchronous;
+        this.cacheSizeKib = cacheSizeKib;
+        this.mmapSizeBytes = mmapSizeBytes;
+        this.tempStore = tempStore;
+        this.autoCheckpointPages = autoCheckpointPages;
+        this.checkpointDelayMillis = checkpointDelayMillis;
+    }
+
+    /**
+     * @return Rollback journal with SQLite's built-in settings
+     */
+    public static ConnectionProfile defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * WAL with synchronous NORMAL, which is durable against application crashes and only
+     * risks the last commits on power loss. The primary connection, which writes, gets an
+     * 8 MiB page cache, 64 MiB of memory-mapped I/O, and temporary tables and sort spills in
+     * memory. Checkpoints run in the background once writes pause, and commits only
+     * checkpoint inline if the WAL grows past 4000 pages.
+     */
+    public static ConnectionProfile tuned() {
+        return TUNED;
+    }
+
+    public boolean isWriteAheadLogging() {
+        return writeAheadLogging;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public long getCacheSizeKib() {
+        return cacheSizeKib;
+    }
+
+    public long getMmapSizeBytes() {
+        return mmapSizeBytes;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    public long getAutoCheckpointPages() {
+        return autoCheckpointPages;
+    }
+
+    public long getCheckpointDelayMillis() {
+        return checkpointDelayMillis;
+    }
+
+    /**
+     * @return True if writes should be followed by a background checkpoint
+     */
+    public boolean hasBackgroundCheckpoints() {
+        return writeAheadLogging && checkpointDelayMillis != UNSET;
+    }
+}
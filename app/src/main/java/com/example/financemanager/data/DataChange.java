@@ -0,0 +1,83 @@
+package com.example.financemanager.data;
+
+/**
+ * One committed change to an account or a transaction, published through {@link DataChangeBus}
+ */
+public final class DataChange {
+
+    // Account of a transaction change that is not known to the writer
+    public static final int NO_ID = 0;
+
+    public enum Type {
+        ACCOUNT_ADDED,
+        ACCOUNT_UPDATED, // Name, type, currency or notes, possibly with the balance
+        ACCOUNT_BALANCE_CHANGED, // Only the balance, e.g. by transaction writes or a repair
+        ACCOUNT_DELETED,
+        TRANSACTION_ADDED,
+        TRANSACTION_UPDATED,
+        TRANSACTION_DELETED
+    }
+
+    private final Type type;
+    private final int accountId;
+    private final int transactionId;
+
+    private DataChange(Type type, int accountId, int transactionId) {
+        this.type = type;
+        this.accountId = accountId;
+        this.transactionId = transactionId;
+    }
+
+    public static DataChange account(Type type, int accountId) {
+        return new DataChange(type, accountId, NO_ID);
+    }
+
+    /**
+     * @param accountId Account the transaction belongs to, or {@link #NO_ID} if unknown
+     */
+    public static DataChange transaction(Type type, int transactionId, int accountId) {
+        return new DataChange(type, accountId, transactionId);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return ID of the changed transaction, or {@link #NO_ID} for account changes
+     */
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    public boolean isAccountChange() {
+        return type == Type.ACCOUNT_ADDED || type == Type.ACCOUNT_UPDATED || type == Type.ACCOUNT_DELETED
+                || type == Type.ACCOUNT_BALANCE_CHANGED;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DataChange)) {
+            return false;
+        }
+        DataChange other = (DataChange) o;
+        return type == other.type && accountId == other.accountId && transactionId == other.transactionId;
+    }
+
+    @Override
+    public int hashCode() {
+        return (type.hashCode() * 31 + accountId) * 31 + transactionId;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(account " + accountId + ", transaction " + transactionId + ")";
+    }
+}
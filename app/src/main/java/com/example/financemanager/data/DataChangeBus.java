@@ -0,0 +1,85 @@
+package com.example.financemanager.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers committed data changes to the screens showing the data.
+ * Writers publish from any thread once their changes are committed. Changes published
+ * within {@link #COALESCE_MILLIS} of the first one are merged into one {@link DataChangeSet}
+ * and delivered on the main thread, so a burst of writes costs each listener one refresh.
+ */
+public class DataChangeBus {
+
+    /**
+     * Receives coalesced changes on the main thread
+     */
+    public interface Listener {
+        void onDataChanged(DataChangeSet changes);
+    }
+
+    static final long COALESCE_MILLIS = 100;
+
+    // Changes kept per window; bulk writes beyond this are delivered as an overflowed set
+    static final int MAX_TRACKED_CHANGES = 1000;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Runnable flush = this::flush;
+
+    // Guarded by this
+    private Set<DataChange> pending = new LinkedHashSet<>();
+    private boolean overflowed;
+    private boolean flushScheduled;
+
+    /**
+     * Start delivering changes to a listener; call {@link #unsubscribe} when its screen is destroyed
+     */
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queue committed changes for delivery
+     * @param changes Changes made by one write
+     */
+    public synchronized void publish(Collection<DataChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (!overflowed) {
+            pending.addAll(changes);
+            if (pending.size() > MAX_TRACKED_CHANGES) {
+                pending.clear();
+                overflowed = true;
+            }
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            mainHandler.postDelayed(flush, COALESCE_MILLIS);
+        }
+    }
+
+    private void flush() {
+        DataChangeSet changes;
+        synchronized (this) {
+            changes = new DataChangeSet(pending, overflowed);
+            pending = new LinkedHashSet<>();
+            overflowed = false;
+            flushScheduled = false;
+        }
+        for (Listener listener : listeners) {
+            listener.onDataChanged(changes);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.financemanager.data;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The changes committed during one coalescing window of {@link DataChangeBus}, without duplicates.
+ * A window with more changes than the bus tracks is delivered as an overflowed set, which
+ * reports every account as affected so that listeners fall back to a full refresh.
+ */
+public final class DataChangeSet {
+    private final Set<DataChange> changes;
+    private final boolean overflowed;
+
+    DataChangeSet(Set<DataChange> changes, boolean overflowed) {
+        this.changes = Collections.unmodifiableSet(changes);
+        this.overflowed = overflowed;
+    }
+
+    /**
+     * @return The tracked changes, in the order they were first published
+     */
+    public Set<DataChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return True if changes were dropped and anything may have changed
+     */
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * @return True if the account or any of its transactions changed
+     */
+    public boolean affectsAccount(int accountId) {
+        if (overflowed) {
+            return true;
+        }
+        for (DataChange change : changes) {
+            if (change.getAccountId() == accountId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if a change of this type was made to the account or one of its transactions
+     */
+    public boolean contains(DataChange.Type type, int accountId) {
+        for (DataChange change : changes) {
+            if (change.getType() == type && change.getAccountId() == accountId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if any account was added, updated or deleted, balances included
+     */
+    public boolean hasAccountChanges() {
+        if (overflowed) {
+            return true;
+        }
+        for (DataChange change : changes) {
+            if (change.isAccountChange()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if accounts were added, deleted or changed in more than their balance
+     */
+    public boolean hasAccountDetailChanges() {
+        if (overflowed) {
+            return true;
+        }
+        for (DataChange change : changes) {
+            if (change.isAccountChange() && change.getType() != DataChange.Type.ACCOUNT_BALANCE_CHANGED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if accounts were added or deleted
+     */
+    public boolean hasAccountListChanges() {
+        if (overflowed) {
+            return true;
+        }
+        for (DataChange change : changes) {
+            if (change.getType() == DataChange.Type.ACCOUNT_ADDED || change.getType() == DataChange.Type.ACCOUNT_DELETED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if any transaction was added, updated or deleted
+     */
+    public boolean hasTransactionChanges() {
+        if (overflowed) {
+            return true;
+        }
+        for (DataChange change : changes) {
+            if (!change.isAccountChange()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.financemanager.data;
+
+/**
+ * Immutable half-open range of dates in epoch milliseconds, fromMillis inclusive and
+ * toMillis exclusive. Long.MIN_VALUE and Long.MAX_VALUE leave a side unbounded.
+ */
+public class DateRange {
+    private static final DateRange ALL = new DateRange(Long.MIN_VALUE, Long.MAX_VALUE);
+
+    private final long fromMillis;
+    private final long toMillis;
+
+    /**
+     * @param fromMillis Earliest date in epoch milliseconds, inclusive
+     * @param toMillis Latest date in epoch milliseconds, exclusive
+     */
+    public DateRange(long fromMillis, long toMillis) {
+        if (fromMillis > toMillis) {
+            throw new IllegalArgumentException("Range starts after it ends: " + fromMillis + " > " + toMillis);
+        }
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+    }
+
+    /**
+     * @return Range covering every date
+     */
+    public static DateRange all() {
+        return ALL;
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+        return toMillis;
+    }
+
+    public boolean hasStart() {
+        return fromMillis != Long.MIN_VALUE;
+    }
+
+    public boolean hasEnd() {
+        return toMillis != Long.MAX_VALUE;
+    }
+
+    public boolean isAll() {
+        return !hasStart() && !hasEnd();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.financemanager.data;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Query timings and transaction cache counters at one point in time, as text for the
+ * diagnostics screen or as JSON to attach to a bug report
+ */
+public final class DiagnosticsReport {
+    private final long timeMillis;
+    private final QueryStatsSnapshot queryStats;
+    private final int cacheSize;
+    private final int cacheMaxSize;
+    private final int cacheHits;
+    private final int cacheMisses;
+    private final int cacheEvictions;
+
+    /**
+     * @param queryStats Snapshot of the query timings
+     * @param transactionCache Cache whose counters are copied
+     */
+    public DiagnosticsReport(QueryStatsSnapshot queryStats, TransactionCache transactionCache) {
+        this.timeMillis = System.currentTimeMillis();
+        this.queryStats = queryStats;
+        this.cacheSize = transactionCache.size();
+        this.cacheMaxSize = transactionCache.maxSize();
+        this.cacheHits = transactionCache.hitCount();
+        this.cacheMisses = transactionCache.missCount();
+        this.cacheEvictions = transactionCache.evictionCount();
+    }
+
+    public QueryStatsSnapshot getQueryStats() {
+        return queryStats;
+    }
+
+    /**
+     * @return Readable summary: one line per method, then the slow query log
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append("Query timing: ").append(queryStats.isEnabled() ? "on" : "off").append('\n');
+        text.append(String.format(Locale.ROOT, "Transaction cache: %d/%d rows, %d hits, %d misses, %d evictions%n",
+                cacheSize, cacheMaxSize, cacheHits, cacheMisses, cacheEvictions));
+
+        text.append("\nMethods (calls, rows, mean/p50/p90/p99/max in us)\n");
+        if (queryStats.getMethods().isEmpty()) {
+            text.append("Nothing recorded\n");
+        }
+        for (QueryStats.MethodSummary method : queryStats.getMethods()) {
+            text.append(String.format(Locale.ROOT, "%s%n  %d calls, %d rows, %d / %d / %d / %d / %d%n",
+                    method.getMethod(), method.getCalls(), method.getRows(), method.getMeanMicros(),
+                    method.getPercentileMicros(0.5), method.getPercentileMicros(0.9),
+                    method.getPercentileMicros(0.99), method.getMaxNanos() / 1000));
+        }
+
+        text.append(String.format(Locale.ROOT, "%nSlow queries (>= %d ms): %d%n",
+                queryStats.getSlowQueryMillis(), queryStats.getSlowQueryCount()));
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS", Locale.ROOT);
+        for (QueryStats.SlowQuery slowQuery : queryStats.getSlowQueries()) {
+            text.append(String.format(Locale.ROOT, "%s %s %d us, %d rows, %d binds%n  %s%n",
+                    timeFormat.format(new Date(slowQuery.getTimeMillis())), slowQuery.getMethod(),
+                    slowQuery.getMicros(), slowQuery.getRows(), slowQuery.getBindCount(),
+                    slowQuery.getSql() == null ? "-" : slowQuery.getSql()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return Every counter, histogram and slow query as a JSON document
+     */
+    public String toJson() {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("timestampMillis", timeMillis);
+            json.put("queryTimingEnabled", queryStats.isEnabled());
+
+            JSONObject cache = new JSONObject();
+            cache.put("size", cacheSize);
+            cache.put("maxSize", cacheMaxSize);
+            cache.put("hits", cacheHits);
+            cache.put("misses", cacheMisses);
+            cache.put("evictions", cacheEvictions);
+            json.put("transactionCache", cache);
+
+            JSONArray bounds = new JSONArray();
+            for (long bound : queryStats.getBucketBoundsMicros()) {
+                bounds.put(bound);
+            }
+            json.put("bucketBoundsMicros", bounds);
+
+            JSONArray methods = new JSONArray();
+            for (QueryStats.MethodSummary method : queryStats.getMethods()) {
+                JSONObject entry = new JSONObject();
+                entry.put("method", method.getMethod());
+                entry.put("calls", method.getCalls());
+                entry.put("rows", method.getRows());
+                entry.put("totalMicros", method.getTotalNanos() / 1000);
+                entry.put("meanMicros", method.getMeanMicros());
+                entry.put("p50Micros", method.getPercentileMicros(0.5));
+                entry.put("p90Micros", method.getPercentileMicros(0.9));
+                entry.put("p99Micros", method.getPercentileMicros(0.99));
+                entry.put("maxMicros", method.getMaxNanos() / 1000);
+                JSONArray buckets = new JSONArray();
+                for (long count : method.getBuckets()) {
+                    buckets.put(count);
+                }
+                entry.put("buckets", buckets);
+                methods.put(entry);
+            }
+            json.put("methods", methods);
+
+            json.put("slowQueryMillis", queryStats.getSlowQueryMillis());
+            json.put("slowQueryCount", queryStats.getSlowQueryCount());
+            JSONArray slowQueries = new JSONArray();
+            for (QueryStats.SlowQuery slowQuery : queryStats.getSlowQueries()) {
+                JSONObject entry = new JSONObject();
+                entry.put("timeMillis", slowQuery.getTimeMillis());
+                entry.put("method", slowQuery.getMethod());
+                entry.put("micros", slowQuery.getMicros());
+                entry.put("rows", slowQuery.getRows());
+                entry.put("bindCount", slowQuery.getBindCount());
+                entry.put("sql", slowQuery.getSql() == null ? JSONObject.NULL : slowQuery.getSql());
+                slowQueries.put(entry);
+            }
+            json.put("slowQueries", slowQueries);
+            return json.toString(2);
+        } catch (JSONException e) {
+            // Only thrown for non-finite numbers, which the report does not contain
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.example.financemanager.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.financemanager.DatabaseHelper;
+import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Transaction;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs DatabaseHelper calls off the main thread and delivers their results on it.
+ * Writes go through a single thread, matching SQLite's single writer, and reads share a
+ * small fixed pool, so the number of database threads stays bounded however many screens
+ * request data. Every call returns a {@link Task} that can be cancelled once its result
+ * is no longer needed.
+ * The database uses the {@link ConnectionProfile#tuned()} profile: WAL lets the reader
+ * threads run while a write is in progress, and the writer thread checkpoints the log
+ * once writes pause instead of inside a user's commit.
+ */
+public class FinanceRepository {
+
+    private static final String TAG = "FinanceRepository";
+    private static final int READER_THREADS = 2;
+    private static final String PREFS_DIAGNOSTICS = "diagnostics";
+    private static final String PREF_QUERY_TIMING = "query_timing";
+
+    private static FinanceRepository instance;
+
+    private final DatabaseHelper dbHelper;
+    private final ScheduledExecutorService writeExecutor;
+    private final ExecutorService readExecutor;
+    private final ExecutorService fileExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final SharedPreferences diagnosticsPrefs;
+    private ScheduledFuture<?> pendingCheckpoint;
+
+    /**
+     * Receives the result of a task on the main thread
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+
+        /**
+         * Called on the main thread instead of onResult when the task throws
+         */
+        default void onError(Exception e) {
+            Log.e(TAG, "Database task failed", e);
+        }
+    }
+
+    private FinanceRepository(Context context) {
+        dbHelper = new DatabaseHelper(context.getApplicationContext(), DatabaseHelper.DATABASE_NAME,
+                ConnectionProfile.tuned());
+        writeExecutor = Executors.newSingleThreadScheduledExecutor(new DatabaseThreadFactory("db-write"));
+        readExecutor = Executors.newFixedThreadPool(READER_THREADS, new DatabaseThreadFactory("db-read"));
+        fileExecutor = Executors.newSingleThreadExecutor(new DatabaseThreadFactory("file-io"));
+        diagnosticsPrefs = context.getApplicationContext().getSharedPreferences(PREFS_DIAGNOSTICS, Context.MODE_PRIVATE);
+        dbHelper.getQueryStats().setEnabled(diagnosticsPrefs.getBoolean(PREF_QUERY_TIMING, false));
+    }
+
+    /**
+     * @return The repository shared by the whole application
+     */
+    public static synchronized FinanceRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new FinanceRepository(context);
+        }
+        return instance;
+    }
+
+    /**
+     * @return Bus delivering committed changes on the main thread, for screens to refresh what they show
+     */
+    public DataChangeBus getChangeBus() {
+        return dbHelper.getChangeBus();
+    }
+
+    /**
+     * @return The database behind this repository, for callers that already run in the background
+     */
+    public DatabaseHelper getDatabaseHelper() {
+        return dbHelper;
+    }
+
+    // Accounts
+
+    public Task loadAccounts(Callback<List<Account>> callback) {
+        return read(() -> dbHelper.getAllAccounts(), callback);
+    }
+
+    /**
+     * Load every account with its total balance; served from the account cache once it is warm
+     */
+    public Task loadAccountSnapshot(Callback<AccountSnapshot> callback) {
+        return read(() -> dbHelper.getAccountSnapshot(), callback);
+    }
+
+    public Task loadAccount(int accountId, Callback<Account> callback) {
+        return read(() -> dbHelper.getAccount(accountId), callback);
+    }
+
+    public Task addAccount(Account account, Callback<Long> callback) {
+        return write(() -> dbHelper.addAccount(account), callback);
+    }
+
+    public Task updateAccount(Account account, Callback<Integer> callback) {
+        return write(() -> dbHelper.updateAccount(account), callback);
+    }
+
+    public Task deleteAccount(int accountId, Callback<Integer> callback) {
+        return write(() -> dbHelper.deleteAccount(accountId), callback);
+    }
+
+    // Transactions
+
+    public Task addTransaction(Transaction transaction, Callback<Long> callback) {
+        return write(() -> dbHelper.addTransaction(transaction), callback);
+    }
+
+    public Task updateTransaction(Transaction transaction, Callback<Integer> callback) {
+        return write(() -> dbHelper.updateTransaction(transaction), callback);
+    }
+
+    public Task deleteTransaction(int transactionId, Callback<Integer> callback) {
+        return write(() -> dbHelper.deleteTransaction(transactionId), callback);
+    }
+
+    /**
+     * Load the next page of a page source and map its rows on the same reader thread, so
+     * that display formatting stays off the main thread. The source must not be used by
+     * another task until the callback has run.
+     */
+    public <T> Task loadNextPage(TransactionPageSource pageSource, Function<List<Transaction>, T> mapper,
+                                 Callback<T> callback) {
+        return read(() -> mapper.apply(pageSource.loadNextPage()), callback);
+    }
+
+    /**
+     * Load pages of a page source until at least minRows rows have been read, for refreshing
+     * a list without shortening it. The same rules as {@link #loadNextPage} apply.
+     */
+    public <T> Task loadNextPages(TransactionPageSource pageSource, int minRows, Function<List<Transaction>, T> mapper,
+                                  Callback<T> callback) {
+        return read(() -> mapper.apply(pageSource.loadNextPages(minRows)), callback);
+    }
+
+    // Reports
+
+    public Task loadReportSnapshot(int accountId, DateRange range, Callback<ReportSnapshot> callback) {
+        return read(() -> dbHelper.getReportSnapshot(accountId, range), callback);
+    }
+
+    // Maintenance
+
+    /**
+     * Reconcile every account balance with its transactions, see {@link BalanceReconciler}.
+     * Chunks are read on the reader pool and progress is saved on the writer thread in
+     * between other writes, so the app keeps working during a long run. Cancelling the task
+     * stops the run after its current step; the next run resumes from the saved progress.
+     * @param repair True to replace drifted balances, false to only report them
+     */
+    public Task reconcileBalances(boolean repair, Callback<BalanceReport> callback) {
+        Task task = new Task(true);
+        scanBalances(new BalanceReconciler(dbHelper, repair), task, callback);
+        return task;
+    }
+
+    private void scanBalances(BalanceReconciler reconciler, Task task, Callback<BalanceReport> callback) {
+        task.future = readExecutor.submit(() -> {
+            if (task.isCancelled()) {
+                task.finished = true;
+                return;
+            }
+            try {
+                reconciler.scan();
+            } catch (Exception e) {
+                deliverError(task, callback, e);
+                return;
+            }
+            commitBalances(reconciler, task, callback);
+        });
+    }
+
+    private void commitBalances(BalanceReconciler reconciler, Task task, Callback<BalanceReport> callback) {
+        task.future = writeExecutor.submit(() -> {
+            boolean done;
+            try {
+                done = reconciler.commit();
+            } catch (Exception e) {
+                deliverError(task, callback, e);
+                return;
+            }
+            if (done) {
+                deliver(task, callback, reconciler.getReport());
+            } else {
+                scanBalances(reconciler, task, callback);
+            }
+        });
+        scheduleCheckpoint();
+    }
+
+    /**
+     * Write a synthetic ledger for load testing, see {@link LedgerGenerator}. The accounts are
+     * created first, then the transactions are generated on the file thread and each batch of
+     * {@link LedgerGenerator#BATCH_SIZE} is written as a write of its own, so other writes run
+     * between batches. At most one batch waits for the writer at a time.
+     * @param transactionCount Number of transactions to generate
+     */
+    public Task generateLedger(LedgerGenerator generator, int transactionCount, Callback<int[]> callback) {
+        Task task = new Task(false);
+        task.future = writeExecutor.submit(() -> {
+            int[] accountIds;
+            try {
+                accountIds = generator.createAccounts(dbHelper);
+            } catch (Exception e) {
+                deliverError(task, callback, e);
+                return;
+            }
+            task.future = fileExecutor.submit(() -> {
+                try {
+                    writeLedgerBatches(generator, accountIds, transactionCount);
+                } catch (Exception e) {
+                    deliverError(task, callback, e);
+                    return;
+                }
+                deliver(task, callback, accountIds);
+            });
+        });
+        scheduleCheckpoint();
+        return task;
+    }
+
+    private void writeLedgerBatches(LedgerGenerator generator, int[] accountIds, int transactionCount) {
+        List<Future<long[]>> pending = new ArrayList<>(1);
+        generator.generateTransactions(accountIds, transactionCount, batch -> {
+            if (!pending.isEmpty()) {
+                awaitWrite(pending.remove(0));
+            }
+            pending.add(writeExecutor.submit(() -> dbHelper.addTransactions(batch)));
+            scheduleCheckpoint();
+        });
+        if (!pending.isEmpty()) {
+            awaitWrite(pending.remove(0));
+        }
+    }
+
+    /**
+     * Wait for a submitted write, rethrowing its failure
+     */
+    private static void awaitWrite(Future<?> write) {
+        try {
+            write.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing the ledger", e);
+        }
+    }
+
+    // Diagnostics
+
+    /**
+     * Collect the query timings and cache counters
+     */
+    public Task loadDiagnostics(Callback<DiagnosticsReport> callback) {
+        return read(() -> new DiagnosticsReport(dbHelper.getQueryStats().snapshot(), dbHelper.getTransactionCache()),
+                callback);
+    }
+
+    public boolean isQueryTimingEnabled() {
+        return dbHelper.getQueryStats().isEnabled();
+    }
+
+    /**
+     * Turn query timing on or off, for now and for later launches
+     */
+    public void setQueryTimingEnabled(boolean enabled) {
+        dbHelper.getQueryStats().setEnabled(enabled);
+        diagnosticsPrefs.edit().putBoolean(PREF_QUERY_TIMING, enabled).apply();
+    }
+
+    public void resetQueryStats() {
+        dbHelper.getQueryStats().reset();
+    }
+
+    // Execution
+
+    /**
+     * Run a query on the reader pool. Cancelling the task drops it if it has not started
+     * and always suppresses the callback.
+     */
+    public <T> Task read(Callable<T> query, Callback<T> callback) {
+        return submit(readExecutor, query, callback, true);
+    }
+
+    /**
+     * Run work that does not touch the database, such as writing files, on a thread of its
+     * own so that it never holds up a query. Cancelling behaves as for {@link #read}.
+     */
+    public <T> Task runInBackground(Callable<T> work, Callback<T> callback) {
+        return submit(fileExecutor, work, callback, true);
+    }
+
+    /**
+     * Run a write on the writer thread. Writes always run to completion once submitted;
+     * cancelling the task only suppresses the callback.
+     */
+    public <T> Task write(Callable<T> update, Callback<T> callback) {
+        Task task = submit(writeExecutor, update, callback, false);
+        scheduleCheckpoint();
+        return task;
+    }
+
+    /**
+     * Push back the background checkpoint until writes have paused for the profile's delay.
+     * It runs on the writer thread, so it never competes with a write for the database.
+     */
+    private synchronized void scheduleCheckpoint() {
+        ConnectionProfile profile = dbHelper.getConnectionProfile();
+        if (!profile.hasBackgroundCheckpoints()) {
+            return;
+        }
+        if (pendingCheckpoint != null) {
+            pendingCheckpoint.cancel(false);
+        }
+        pendingCheckpoint = writeExecutor.schedule(() -> {
+            try {
+                dbHelper.checkpoint();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Background checkpoint failed", e);
+            }
+        }, profile.getCheckpointDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private <T> Task submit(ExecutorService executor, Callable<T> work, Callback<T> callback,
+                            boolean skipWhenCancelled) {
+        Task task = new Task(skipWhenCancelled);
+        task.future = executor.submit(() -> {
+            if (skipWhenCancelled && task.isCancelled()) {
+                task.finished = true;
+                return;
+            }
+            try {
+                deliver(task, callback, work.call());
+            } catch (Exception e) {
+                deliverError(task, callback, e);
+            }
+        });
+        return task;
+    }
+
+    private <T> void deliver(Task task, Callback<T> callback, T result) {
+        mainHandler.post(() -> {
+            if (!task.isCancelled()) {
+                callback.onResult(result);
+            }
+            task.finished = true;
+        });
+    }
+
+    private void deliverError(Task task, Callback<?> callback, Exception e) {
+        mainHandler.post(() -> {
+            if (!task.isCancelled()) {
+                callback.onError(e);
+            }
+            task.finished = true;
+        });
+    }
+
+    /**
+     * Handle on a submitted database call
+     */
+    public static final class Task {
+        private final boolean droppable;
+        private volatile boolean cancelled;
+        private volatile boolean finished;
+        private volatile Future<?> future;
+
+        Task(boolean droppable) {
+            this.droppable = droppable;
+        }
+
+        /**
+         * Stop the result from being delivered, and drop the work if it is a read that has not started
+         */
+        public void cancel() {
+            cancelled = true;
+            Future<?> submitted = future;
+            if (droppable && submitted != null) {
+                submitted.cancel(false);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * @return True once the callback has run or been skipped
+         */
+        public boolean isDone() {
+            Future<?> submitted = future;
+            return finished || (submitted != null && submitted.isCancelled());
+        }
+    }
+
+    /**
+     * Tasks owned by one screen, cancelled together when it is destroyed
+     */
+    public static final class TaskGroup {
+        private final List<Task> tasks = new ArrayList<>();
+
+        /**
+         * @return The task, for chaining
+         */
+        public Task add(Task task) {
+            // Forget tasks that have already finished
+            Iterator<Task> iterator = tasks.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isDone()) {
+                    iterator.remove();
+                }
+            }
+            tasks.add(task);
+            return task;
+        }
+
+        public void cancelAll() {
+            for (Task task : tasks) {
+                task.cancel();
+            }
+            tasks.clear();
+        }
+    }
+
+    private static final class DatabaseThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DatabaseThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.financemanager.data;
+
+import com.example.financemanager.DatabaseHelper;
+import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Transaction;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+
+/**
+ * Creates realistic synthetic ledgers for load and scale testing: a set of accounts and any
+ * number of transactions spread over a range of months, with a monthly salary, rent and
+ * subscriptions on top of day-to-day spending drawn from a fixed category mix.
+ * <p>
+ * The output only depends on the seed, the end date and the order of calls, so the same
+ * generator settings always produce the same ledger. Transactions are written in batches
+ * through {@link DatabaseHelper#addTransactions}, the bulk insert path.
+ * <p>
+ * Not thread-safe; writing runs on the caller's thread, which for the app is the writer thread.
+ */
+public class LedgerGenerator {
+
+    public static final int BATCH_SIZE = 10_000;
+
+    private static final String INCOME = "INCOME";
+    private static final String EXPENSE = "EXPENSE";
+    private static final String CURRENCY = "USD";
+    private static final String[] ACCOUNT_TYPES = { "Checking", "Savings", "Cash", "Credit Card" };
+
+    /**
+     * A category of day-to-day spending
+     */
+    private static final class Category {
+        final String name;
+        final int weight;
+        // Typical amount in minor units; amounts are spread around it
+        final long typicalAmount;
+        final String[] descriptions;
+
+        Category(String name, int weight, long typicalAmount, String... descriptions) {
+            this.name = name;
+            this.weight = weight;
+            this.typicalAmount = typicalAmount;
+            this.descriptions = descriptions;
+        }
+    }
+
+    private static final Category[] SPENDING = {
+            new Category("Food", 35, 1_500, "Groceries", "Lunch", "Coffee", "Dinner out", "Bakery"),
+            new Category("Transport", 20, 1_200, "Fuel", "Train ticket", "Taxi", "Parking"),
+            new Category("Shopping", 15, 4_000, "Clothes", "Electronics", "Household", "Books"),
+            new Category("Utilities", 10, 6_000, "Electricity", "Water", "Internet", "Phone"),
+            new Category("Entertainment", 10, 2_500, "Cinema", "Concert", "Games", "Sports"),
+            new Category("Health", 5, 3_500, "Pharmacy", "Doctor", "Gym"),
+            new Category("Other", 5, 2_000, "Gift", "Donation", "Fees")
+    };
+    private static final int SPENDING_WEIGHT_TOTAL;
+
+    static {
+        int total = 0;
+        for (Category category : SPENDING) {
+            total += category.weight;
+        }
+        SPENDING_WEIGHT_TOTAL = total;
+    }
+
+    // Occasional income besides the salary, one in this many random transactions
+    private static final int EXTRA_INCOME_ODDS = 20;
+
+    private final Random random;
+    private final int accountCount;
+    private final int months;
+    private final long endMillis;
+
+    /**
+     * @param seed Seed of every random choice
+     * @param accountCount Number of accounts to create
+     * @param months Number of months the transactions are spread over, ending with the month of endMillis
+     * @param endMillis Latest date a transaction may have; pass a fixed date for reproducible ledgers
+     */
+    public LedgerGenerator(long seed, int accountCount, int months, long endMillis) {
+        if (accountCount < 1 || months < 1) {
+            throw new IllegalArgumentException("A ledger needs at least one account and one month");
+        }
+        this.random = new Random(seed);
+        this.accountCount = accountCount;
+        this.months = months;
+        this.endMillis = endMillis;
+    }
+
+    /**
+     * Create the accounts and then transactionCount transactions spread over them
+     * @return IDs of the created accounts
+     */
+    public int[] generate(DatabaseHelper dbHelper, int transactionCount) {
+        int[] accountIds = createAccounts(dbHelper);
+        addTransactions(dbHelper, accountIds, transactionCount);
+        return accountIds;
+    }
+
+    /**
+     * @return IDs of the created accounts; the first one receives the salary and pays the rent
+     */
+    public int[] createAccounts(DatabaseHelper dbHelper) {
+        int[] accountIds = new int[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            String type = ACCOUNT_TYPES[i % ACCOUNT_TYPES.length];
+            long openingBalance = 100_000 + random.nextInt(1_000_000);
+            accountIds[i] = (int) dbHelper.addAccount(
+                    new Account("Generated " + type + " " + (i + 1), openingBalance, type, CURRENCY, "Synthetic data"));
+        }
+        return accountIds;
+    }
+
+    /**
+     * Add transactions to existing accounts in batches of {@link #BATCH_SIZE}
+     * @param accountIds Accounts to spread the transactions over; the first one gets the recurring ones
+     * @param count Number of transactions to add
+     */
+    public void addTransactions(DatabaseHelper dbHelper, int[] accountIds, int count) {
+        generateTransactions(accountIds, count, dbHelper::addTransactions);
+    }
+
+    /**
+     * Generate transactions without writing them, for callers that write or measure the batches themselves
+     * @param accountIds Accounts to spread the transactions over; the first one gets the recurring ones
+     * @param count Number of transactions to generate
+     * @param batchConsumer Receives the transactions in batches of at most {@link #BATCH_SIZE}, oldest month first
+     */
+    public void generateTransactions(int[] accountIds, int count, Consumer<List<Transaction>> batchConsumer) {
+        Calendar month = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        month.setTimeInMillis(endMillis);
+        month.set(Calendar.DAY_OF_MONTH, 1);
+        month.set(Calendar.HOUR_OF_DAY, 0);
+        month.set(Calendar.MINUTE, 0);
+        month.set(Calendar.SECOND, 0);
+        month.set(Calendar.MILLISECOND, 0);
+        month.add(Calendar.MONTH, 1 - months);
+
+        List<Transaction> batch = new ArrayList<>(Math.min(count, BATCH_SIZE));
+        int generated = 0;
+        for (int m = 0; m < months; m++) {
+            long monthStart = month.getTimeInMillis();
+            month.add(Calendar.MONTH, 1);
+            // The current month ends at endMillis
+            long monthEnd = Math.min(month.getTimeInMillis(), endMillis + 1);
+
+            // Spread the count evenly, the remainder going to the latest months
+            int monthCount = (int) ((long) count * (m + 1) / months) - generated;
+            List<Transaction> monthTransactions = generateMonth(accountIds, monthCount, monthStart, monthEnd);
+            generated += monthCount;
+
+            for (Transaction transaction : monthTransactions) {
+                batch.add(transaction);
+                if (batch.size() == BATCH_SIZE) {
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            batchConsumer.accept(batch);
+        }
+    }
+
+    private List<Transaction> generateMonth(int[] accountIds, int count, long monthStart, long monthEnd) {
+        List<Transaction> transactions = new ArrayList<>(count);
+        long dayMillis = 24L * 60 * 60 * 1000;
+
+        // Recurring transactions come first so that small ledgers still have them
+        addRecurring(transactions, count, INCOME, 350_000, "Salary", "Monthly salary", accountIds[0],
+                monthStart + 9 * 60 * 60 * 1000, monthEnd);
+        addRecurring(transactions, count, EXPENSE, 120_000, "Rent", "Monthly rent", accountIds[0],
+                monthStart + 2 * dayMillis + 10 * 60 * 60 * 1000, monthEnd);
+        addRecurring(transactions, count, EXPENSE, 1_299, "Entertainment", "Streaming subscription",
+                accountIds[accountIds.length - 1], monthStart + 14 * dayMillis + 6 * 60 * 60 * 1000, monthEnd);
+
+        while (transactions.size() < count) {
+            int accountId = accountIds[random.nextInt(accountIds.length)];
+            long date = randomDate(monthStart, monthEnd);
+            if (random.nextInt(EXTRA_INCOME_ODDS) == 0) {
+                transactions.add(new Transaction(spread(10_000), INCOME, "Other Income",
+                        random.nextBoolean() ? "Refund" : "Side job", date, accountId, null));
+            } else {
+                Category category = pickCategory();
+                transactions.add(new Transaction(spread(category.typicalAmount), EXPENSE, category.name,
+                        category.descriptions[random.nextInt(category.descriptions.length)], date, accountId, null));
+            }
+        }
+        return transactions;
+    }
+
+    private void addRecurring(List<Transaction> transactions, int count, String type, long amount, String category,
+                              String description, int accountId, long date, long monthEnd) {
+        // Skipped if the month is too short on rows or has not reached the date yet
+        if (transactions.size() < count && date < monthEnd) {
+            transactions.add(new Transaction(amount, type, category, description, date, accountId, null));
+        }
+    }
+
+    /**
+     * @return Time in the range, during the day more often than at night
+     */
+    private long randomDate(long start, long end) {
+        long dayMillis = 24L * 60 * 60 * 1000;
+        long day = start + (long) (random.nextDouble() * (end - start)) / dayMillis * dayMillis;
+        long hourMillis = 60L * 60 * 1000;
+        long hour = 8 + Math.min(15, Math.abs((long) (random.nextGaussian() * 5)));
+        long date = day + hour * hourMillis + random.nextInt(60 * 60 * 1000);
+        return Math.min(date, end - 1);
+    }
+
+    /**
+     * @return Positive amount around the typical one, mostly smaller with the occasional large one
+     */
+    private long spread(long typicalAmount) {
+        double factor = Math.exp(random.nextGaussian() * 0.6);
+        return Math.max(1, Math.round(typicalAmount * factor));
+    }
+
+    private Category pickCategory() {
+        int pick = random.nextInt(SPENDING_WEIGHT_TOTAL);
+        for (Category category : SPENDING) {
+            pick -= category.weight;
+            if (pick < 0) {
+                return category;
+            }
+        }
+        return SPENDING[SPENDING.length - 1];
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.financemanager.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * One step of a database schema upgrade, moving the schema from startVersion to endVersion
+ * while keeping existing data. Steps are chained by DatabaseHelper.onUpgrade and run inside
+ * the upgrade transaction, so a failing step leaves the database untouched.
+ */
+public abstract class Migration {
+    private final int startVersion;
+    private final int endVersion;
+
+    protected Migration(int startVersion, int endVersion) {
+        this.startVersion = startVersion;
+        this.endVersion = endVersion;
+    }
+
+    public int getStartVersion() {
+        return startVersion;
+    }
+
+    public int getEndVersion() {
+        return endVersion;
+    }
+
+    /**
+     * Apply this step to the database
+     * @param db Database being upgraded
+     */
+    public abstract void migrate(SQLiteDatabase db);
+}
@@ -0,0 +1,33 @@
+package com.example.financemanager.data;
+
+import com.example.financemanager.models.Transaction;
+
+/**
+ * Keyset cursor identifying the position of a transaction in the (date, id) ordering
+ */
+public class PageKey {
+    private final long dateMillis;
+    private final int id;
+
+    public PageKey(long dateMillis, int id) {
+        this.dateMillis = dateMillis;
+        this.id = id;
+    }
+
+    /**
+     * Create the key that continues a listing right after the given transaction
+     * @param transaction Last transaction of the previous page
+     * @return PageKey for the next page
+     */
+    public static PageKey after(Transaction transaction) {
+        return new PageKey(transaction.getDateMillis(), transaction.getId());
+    }
+
+    public long getDateMillis() {
+        return dateMillis;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.financemanager.data;
+
+import java.util.Calendar;
+
+/**
+ * Maps epoch-millisecond dates to the integer period keys used by the rollup tables:
+ * yyyyMMdd for days and yyyyMM for months, in the device's time zone.
+ * A transaction's day key is stored with it when written, so that changing it later reverses
+ * the rollup rows it was counted under even if the time zone changed in between.
+ * Instances reuse one Calendar and are not thread-safe.
+ */
+public class PeriodKeys {
+    private final Calendar calendar = Calendar.getInstance();
+
+    /**
+     * @param dateMillis Date in epoch milliseconds
+     * @return Day key, e.g. 20240131
+     */
+    public int day(long dateMillis) {
+        calendar.setTimeInMillis(dateMillis);
+        return calendar.get(Calendar.YEAR) * 10000
+                + (calendar.get(Calendar.MONTH) + 1) * 100
+                + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    /**
+     * @param dateMillis Date in epoch milliseconds
+     * @return Month key, e.g. 202401
+     */
+    public int month(long dateMillis) {
+        return monthOfDay(day(dateMillis));
+    }
+
+    /**
+     * @return True if the date is midnight at the start of a day
+     */
+    public boolean isStartOfDay(long dateMillis) {
+        calendar.setTimeInMillis(dateMillis);
+        return calendar.get(Calendar.HOUR_OF_DAY) == 0 && calendar.get(Calendar.MINUTE) == 0
+                && calendar.get(Calendar.SECOND) == 0 && calendar.get(Calendar.MILLISECOND) == 0;
+    }
+
+    /**
+     * @return True if the date is midnight at the start of a month
+     */
+    public boolean isStartOfMonth(long dateMillis) {
+        return isStartOfDay(dateMillis) && calendar.get(Calendar.DAY_OF_MONTH) == 1;
+    }
+
+    /**
+     * @param dayKey Day key, e.g. 20240131
+     * @return Month key of that day, e.g. 202401
+     */
+    public static int monthOfDay(int dayKey) {
+        return dayKey / 100;
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.financemanager.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Timing of the queries and writes made through DatabaseHelper: a latency histogram and
+ * row count per method, and a ring buffer of the latest slow calls with their SQL.
+ * <p>
+ * Callers take a start time with {@link #start()} and hand it back to {@link #record}.
+ * While recording is off, start() only reads a flag and record() returns right away, so
+ * the instrumented methods cost the same as before. Thread-safe.
+ */
+public class QueryStats {
+
+    // Upper bounds of the histogram buckets in microseconds; a last bucket takes the rest
+    static final long[] BUCKET_BOUNDS_MICROS = {
+            50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 1_000_000
+    };
+    public static final long DEFAULT_SLOW_QUERY_MILLIS = 50;
+    public static final int SLOW_LOG_SIZE = 50;
+
+    // Start time handed out while recording is off
+    private static final long NOT_RECORDING = 0;
+
+    /**
+     * Counters of one method. Samples are rare enough next to the query they time that a
+     * lock per method does not add contention.
+     */
+    private static final class MethodStats {
+        final long[] buckets = new long[BUCKET_BOUNDS_MICROS.length + 1];
+        long calls;
+        long totalNanos;
+        long maxNanos;
+        long rows;
+
+        synchronized void add(long nanos, int rowCount) {
+            long micros = nanos / 1000;
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+            calls++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            rows += rowCount;
+        }
+
+        synchronized MethodSummary summarize(String method) {
+            return new MethodSummary(method, calls, totalNanos, maxNanos, rows, buckets.clone());
+        }
+    }
+
+    private final Map<String, MethodStats> methods = new ConcurrentHashMap<>();
+    private final SlowQuery[] slowLog = new SlowQuery[SLOW_LOG_SIZE];
+    private int slowLogNext;
+    private long slowQueryCount;
+    private volatile boolean enabled;
+    private volatile long slowQueryNanos = DEFAULT_SLOW_QUERY_MILLIS * 1_000_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turn recording on or off; what was recorded so far is kept
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param millis Duration from which a call is kept in the slow query log
+     */
+    public void setSlowQueryMillis(long millis) {
+        slowQueryNanos = millis * 1_000_000;
+    }
+
+    /**
+     * @return Start time to pass to {@link #record}
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : NOT_RECORDING;
+    }
+
+    /**
+     * Record a finished call. Does nothing if recording was off when the call started.
+     * @param method Name of the DatabaseHelper method
+     * @param startNanos Value returned by {@link #start()} before the call
+     * @param rows Rows read or written by the call
+     * @param sql Main statement of the call, kept if the call was slow; null when no statement
+     *            ran or SQLiteDatabase built it from ContentValues
+     * @param bindCount Number of values bound to that statement
+     */
+    public void record(String method, long startNanos, int rows, String sql, int bindCount) {
+        if (startNanos == NOT_RECORDING) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos;
+
+        MethodStats stats = methods.get(method);
+        if (stats == null) {
+            MethodStats created = new MethodStats();
+            stats = methods.putIfAbsent(method, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        stats.add(nanos, rows);
+
+        if (nanos >= slowQueryNanos) {
+            SlowQuery slowQuery = new SlowQuery(method, sql, bindCount, rows, nanos, System.currentTimeMillis());
+            synchronized (slowLog) {
+                slowLog[slowLogNext] = slowQuery;
+                slowLogNext = (slowLogNext + 1) % slowLog.length;
+                slowQueryCount++;
+            }
+        }
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public void reset() {
+        methods.clear();
+        synchronized (slowLog) {
+            for (int i = 0; i < slowLog.length; i++) {
+                slowLog[i] = null;
+            }
+            slowLogNext = 0;
+            slowQueryCount = 0;
+        }
+    }
+
+    /**
+     * @return Copy of the counters, methods with the most total time first and the newest slow query first
+     */
+    public QueryStatsSnapshot snapshot() {
+        List<MethodSummary> summaries = new ArrayList<>();
+        for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+            summaries.add(entry.getValue().summarize(entry.getKey()));
+        }
+        Collections.sort(summaries, new Comparator<MethodSummary>() {
+            @Override
+            public int compare(MethodSummary a, MethodSummary b) {
+                return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+            }
+        });
+
+        List<SlowQuery> slowQueries = new ArrayList<>();
+        long slowCount;
+        synchronized (slowLog) {
+            for (int i = 1; i <= slowLog.length; i++) {
+                SlowQuery slowQuery = slowLog[(slowLogNext - i + slowLog.length) % slowLog.length];
+                if (slowQuery != null) {
+                    slowQueries.add(slowQuery);
+                }
+            }
+            slowCount = slowQueryCount;
+        }
+        return new QueryStatsSnapshot(enabled, slowQueryNanos / 1_000_000, summaries, slowQueries, slowCount);
+    }
+
+    /**
+     * Counters of one method at the time of a snapshot
+     */
+    public static final class MethodSummary {
+        private final String method;
+        private final long calls;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long rows;
+        private final long[] buckets;
+
+        MethodSummary(String method, long calls, long totalNanos, long maxNanos, long rows, long[] buckets) {
+            this.method = method;
+            this.calls = calls;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.rows = rows;
+            this.buckets = buckets;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getMeanMicros() {
+            return calls == 0 ? 0 : totalNanos / calls / 1000;
+        }
+
+        /**
+         * @param fraction Percentile between 0 and 1, e.g. 0.99
+         * @return Upper bound of the histogram bucket holding the percentile, in microseconds;
+         *         the maximum for the last bucket
+         */
+        public long getPercentileMicros(double fraction) {
+            long rank = (long) Math.ceil(fraction * calls);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(BUCKET_BOUNDS_MICROS[i], maxNanos / 1000);
+                }
+            }
+            return maxNanos / 1000;
+        }
+
+        /**
+         * @return Calls per histogram bucket; see {@link QueryStatsSnapshot#getBucketBoundsMicros()}
+         */
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+    }
+
+    /**
+     * A call that took at least the slow query duration
+     */
+    public static final class SlowQuery {
+        private final String method;
+        private final String sql;
+        private final int bindCount;
+        private final int rows;
+        private final long nanos;
+        private final long timeMillis;
+
+        SlowQuery(String method, String sql, int bindCount, int rows, long nanos, long timeMillis) {
+            this.method = method;
+            this.sql = sql;
+            this.bindCount = bindCount;
+            this.rows = rows;
+            this.nanos = nanos;
+            this.timeMillis = timeMillis;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public int getBindCount() {
+            return bindCount;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public long getMicros() {
+            return nanos / 1000;
+        }
+
+        /**
+         * @return Epoch milliseconds at which the call finished
+         */
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+    }
+}
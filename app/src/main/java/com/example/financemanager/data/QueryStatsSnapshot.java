@@ -0,0 +1,60 @@
+package com.example.financemanager.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only copy of the {@link QueryStats} counters at one point in time
+ */
+public final class QueryStatsSnapshot {
+    private final boolean enabled;
+    private final long slowQueryMillis;
+    private final List<QueryStats.MethodSummary> methods;
+    private final List<QueryStats.SlowQuery> slowQueries;
+    private final long slowQueryCount;
+
+    QueryStatsSnapshot(boolean enabled, long slowQueryMillis, List<QueryStats.MethodSummary> methods,
+                       List<QueryStats.SlowQuery> slowQueries, long slowQueryCount) {
+        this.enabled = enabled;
+        this.slowQueryMillis = slowQueryMillis;
+        this.methods = Collections.unmodifiableList(methods);
+        this.slowQueries = Collections.unmodifiableList(slowQueries);
+        this.slowQueryCount = slowQueryCount;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getSlowQueryMillis() {
+        return slowQueryMillis;
+    }
+
+    /**
+     * @return Methods with the most total time first
+     */
+    public List<QueryStats.MethodSummary> getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return Latest slow calls, newest first; at most {@link QueryStats#SLOW_LOG_SIZE}
+     */
+    public List<QueryStats.SlowQuery> getSlowQueries() {
+        return slowQueries;
+    }
+
+    /**
+     * @return Number of slow calls since the last reset, including those no longer in the log
+     */
+    public long getSlowQueryCount() {
+        return slowQueryCount;
+    }
+
+    /**
+     * @return Upper bounds of the histogram buckets in microseconds; the last bucket has no bound
+     */
+    public long[] getBucketBoundsMicros() {
+        return QueryStats.BUCKET_BOUNDS_MICROS.clone();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.financemanager.data;
+
+/**
+ * Progress of a balance reconciliation through the transactions of one account.
+ * Transactions are read newest first in (date, id) order; the running total holds the
+ * signed sum of every transaction up to and including the one at lastKey.
+ * A checkpoint is only valid while the account's revision is unchanged, since any
+ * write touching the account's transactions increments it.
+ */
+public class ReconcileCheckpoint {
+    private final int accountId;
+    private final long revision;
+    private final PageKey lastKey;
+    private final long runningTotal;
+
+    public ReconcileCheckpoint(int accountId, long revision, PageKey lastKey, long runningTotal) {
+        this.accountId = accountId;
+        this.revision = revision;
+        this.lastKey = lastKey;
+        this.runningTotal = runningTotal;
+    }
+
+    /**
+     * @return Checkpoint of a scan that has not read any transaction yet
+     */
+    public static ReconcileCheckpoint start(int accountId, long revision) {
+        return new ReconcileCheckpoint(accountId, revision, null, 0);
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return Revision of the account when the scan started
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * @return Key of the last transaction read, or null before the first one
+     */
+    public PageKey getLastKey() {
+        return lastKey;
+    }
+
+    /**
+     * @return Signed sum in minor units of the transactions read so far
+     */
+    public long getRunningTotal() {
+        return runningTotal;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.financemanager.data;
+
+import java.util.Calendar;
+
+/**
+ * Periods a report can cover. Each preset is turned into whole days in the device's time
+ * zone, so reports read the daily or monthly rollups instead of the transactions.
+ */
+public enum ReportPeriod {
+    ALL_TIME,
+    THIS_MONTH,
+    LAST_MONTH,
+    LAST_30_DAYS,
+    LAST_90_DAYS,
+    THIS_YEAR,
+    // Dates picked by the user, see days()
+    CUSTOM;
+
+    /**
+     * @param nowMillis Current time in epoch milliseconds
+     * @return Dates covered by the period at that time
+     * @throws IllegalStateException For CUSTOM, which has no preset dates
+     */
+    public DateRange toRange(long nowMillis) {
+        Calendar calendar = startOfDay(nowMillis);
+        switch (this) {
+            case ALL_TIME:
+                return DateRange.all();
+            case THIS_MONTH:
+                calendar.set(Calendar.DAY_OF_MONTH, 1);
+                return range(calendar, Calendar.MONTH, 1);
+            case LAST_MONTH:
+                calendar.set(Calendar.DAY_OF_MONTH, 1);
+                calendar.add(Calendar.MONTH, -1);
+                return range(calendar, Calendar.MONTH, 1);
+            case LAST_30_DAYS:
+                // Today is the last of the days
+                calendar.add(Calendar.DAY_OF_MONTH, -29);
+                return range(calendar, Calendar.DAY_OF_MONTH, 30);
+            case LAST_90_DAYS:
+                calendar.add(Calendar.DAY_OF_MONTH, -89);
+                return range(calendar, Calendar.DAY_OF_MONTH, 90);
+            case THIS_YEAR:
+                calendar.set(Calendar.DAY_OF_YEAR, 1);
+                return range(calendar, Calendar.YEAR, 1);
+            default:
+                throw new IllegalStateException("No preset dates for " + this);
+        }
+    }
+
+    /**
+     * @param firstDayMillis Any time on the first day to include
+     * @param lastDayMillis Any time on the last day to include
+     * @return Range from the start of the first day to the start of the day after the last
+     */
+    public static DateRange days(long firstDayMillis, long lastDayMillis) {
+        if (lastDayMillis < firstDayMillis) {
+            long swap = firstDayMillis;
+            firstDayMillis = lastDayMillis;
+            lastDayMillis = swap;
+        }
+        Calendar end = startOfDay(lastDayMillis);
+        end.add(Calendar.DAY_OF_MONTH, 1);
+        return new DateRange(startOfDay(firstDayMillis).getTimeInMillis(), end.getTimeInMillis());
+    }
+
+    private static Calendar startOfDay(long dateMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(dateMillis);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar;
+    }
+
+    /**
+     * @param start Start of the range; moved to its end
+     * @return Range from the start over the given amount of a calendar field
+     */
+    private static DateRange range(Calendar start, int field, int amount) {
+        long fromMillis = start.getTimeInMillis();
+        start.add(field, amount);
+        return new DateRange(fromMillis, start.getTimeInMillis());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.financemanager.data;
+
+import com.example.financemanager.DatabaseHelper.CategorySummary;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Totals and category breakdowns of one report, read together by
+ * {@link com.example.financemanager.DatabaseHelper#getReportSnapshot}
+ */
+public class ReportSnapshot {
+    private final long totalIncome;
+    private final long totalExpense;
+    private final List<CategorySummary> incomeByCategory;
+    private final List<CategorySummary> expensesByCategory;
+
+    public ReportSnapshot(long totalIncome, long totalExpense,
+                          List<CategorySummary> incomeByCategory, List<CategorySummary> expensesByCategory) {
+        this.totalIncome = totalIncome;
+        this.totalExpense = totalExpense;
+        this.incomeByCategory = Collections.unmodifiableList(incomeByCategory);
+        this.expensesByCategory = Collections.unmodifiableList(expensesByCategory);
+    }
+
+    /**
+     * @return Total income in minor units
+     */
+    public long getTotalIncome() {
+        return totalIncome;
+    }
+
+    /**
+     * @return Total expense in minor units
+     */
+    public long getTotalExpense() {
+        return totalExpense;
+    }
+
+    /**
+     * @return Income minus expense in minor units
+     */
+    public long getNetBalance() {
+        return totalIncome - totalExpense;
+    }
+
+    /**
+     * @return Income per category, largest first
+     */
+    public List<CategorySummary> getIncomeByCategory() {
+        return incomeByCategory;
+    }
+
+    /**
+     * @return Expense per category, largest first
+     */
+    public List<CategorySummary> getExpensesByCategory() {
+        return expensesByCategory;
+    }
+}
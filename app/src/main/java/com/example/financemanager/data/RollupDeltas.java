@@ -0,0 +1,118 @@
+package com.example.financemanager.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accumulates the changes that a set of transaction writes makes to the daily and monthly
+ * rollup tables, so that each (account, period, type, category) row is written once per
+ * database transaction however many transactions touch it.
+ */
+public class RollupDeltas {
+    private final Map<Key, long[]> daily = new HashMap<>();
+
+    /**
+     * Record a change to the totals of one transaction's rollup rows
+     * @param accountId Account of the transaction
+     * @param dayKey Day key the transaction is counted under, see {@link PeriodKeys}
+     * @param type Transaction type
+     * @param categoryId Category id, or {@link CategoryDictionary#NONE}
+     * @param amount Amount in minor units to add to the total (negative to remove)
+     * @param count Number of transactions to add to the count (negative to remove)
+     */
+    public void add(int accountId, int dayKey, String type, int categoryId, long amount, int count) {
+        Key key = new Key(accountId, dayKey, type, categoryId);
+        long[] delta = daily.get(key);
+        if (delta == null) {
+            delta = new long[2];
+            daily.put(key, delta);
+        }
+        delta[0] += amount;
+        delta[1] += count;
+    }
+
+    public boolean isEmpty() {
+        return daily.isEmpty();
+    }
+
+    /**
+     * @return Changes keyed by day; values are {total, count}
+     */
+    public Map<Key, long[]> getDaily() {
+        return daily;
+    }
+
+    /**
+     * @return The daily changes summed by month; values are {total, count}
+     */
+    public Map<Key, long[]> getMonthly() {
+        Map<Key, long[]> monthly = new HashMap<>();
+        for (Map.Entry<Key, long[]> entry : daily.entrySet()) {
+            Key day = entry.getKey();
+            Key month = new Key(day.accountId, PeriodKeys.monthOfDay(day.period), day.type, day.categoryId);
+            long[] delta = monthly.get(month);
+            if (delta == null) {
+                delta = new long[2];
+                monthly.put(month, delta);
+            }
+            delta[0] += entry.getValue()[0];
+            delta[1] += entry.getValue()[1];
+        }
+        return monthly;
+    }
+
+    /**
+     * Primary key of a rollup row
+     */
+    public static final class Key {
+        private final int accountId;
+        private final int period;
+        private final String type;
+        private final int categoryId;
+
+        Key(int accountId, int period, String type, int categoryId) {
+            this.accountId = accountId;
+            this.period = period;
+            this.type = type == null ? "" : type;
+            this.categoryId = categoryId;
+        }
+
+        public int getAccountId() {
+            return accountId;
+        }
+
+        public int getPeriod() {
+            return period;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public int getCategoryId() {
+            return categoryId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return accountId == other.accountId && period == other.period
+                    && categoryId == other.categoryId && type.equals(other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = accountId;
+            result = 31 * result + period;
+            result = 31 * result + type.hashCode();
+            result = 31 * result + categoryId;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.financemanager.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Screen load and frame timings of every screen, as recorded by ScreenTracker: time to
+ * first draw, time from a data request to the frame showing its result, slow frames right
+ * after that, and a histogram of all frame durations.
+ * <p>
+ * Durations are kept for the latest {@link #MAX_SAMPLES} loads of each kind, so percentiles
+ * are exact over recent use. Recording is off until enabled from the diagnostics screen.
+ * Thread-safe; frames are recorded from a background thread.
+ */
+public class ScreenMetrics {
+
+    static final int MAX_SAMPLES = 200;
+
+    // Android vitals thresholds: a slow frame misses 60 Hz, a frozen frame stalls the screen
+    public static final long SLOW_FRAME_NANOS = 17_000_000;
+    public static final long FROZEN_FRAME_NANOS = 700_000_000;
+
+    // Upper bounds of the frame duration buckets in milliseconds; a last bucket takes the rest
+    static final long[] FRAME_BUCKET_BOUNDS_MILLIS = { 8, 12, 17, 25, 33, 50, 100, 250, 700 };
+
+    private static final String PREFS_DIAGNOSTICS = "diagnostics";
+    private static final String PREF_SCREEN_TIMING = "screen_timing";
+
+    private static ScreenMetrics instance;
+
+    /**
+     * Latest values of one measurement, oldest overwritten first
+     */
+    private static final class Samples {
+        final long[] values = new long[MAX_SAMPLES];
+        int next;
+        long count;
+
+        void add(long value) {
+            values[next] = value;
+            next = (next + 1) % values.length;
+            count++;
+        }
+
+        /**
+         * @return The kept values, sorted
+         */
+        long[] sorted() {
+            long[] kept = Arrays.copyOf(values, (int) Math.min(count, values.length));
+            Arrays.sort(kept);
+            return kept;
+        }
+    }
+
+    private static final class Screen {
+        final Samples firstDraw = new Samples();
+        // Keyed by load name
+        final Map<String, Samples> content = new TreeMap<>();
+        final Map<String, Samples> slowFramesAfterContent = new TreeMap<>();
+        final long[] frameBuckets = new long[FRAME_BUCKET_BOUNDS_MILLIS.length + 1];
+        long frames;
+        long slowFrames;
+        long frozenFrames;
+    }
+
+    private final SharedPreferences prefs;
+    private final Map<String, Screen> screens = new TreeMap<>();
+    private volatile boolean enabled;
+
+    private ScreenMetrics(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_DIAGNOSTICS, Context.MODE_PRIVATE);
+        enabled = prefs.getBoolean(PREF_SCREEN_TIMING, false);
+    }
+
+    /**
+     * @return The metrics shared by the whole application
+     */
+    public static synchronized ScreenMetrics getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScreenMetrics(context);
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turn recording on or off, for now and for later launches. Screens already open keep
+     * the setting they were opened with.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        prefs.edit().putBoolean(PREF_SCREEN_TIMING, enabled).apply();
+    }
+
+    /**
+     * @param nanos Time from the creation of the screen to its first drawn frame
+     */
+    public synchronized void recordFirstDraw(String screen, long nanos) {
+        screen(screen).firstDraw.add(nanos);
+    }
+
+    /**
+     * @param load Name of the load, e.g. the method requesting the data
+     * @param nanos Time from the data request to the first frame drawn with its result
+     */
+    public synchronized void recordContent(String screen, String load, long nanos) {
+        samples(screen(screen).content, load).add(nanos);
+    }
+
+    /**
+     * @param slowFrames Slow frames drawn in the moments after a load's content was shown
+     */
+    public synchronized void recordSlowFramesAfterContent(String screen, String load, int slowFrames) {
+        samples(screen(screen).slowFramesAfterContent, load).add(slowFrames);
+    }
+
+    /**
+     * @param durationNanos Total time the frame took, from input handling to the end of drawing
+     */
+    public synchronized void recordFrame(String screen, long durationNanos) {
+        Screen stats = screen(screen);
+        long millis = durationNanos / 1_000_000;
+        int bucket = 0;
+        while (bucket < FRAME_BUCKET_BOUNDS_MILLIS.length && millis > FRAME_BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        stats.frameBuckets[bucket]++;
+        stats.frames++;
+        if (durationNanos >= SLOW_FRAME_NANOS) {
+            stats.slowFrames++;
+        }
+        if (durationNanos >= FROZEN_FRAME_NANOS) {
+            stats.frozenFrames++;
+        }
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public synchronized void reset() {
+        screens.clear();
+    }
+
+    /**
+     * @return Readable percentile summary per screen, durations in milliseconds
+     */
+    public synchronized String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append("Screen timing: ").append(enabled ? "on" : "off").append('\n');
+        if (screens.isEmpty()) {
+            text.append("Nothing recorded\n");
+        }
+        for (Map.Entry<String, Screen> entry : screens.entrySet()) {
+            Screen screen = entry.getValue();
+            text.append('\n').append(entry.getKey()).append('\n');
+            appendText(text, "first draw", screen.firstDraw, 1_000_000, "ms");
+            for (Map.Entry<String, Samples> load : screen.content.entrySet()) {
+                appendText(text, load.getKey() + " to content", load.getValue(), 1_000_000, "ms");
+            }
+            for (Map.Entry<String, Samples> load : screen.slowFramesAfterContent.entrySet()) {
+                appendText(text, load.getKey() + " slow frames after", load.getValue(), 1, "");
+            }
+            text.append(String.format(Locale.ROOT, "  frames: %d, slow %d (%.1f%%), frozen %d, p50/p90/p99 <= %d/%d/%d ms%n",
+                    screen.frames, screen.slowFrames, screen.frames == 0 ? 0.0 : 100.0 * screen.slowFrames / screen.frames,
+                    screen.frozenFrames, framePercentile(screen, 0.5), framePercentile(screen, 0.9),
+                    framePercentile(screen, 0.99)));
+        }
+        return text.toString();
+    }
+
+    private static void appendText(StringBuilder text, String label, Samples samples, long divisor, String unit) {
+        long[] sorted = samples.sorted();
+        if (sorted.length == 0) {
+            return;
+        }
+        text.append(String.format(Locale.ROOT, "  %s: n=%d, p50 %d, p90 %d, p99 %d, max %d %s%n", label,
+                samples.count, percentile(sorted, 0.5) / divisor, percentile(sorted, 0.9) / divisor,
+                percentile(sorted, 0.99) / divisor, sorted[sorted.length - 1] / divisor, unit));
+    }
+
+    /**
+     * @return Every summary and frame histogram as a JSON document, durations in milliseconds
+     */
+    public synchronized String toJson() {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("timestampMillis", System.currentTimeMillis());
+            json.put("screenTimingEnabled", enabled);
+            json.put("slowFrameMillis", SLOW_FRAME_NANOS / 1_000_000);
+            json.put("frozenFrameMillis", FROZEN_FRAME_NANOS / 1_000_000);
+            JSONArray bounds = new JSONArray();
+            for (long bound : FRAME_BUCKET_BOUNDS_MILLIS) {
+                bounds.put(bound);
+            }
+            json.put("frameBucketBoundsMillis", bounds);
+
+            JSONObject screensJson = new JSONObject();
+            for (Map.Entry<String, Screen> entry : screens.entrySet()) {
+                Screen screen = entry.getValue();
+                JSONObject screenJson = new JSONObject();
+                screenJson.put("firstDrawMillis", summaryJson(screen.firstDraw, 1_000_000));
+                JSONObject content = new JSONObject();
+                for (Map.Entry<String, Samples> load : screen.content.entrySet()) {
+                    content.put(load.getKey(), summaryJson(load.getValue(), 1_000_000));
+                }
+                screenJson.put("timeToContentMillis", content);
+                JSONObject jank = new JSONObject();
+                for (Map.Entry<String, Samples> load : screen.slowFramesAfterContent.entrySet()) {
+                    jank.put(load.getKey(), summaryJson(load.getValue(), 1));
+                }
+                screenJson.put("slowFramesAfterContent", jank);
+                screenJson.put("frames", screen.frames);
+                screenJson.put("slowFrames", screen.slowFrames);
+                screenJson.put("frozenFrames", screen.frozenFrames);
+                JSONArray buckets = new JSONArray();
+                for (long count : screen.frameBuckets) {
+                    buckets.put(count);
+                }
+                screenJson.put("frameBuckets", buckets);
+                screensJson.put(entry.getKey(), screenJson);
+            }
+            json.put("screens", screensJson);
+            return json.toString(2);
+        } catch (JSONException e) {
+            // Only thrown for non-finite numbers, which the summary does not contain
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static JSONObject summaryJson(Samples samples, long divisor) throws JSONException {
+        long[] sorted = samples.sorted();
+        JSONObject json = new JSONObject();
+        json.put("count", samples.count);
+        if (sorted.length > 0) {
+            json.put("p50", percentile(sorted, 0.5) / divisor);
+            json.put("p90", percentile(sorted, 0.9) / divisor);
+            json.put("p99", percentile(sorted, 0.99) / divisor);
+            json.put("max", sorted[sorted.length - 1] / divisor);
+        }
+        return json;
+    }
+
+    /**
+     * @return Nearest-rank percentile of sorted values
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * @return Upper bound in milliseconds of the frame bucket holding the percentile;
+     *         the slowest bound for frames beyond it
+     */
+    private static long framePercentile(Screen screen, double fraction) {
+        if (screen.frames == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * screen.frames);
+        long seen = 0;
+        for (int i = 0; i < FRAME_BUCKET_BOUNDS_MILLIS.length; i++) {
+            seen += screen.frameBuckets[i];
+            if (seen >= rank) {
+                return FRAME_BUCKET_BOUNDS_MILLIS[i];
+            }
+        }
+        return FRAME_BUCKET_BOUNDS_MILLIS[FRAME_BUCKET_BOUNDS_MILLIS.length - 1];
+    }
+
+    private Screen screen(String name) {
+        Screen screen = screens.get(name);
+        if (screen == null) {
+            screen = new Screen();
+            screens.put(name, screen);
+        }
+        return screen;
+    }
+
+    private static Samples samples(Map<String, Samples> byLoad, String load) {
+        Samples samples = byLoad.get(load);
+        if (samples == null) {
+            samples = new Samples();
+            byLoad.put(load, samples);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.financemanager.data;
+
+/**
+ * Keyset cursor identifying the position of a search result in the (rank, date, id) ordering
+ */
+public class SearchKey {
+    private final int rank;
+    private final long dateMillis;
+    private final int id;
+
+    public SearchKey(int rank, long dateMillis, int id) {
+        this.rank = rank;
+        this.dateMillis = dateMillis;
+        this.id = id;
+    }
+
+    /**
+     * @return Number of occurrences of the query terms in the row's description and category,
+     *         counting a term found twice as two
+     */
+    public int getRank() {
+        return rank;
+    }
+
+    public long getDateMillis() {
+        return dateMillis;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
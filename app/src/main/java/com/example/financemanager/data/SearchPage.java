@@ -0,0 +1,30 @@
+package com.example.financemanager.data;
+
+import com.example.financemanager.models.Transaction;
+
+import java.util.List;
+
+/**
+ * One page of full-text search results, best match first, with the key that continues it
+ */
+public class SearchPage {
+    private final List<Transaction> transactions;
+    private final SearchKey lastKey;
+
+    /**
+     * @param transactions Rows of the page
+     * @param lastKey Key of the last row, or null if the page is empty
+     */
+    public SearchPage(List<Transaction> transactions, SearchKey lastKey) {
+        this.transactions = transactions;
+        this.lastKey = lastKey;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    public SearchKey getLastKey() {
+        return lastKey;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.financemanager.data;
+
+import android.util.LruCache;
+
+import com.example.financemanager.models.Transaction;
+
+import java.util.Collection;
+
+/**
+ * Size-bounded LRU cache of transaction rows by id, as returned by the joined transaction
+ * queries. List queries fill it and writes invalidate it, so edits and deletes of rows
+ * that were just shown can skip reading the old row.
+ *
+ * A cached row is used to reverse a balance effect, so it must never be stale. Writers
+ * bracket their database transaction with {@link #beginWrite()} and {@link #endWrite},
+ * and a query only fills the cache if no write was in flight at any point while it ran.
+ */
+public class TransactionCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 512;
+
+    // Returned by beginRead while a write is in flight
+    private static final long NO_FILL = -1;
+
+    private final LruCache<Integer, Transaction> cache;
+    private int writesInFlight;
+    private long generation;
+
+    public TransactionCache(int maxEntries) {
+        cache = new LruCache<>(maxEntries);
+    }
+
+    /**
+     * @return A copy of the cached row, or null on a miss
+     */
+    public Transaction get(int transactionId) {
+        Transaction cached = cache.get(transactionId);
+        return cached == null ? null : new Transaction(cached);
+    }
+
+    /**
+     * Remove a row that the current write is about to change, so that a later write never
+     * sees it even if it starts before {@link #endWrite} runs
+     * @return The cached row, or null on a miss
+     */
+    public Transaction take(int transactionId) {
+        return cache.remove(transactionId);
+    }
+
+    /**
+     * Call before running a query whose rows may be cached
+     * @return Token to pass to {@link #putAll}
+     */
+    public synchronized long beginRead() {
+        return writesInFlight == 0 ? generation : NO_FILL;
+    }
+
+    /**
+     * Cache rows read by a query, unless a write started or finished since {@link #beginRead()}
+     * @param token Value returned by beginRead before the query ran
+     * @param transactions Rows read by the query
+     */
+    public synchronized void putAll(long token, Collection<Transaction> transactions) {
+        if (token == NO_FILL || token != generation) {
+            return;
+        }
+        for (Transaction transaction : transactions) {
+            cache.put(transaction.getId(), new Transaction(transaction));
+        }
+    }
+
+    /**
+     * Call before a database transaction that changes or deletes existing rows
+     */
+    public synchronized void beginWrite() {
+        writesInFlight++;
+        generation++;
+    }
+
+    /**
+     * Call once the write has committed or rolled back
+     * @param transactionIds IDs of the rows the write may have changed, or null if it may
+     *                       have changed any row (e.g. through the joined account name)
+     */
+    public synchronized void endWrite(Collection<Integer> transactionIds) {
+        if (transactionIds == null) {
+            cache.evictAll();
+        } else {
+            for (Integer transactionId : transactionIds) {
+                cache.remove(transactionId);
+            }
+        }
+        writesInFlight--;
+        generation++;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int maxSize() {
+        return cache.maxSize();
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    public int evictionCount() {
+        return cache.evictionCount();
+    }
+}
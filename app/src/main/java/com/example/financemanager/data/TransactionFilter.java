@@ -0,0 +1,65 @@
+package com.example.financemanager.data;
+
+import com.example.financemanager.DatabaseHelper;
+
+/**
+ * Immutable set of conditions selecting transactions: account, type and a date range.
+ * The date range is half-open, fromMillis inclusive and toMillis exclusive.
+ */
+public class TransactionFilter {
+    private final int accountId;
+    private final String type;
+    private final long fromMillis;
+    private final long toMillis;
+
+    /**
+     * @param accountId Account ID, or {@link DatabaseHelper#ALL_ACCOUNTS} for every account
+     * @param type "INCOME", "EXPENSE", or null for both
+     * @param fromMillis Earliest date in epoch milliseconds, inclusive
+     * @param toMillis Latest date in epoch milliseconds, exclusive
+     */
+    public TransactionFilter(int accountId, String type, long fromMillis, long toMillis) {
+        this.accountId = accountId;
+        this.type = type;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+    }
+
+    /**
+     * @return Filter matching every transaction
+     */
+    public static TransactionFilter all() {
+        return new TransactionFilter(DatabaseHelper.ALL_ACCOUNTS, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return Filter matching every transaction of one account
+     */
+    public static TransactionFilter forAccount(int accountId) {
+        return new TransactionFilter(accountId, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+        return toMillis;
+    }
+
+    public boolean hasAccount() {
+        return accountId != DatabaseHelper.ALL_ACCOUNTS;
+    }
+
+    public boolean hasDateRange() {
+        return fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.financemanager.data;
+
+import com.example.financemanager.DatabaseHelper;
+import com.example.financemanager.models.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads transactions page by page, newest first, for an incrementally filled list.
+ * Keeps the keyset cursor of the last loaded row so each page is a bounded index read.
+ * A source created by {@link #search} pages through full-text search results instead,
+ * best match first.
+ */
+public class TransactionPageSource {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private final DatabaseHelper dbHelper;
+    private final int accountId;
+    private final int pageSize;
+    private final String searchQuery;
+    private final TransactionFilter searchFilter;
+
+    private PageKey nextKey;
+    private SearchKey nextSearchKey;
+    private boolean endReached;
+
+    /**
+     * @param dbHelper Database to read from
+     * @param accountId Account ID, or {@link DatabaseHelper#ALL_ACCOUNTS} for every account
+     */
+    public TransactionPageSource(DatabaseHelper dbHelper, int accountId) {
+        this(dbHelper, accountId, DEFAULT_PAGE_SIZE);
+    }
+
+    public TransactionPageSource(DatabaseHelper dbHelper, int accountId, int pageSize) {
+        this(dbHelper, accountId, pageSize, null, null);
+    }
+
+    private TransactionPageSource(DatabaseHelper dbHelper, int accountId, int pageSize,
+                                  String searchQuery, TransactionFilter searchFilter) {
+        this.dbHelper = dbHelper;
+        this.accountId = accountId;
+        this.pageSize = pageSize;
+        this.searchQuery = searchQuery;
+        this.searchFilter = searchFilter;
+    }
+
+    /**
+     * Create a source over the transactions whose description or category match a search
+     * @param dbHelper Database to read from
+     * @param query Text typed by the user, see {@link DatabaseHelper#searchTransactions}
+     * @param filter Conditions the results must also match
+     */
+    public static TransactionPageSource search(DatabaseHelper dbHelper, String query, TransactionFilter filter) {
+        return new TransactionPageSource(dbHelper, filter.getAccountId(), DEFAULT_PAGE_SIZE, query, filter);
+    }
+
+    /**
+     * Load the page following the last one returned
+     * @return List of Transaction objects, empty once the end has been reached
+     */
+    public List<Transaction> loadNextPage() {
+        if (searchQuery != null) {
+            return loadNextSearchPage();
+        }
+
+        List<Transaction> page = dbHelper.getTransactionsPage(accountId, nextKey, pageSize);
+
+        if (page.size() < pageSize) {
+            endReached = true;
+        }
+        if (!page.isEmpty()) {
+            nextKey = PageKey.after(page.get(page.size() - 1));
+        }
+        return page;
+    }
+
+    /**
+     * Load pages until at least minRows rows have been returned or the end is reached, so a
+     * refreshed list can keep as many rows as it showed before
+     * @param minRows Number of rows wanted
+     * @return The rows of every page loaded, in order
+     */
+    public List<Transaction> loadNextPages(int minRows) {
+        List<Transaction> rows = new ArrayList<>(loadNextPage());
+        while (rows.size() < minRows && hasMore()) {
+            rows.addAll(loadNextPage());
+        }
+        return rows;
+    }
+
+    private List<Transaction> loadNextSearchPage() {
+        SearchPage page = dbHelper.searchTransactions(searchQuery, searchFilter, nextSearchKey, pageSize);
+
+        if (page.getTransactions().size() < pageSize) {
+            endReached = true;
+        }
+        if (page.getLastKey() != null) {
+            nextSearchKey = page.getLastKey();
+        }
+        return page.getTransactions();
+    }
+
+    /**
+     * @return True if another call to {@link #loadNextPage()} may return rows
+     */
+    public boolean hasMore() {
+        return !endReached;
+    }
+
+    /**
+     * Start again from the newest transaction, or the best search match
+     */
+    public void reset() {
+        nextKey = null;
+        nextSearchKey = null;
+        endReached = false;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.financemanager.data;
+
+import android.database.Cursor;
+
+import com.example.financemanager.models.Transaction;
+
+/**
+ * Reusable read-only view of the current row of a transaction query.
+ * Column indices are resolved once per query and values are read from the cursor only
+ * when asked for, so visiting a row allocates nothing unless a String value is requested.
+ * Category names come from the {@link CategoryDictionary} and are never allocated per row.
+ */
+public class TransactionRow {
+    private final Cursor cursor;
+    private final CategoryDictionary categories;
+    private final int idIndex;
+    private final int amountIndex;
+    private final int typeIndex;
+    private final int categoryIndex;
+    private final int descriptionIndex;
+    private final int dateIndex;
+    private final int accountIdIndex;
+    private final int accountNameIndex;
+    private final int accountCurrencyIndex;
+    private final int periodDayIndex;
+
+    /**
+     * @param cursor Cursor over transactions joined with account_name and account_currency
+     * @param categories Dictionary resolving the category_id column
+     */
+    public TransactionRow(Cursor cursor, CategoryDictionary categories) {
+        this.cursor = cursor;
+        this.categories = categories;
+        this.idIndex = cursor.getColumnIndexOrThrow("id");
+        this.amountIndex = cursor.getColumnIndexOrThrow("amount");
+        this.typeIndex = cursor.getColumnIndexOrThrow("type");
+        this.categoryIndex = cursor.getColumnIndexOrThrow("category_id");
+        this.descriptionIndex = cursor.getColumnIndexOrThrow("description");
+        this.dateIndex = cursor.getColumnIndexOrThrow("date");
+        this.accountIdIndex = cursor.getColumnIndexOrThrow("account_id");
+        this.accountNameIndex = cursor.getColumnIndex("account_name");
+        this.accountCurrencyIndex = cursor.getColumnIndex("account_currency");
+        this.periodDayIndex = cursor.getColumnIndex("period_day");
+    }
+
+    public int getId() {
+        return cursor.getInt(idIndex);
+    }
+
+    /**
+     * @return Amount in minor units of the account currency
+     */
+    public long getAmountMinor() {
+        return cursor.getLong(amountIndex);
+    }
+
+    public String getType() {
+        return cursor.getString(typeIndex);
+    }
+
+    /**
+     * @return Category id, or {@link CategoryDictionary#NONE} if the transaction has no category
+     */
+    public int getCategoryId() {
+        return cursor.isNull(categoryIndex) ? CategoryDictionary.NONE : cursor.getInt(categoryIndex);
+    }
+
+    public String getCategory() {
+        return categories.nameOf(getCategoryId());
+    }
+
+    public String getDescription() {
+        return cursor.getString(descriptionIndex);
+    }
+
+    /**
+     * @return Date in epoch milliseconds
+     */
+    public long getDateMillis() {
+        return cursor.getLong(dateIndex);
+    }
+
+    public int getAccountId() {
+        return cursor.getInt(accountIdIndex);
+    }
+
+    public String getAccountName() {
+        return accountNameIndex < 0 ? null : cursor.getString(accountNameIndex);
+    }
+
+    public String getAccountCurrency() {
+        return accountCurrencyIndex < 0 ? null : cursor.getString(accountCurrencyIndex);
+    }
+
+    /**
+     * @return Day key the rollups count the row under, or 0 if the query does not select it
+     */
+    public int getPeriodDay() {
+        return periodDayIndex < 0 ? 0 : cursor.getInt(periodDayIndex);
+    }
+
+    /**
+     * Copy the current row into a new Transaction object
+     * @return Transaction object
+     */
+    public Transaction toTransaction() {
+        Transaction transaction = new Transaction(
+                getId(),
+                getAmountMinor(),
+                getType(),
+                getCategory(),
+                getDescription(),
+                getDateMillis(),
+                getAccountId(),
+                getAccountName()
+        );
+        transaction.setAccountCurrency(getAccountCurrency());
+        transaction.setPeriodDay(getPeriodDay());
+        return transaction;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.financemanager.data;
+
+/**
+ * Receives the rows of a streamed transaction query one at a time
+ */
+public interface TransactionVisitor {
+
+    /**
+     * Called once per row. The row object is reused for the next row, so values that are
+     * needed later must be copied out, for example with {@link TransactionRow#toTransaction()}.
+     * @param row Current row
+     * @return True to continue with the next row, false to stop the query
+     */
+    boolean visit(TransactionRow row);
+}
@@ -6,7 +6,7 @@ package com.example.financemanager.models;
 public class Account {
     private int id;
     private String name;
-    private double balance;
+    private long balance; // In minor units of the currency, e.g. cents
     private String accountType; // e.g., "Savings", "Checking", "Cash", etc.
     private String currency;
     private String notes;
@@ -16,7 +16,7 @@ public class Account {
     }
 
     // Constructor with parameters
-    public Account(int id, String name, double balance, String accountType, String currency, String notes) {
+    public Account(int id, String name, long balance, String accountType, String currency, String notes) {
         this.id = id;
         this.name = name;
         this.balance = balance;
@@ -26,7 +26,7 @@ public class Account {
     }
 
     // Constructor without ID for new accounts
-    public Account(String name, double balance, String accountType, String currency, String notes) {
+    public Account(String name, long balance, String accountType, String currency, String notes) {
         this.name = name;
         this.balance = balance;
         this.accountType = accountType;
@@ -34,6 +34,11 @@ public class Account {
         this.notes = notes;
     }
 
+    // Copy constructor
+    public Account(Account other) {
+        this(other.id, other.name, other.balance, other.accountType, other.currency, other.notes);
+    }
+
     // Getters and setters
     public int getId() {
         return id;
@@ -51,11 +56,11 @@ public class Account {
         this.name = name;
     }
 
-    public double getBalance() {
+    public long getBalanceMinor() {
         return balance;
     }
 
-    public void setBalance(double balance) {
+    public void setBalanceMinor(long balance) {
         this.balance = balance;
     }
 
@@ -85,6 +90,6 @@ public class Account {
 
     @Override
     public String toString() {
-        return name + " (" + accountType + "): " + balance + " " + currency;
+        return name + " (" + accountType + "): " + Money.toPlainString(balance, currency) + " " + currency;
     }
 }
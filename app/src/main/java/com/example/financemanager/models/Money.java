@@ -0,0 +1,90 @@
+package com.example.financemanager.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.NumberFormat;
+import java.util.Currency;
+
+/**
+ * Conversions between money amounts in major units (e.g. 12.34 USD) and the 64-bit
+ * integer minor units (e.g. 1234 cents) that are stored and summed by the database.
+ * The scale of each currency is its ISO 4217 number of fraction digits.
+ */
+public final class Money {
+
+    // Scale used for unknown currency codes
+    private static final int DEFAULT_SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * @param currencyCode ISO 4217 currency code, e.g. "USD"
+     * @return Number of fraction digits of the currency, e.g. 2 for USD and 0 for JPY
+     */
+    public static int scale(String currencyCode) {
+        if (currencyCode == null) {
+            return DEFAULT_SCALE;
+        }
+        try {
+            int digits = Currency.getInstance(currencyCode).getDefaultFractionDigits();
+            return digits < 0 ? DEFAULT_SCALE : digits;
+        } catch (IllegalArgumentException e) {
+            return DEFAULT_SCALE;
+        }
+    }
+
+    /**
+     * @param currencyCode ISO 4217 currency code
+     * @return Number of minor units in one major unit, e.g. 100 for USD
+     */
+    public static long factor(String currencyCode) {
+        long factor = 1;
+        for (int i = scale(currencyCode); i > 0; i--) {
+            factor *= 10;
+        }
+        return factor;
+    }
+
+    /**
+     * Parse a decimal amount in major units, rounding half up to the currency scale
+     * @param text Amount as typed by the user, e.g. "12.345"
+     * @param currencyCode ISO 4217 currency code
+     * @return Amount in minor units
+     * @throws NumberFormatException if the text is not a number
+     * @throws ArithmeticException if the amount does not fit in 64 bits
+     */
+    public static long toMinor(String text, String currencyCode) {
+        return new BigDecimal(text.trim())
+                .setScale(scale(currencyCode), RoundingMode.HALF_UP)
+                .unscaledValue()
+                .longValueExact();
+    }
+
+    /**
+     * @param minor Amount in minor units
+     * @param currencyCode ISO 4217 currency code
+     * @return Exact amount in major units
+     */
+    public static BigDecimal toMajor(long minor, String currencyCode) {
+        return BigDecimal.valueOf(minor, scale(currencyCode));
+    }
+
+    /**
+     * @return Amount in major units without grouping or symbol, suitable for an input field
+     */
+    public static String toPlainString(long minor, String currencyCode) {
+        return toMajor(minor, currencyCode).toPlainString();
+    }
+
+    /**
+     * Format an amount with a currency formatter that is already set to the currency
+     * @param format Currency NumberFormat
+     * @param minor Amount in minor units
+     * @param currencyCode ISO 4217 currency code
+     * @return Formatted amount
+     */
+    public static String format(NumberFormat format, long minor, String currencyCode) {
+        return format.format(toMajor(minor, currencyCode));
+    }
+}
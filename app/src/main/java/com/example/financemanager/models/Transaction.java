@@ -1,33 +1,27 @@
 package com.example.financemanager.models;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-
 /**
  * Model class representing a financial transaction
  */
 public class Transaction {
     private int id;
-    private double amount;
+    private long amount; // In minor units of the account currency, e.g. cents
     private String type; // "INCOME" or "EXPENSE"
     private String category;
     private String description;
-    private Date date;
+    private long date; // Epoch milliseconds
     private int accountId;
     private String accountName; // For displaying purposes
-
-    // Date formatter
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+    private String accountCurrency; // For displaying purposes
+    private int periodDay; // Stored rollup day key, 0 unless read from the database
 
     // Default constructor
     public Transaction() {
     }
 
     // Constructor with all parameters
-    public Transaction(int id, double amount, String type, String category,
-                       String description, Date date, int accountId, String accountName) {
+    public Transaction(int id, long amount, String type, String category,
+                       String description, long date, int accountId, String accountName) {
         this.id = id;
         this.amount = amount;
         this.type = type;
@@ -39,8 +33,8 @@ public class Transaction {
     }
 
     // Constructor without ID for new transactions
-    public Transaction(double amount, String type, String category,
-                       String description, Date date, int accountId, String accountName) {
+    public Transaction(long amount, String type, String category,
+                       String description, long date, int accountId, String accountName) {
         this.amount = amount;
         this.type = type;
         this.category = category;
@@ -50,6 +44,14 @@ public class Transaction {
         this.accountName = accountName;
     }
 
+    // Copy constructor
+    public Transaction(Transaction other) {
+        this(other.id, other.amount, other.type, other.category, other.description,
+                other.date, other.accountId, other.accountName);
+        this.accountCurrency = other.accountCurrency;
+        this.periodDay = other.periodDay;
+    }
+
     // Getters and setters
     public int getId() {
         return id;
@@ -59,11 +61,11 @@ public class Transaction {
         this.id = id;
     }
 
-    public double getAmount() {
+    public long getAmountMinor() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmountMinor(long amount) {
         this.amount = amount;
     }
 
@@ -91,11 +93,11 @@ public class Transaction {
         this.description = description;
     }
 
-    public Date getDate() {
+    public long getDateMillis() {
         return date;
     }
 
-    public void setDate(Date date) {
+    public void setDateMillis(long date) {
         this.date = date;
     }
 
@@ -115,22 +117,26 @@ public class Transaction {
         this.accountName = accountName;
     }
 
-    // Utility methods
-    public String getFormattedDate() {
-        if (date == null) {
-            return "";
-        }
-        return DATE_FORMAT.format(date);
+    public String getAccountCurrency() {
+        return accountCurrency;
     }
 
-    public void setDateFromString(String dateString) {
-        try {
-            this.date = DATE_FORMAT.parse(dateString);
-        } catch (ParseException e) {
-            this.date = new Date(); // Current date as fallback
-        }
+    public void setAccountCurrency(String accountCurrency) {
+        this.accountCurrency = accountCurrency;
     }
 
+    /**
+     * @return Day key the rollups count this transaction under, see PeriodKeys
+     */
+    public int getPeriodDay() {
+        return periodDay;
+    }
+
+    public void setPeriodDay(int periodDay) {
+        this.periodDay = periodDay;
+    }
+
+    // Utility methods
     public boolean isIncome() {
         return "INCOME".equals(type);
     }
@@ -141,7 +147,7 @@ public class Transaction {
 
     @Override
     public String toString() {
-        return (isIncome() ? "+" : "-") + " " + amount +
+        return (isIncome() ? "+" : "-") + " " + Money.toPlainString(amount, accountCurrency) +
                 " (" + category + ") - " + description;
     }
 }
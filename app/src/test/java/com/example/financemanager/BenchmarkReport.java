@@ -0,0 +1,112 @@
+package com.example.financemanager;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects latency samples per method and table size and writes them as JSON, one result
+ * object per measurement, so reports from different commits can be compared by a script.
+ */
+class BenchmarkReport {
+
+    private final String name;
+    private final List<Result> results = new ArrayList<>();
+
+    BenchmarkReport(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param method Name of the measured call
+     * @param rows Number of transactions in the table while measuring
+     * @param nanos Wall time of each call in nanoseconds
+     * @return The summarized result
+     */
+    Result add(String method, int rows, long[] nanos) {
+        Result result = new Result(method, rows, nanos);
+        results.add(result);
+        return result;
+    }
+
+    void write(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(toJson());
+        }
+    }
+
+    String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"benchmark\": \"").append(name).append("\",\n");
+        json.append("  \"timestampMillis\": ").append(System.currentTimeMillis()).append(",\n");
+        json.append("  \"javaVersion\": \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"results\": [");
+        for (int i = 0; i < results.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n").append("    ").append(results.get(i).toJson());
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Throughput and latency percentiles of one method at one table size
+     */
+    static final class Result {
+        final String method;
+        final int rows;
+        final int samples;
+        final double opsPerSecond;
+        final double p50Micros;
+        final double p90Micros;
+        final double p99Micros;
+        final double maxMicros;
+
+        Result(String method, int rows, long[] nanos) {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long sample : sorted) {
+                total += sample;
+            }
+            this.method = method;
+            this.rows = rows;
+            this.samples = sorted.length;
+            this.opsPerSecond = total == 0 ? 0 : sorted.length * 1e9 / total;
+            this.p50Micros = percentile(sorted, 50) / 1e3;
+            this.p90Micros = percentile(sorted, 90) / 1e3;
+            this.p99Micros = percentile(sorted, 99) / 1e3;
+            this.maxMicros = sorted[sorted.length - 1] / 1e3;
+        }
+
+        /**
+         * @return Nearest-rank percentile of sorted samples
+         */
+        private static long percentile(long[] sorted, int percent) {
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"method\": \"%s\", \"rows\": %d, \"samples\": %d, "
+                            + "\"opsPerSecond\": %.1f, \"p50Micros\": %.1f, \"p90Micros\": %.1f, "
+                            + "\"p99Micros\": %.1f, \"maxMicros\": %.1f}",
+                    method, rows, samples, opsPerSecond, p50Micros, p90Micros, p99Micros, maxMicros);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s rows=%d ops/s=%.1f p50=%.1fus p99=%.1fus",
+                    method, rows, opsPerSecond, p50Micros, p99Micros);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.financemanager;
+
+import android.database.DatabaseUtils;
+
+import com.example.financemanager.data.DateRange;
+import com.example.financemanager.data.LedgerGenerator;
+import com.example.financemanager.data.ReportPeriod;
+import com.example.financemanager.data.TransactionFilter;
+import com.example.financemanager.models.Transaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Throughput and latency percentiles of the DatabaseHelper hot paths at growing table sizes,
+ * measured on the JVM with Robolectric's SQLite. Only runs with -Pbenchmark, see
+ * app/build.gradle.kts; table sizes come from the benchmark.rows property and the JSON report
+ * is written to the path in benchmark.output.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DatabaseHelperBenchmark {
+
+    private static final String DEFAULT_ROW_COUNTS = "1000,100000,1000000";
+    private static final String DEFAULT_OUTPUT = "build/reports/benchmark/database-helper.json";
+    private static final int ACCOUNT_COUNT = 5;
+    private static final int MONTHS = 60;
+    // Fixed end date so that every run benchmarks the same ledger
+    private static final long END_MILLIS = 1_767_225_599_000L; // 2025-12-31T23:59:59Z
+    // First day of the MONTHS months that end with END_MILLIS
+    private static final long START_MILLIS = 1_609_459_200_000L; // 2021-01-01T00:00:00Z
+    private static final int WARMUP_RUNS = 3;
+    // Samples per measurement: single-row calls, aggregate queries and full-table reads
+    private static final int POINT_SAMPLES = 200;
+    private static final int QUERY_SAMPLES = 30;
+    private static final int SCAN_SAMPLES = 5;
+
+    /**
+     * A measured call; i is the index of the sample
+     */
+    private interface Operation {
+        void run(int i);
+    }
+
+    private final Random random = new Random(42);
+    private final LedgerGenerator generator = new LedgerGenerator(42, ACCOUNT_COUNT, MONTHS, END_MILLIS);
+    private DatabaseHelper dbHelper;
+    private int[] accountIds;
+    // IDs of the seeded transactions, which point reads sample from
+    private long[] transactionIds = new long[0];
+    private int rowCount;
+
+    @Before
+    public void setUp() {
+        // In-memory database
+        dbHelper = new DatabaseHelper(RuntimeEnvironment.getApplication(), null);
+        accountIds = generator.createAccounts(dbHelper);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void measureHotPaths() throws IOException {
+        BenchmarkReport report = new BenchmarkReport("DatabaseHelperBenchmark");
+        for (String rows : System.getProperty("benchmark.rows", DEFAULT_ROW_COUNTS).split(",")) {
+            int target = Integer.parseInt(rows.trim());
+            seed(report, target);
+            measure(report);
+        }
+
+        File output = new File(System.getProperty("benchmark.output", DEFAULT_OUTPUT));
+        report.write(output);
+        System.out.println("Benchmark report written to " + output.getAbsolutePath());
+    }
+
+    /**
+     * Grow the table to the target size through the bulk insert path, recording the time of each
+     * batch under its batch size
+     */
+    private void seed(BenchmarkReport report, int target) {
+        if (rowCount >= target) {
+            return;
+        }
+        transactionIds = Arrays.copyOf(transactionIds, target);
+        Map<Integer, List<Long>> batchNanos = new TreeMap<>();
+        generator.generateTransactions(accountIds, target - rowCount, batch -> {
+            long start = System.nanoTime();
+            long[] ids = dbHelper.addTransactions(batch);
+            long elapsed = System.nanoTime() - start;
+            List<Long> nanos = batchNanos.get(batch.size());
+            if (nanos == null) {
+                nanos = new ArrayList<>();
+                batchNanos.put(batch.size(), nanos);
+            }
+            nanos.add(elapsed);
+            System.arraycopy(ids, 0, transactionIds, rowCount, ids.length);
+            rowCount += ids.length;
+        });
+
+        for (Map.Entry<Integer, List<Long>> entry : batchNanos.entrySet()) {
+            long[] nanos = new long[entry.getValue().size()];
+            for (int i = 0; i < nanos.length; i++) {
+                nanos[i] = entry.getValue().get(i);
+            }
+            print(report.add("addTransactions(batch=" + entry.getKey() + ")", target, nanos));
+        }
+    }
+
+    private void measure(BenchmarkReport report) {
+        final int accountId = accountIds[0];
+        final int rows = rowCount;
+
+        // Writes: add rows, then update and delete the same rows so the table size is unchanged
+        final long[] addedIds = new long[POINT_SAMPLES];
+        record(report, "addTransaction", POINT_SAMPLES, 0,
+                i -> addedIds[i] = dbHelper.addTransaction(newTransaction("Benchmark row " + i)));
+        record(report, "updateTransaction", POINT_SAMPLES, 0, i -> {
+            Transaction transaction = newTransaction("Updated row " + i);
+            transaction.setId((int) addedIds[i]);
+            dbHelper.updateTransaction(transaction);
+        });
+        record(report, "deleteTransaction", POINT_SAMPLES, 0, i -> dbHelper.deleteTransaction((int) addedIds[i]));
+        assertEquals(rows, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), "transactions"));
+
+        // Reads; random ids mostly miss the transaction cache
+        record(report, "getTransaction", POINT_SAMPLES, WARMUP_RUNS,
+                i -> dbHelper.getTransaction((int) transactionIds[random.nextInt(rows)]));
+        record(report, "getTransactionsPage(all)", POINT_SAMPLES, WARMUP_RUNS,
+                i -> dbHelper.getTransactionsPage(DatabaseHelper.ALL_ACCOUNTS, null, 50));
+        record(report, "getTransactionsPage(account)", POINT_SAMPLES, WARMUP_RUNS,
+                i -> dbHelper.getTransactionsPage(accountId, null, 50));
+        record(report, "getTotalIncome(account)", QUERY_SAMPLES, WARMUP_RUNS, i -> dbHelper.getTotalIncome(accountId));
+        record(report, "getTotalIncome", QUERY_SAMPLES, WARMUP_RUNS, i -> dbHelper.getTotalIncome());
+        record(report, "getTotalExpense", QUERY_SAMPLES, WARMUP_RUNS, i -> dbHelper.getTotalExpense());
+        record(report, "getExpensesByCategory", QUERY_SAMPLES, WARMUP_RUNS, i -> dbHelper.getExpensesByCategory());
+        record(report, "getIncomeByCategory", QUERY_SAMPLES, WARMUP_RUNS, i -> dbHelper.getIncomeByCategory());
+        record(report, "getReportSnapshot(account)", QUERY_SAMPLES, WARMUP_RUNS,
+                i -> dbHelper.getReportSnapshot(accountId, DateRange.all()));
+        // Month and day aligned periods read the rollups; an unaligned one scans the date index
+        final DateRange lastMonth = ReportPeriod.LAST_MONTH.toRange(END_MILLIS);
+        final DateRange last90Days = ReportPeriod.LAST_90_DAYS.toRange(END_MILLIS);
+        final DateRange lastWeekUnaligned = new DateRange(END_MILLIS - 7 * 24 * 3_600_000L + 1, END_MILLIS);
+        record(report, "getTotalExpense(lastMonth)", QUERY_SAMPLES, WARMUP_RUNS,
+                i -> dbHelper.getTotalExpense(DatabaseHelper.ALL_ACCOUNTS, lastMonth));
+        record(report, "getExpensesByCategory(last90Days)", QUERY_SAMPLES, WARMUP_RUNS,
+                i -> dbHelper.getExpensesByCategory(DatabaseHelper.ALL_ACCOUNTS, last90Days));
+        record(report, "getReportSnapshot(last90Days)", QUERY_SAMPLES, WARMUP_RUNS,
+                i -> dbHelper.getReportSnapshot(DatabaseHelper.ALL_ACCOUNTS, last90Days));
+        record(report, "getReportSnapshot(unalignedWeek)", QUERY_SAMPLES, WARMUP_RUNS,
+                i -> dbHelper.getReportSnapshot(DatabaseHelper.ALL_ACCOUNTS, lastWeekUnaligned));
+        record(report, "searchTransactions", QUERY_SAMPLES, WARMUP_RUNS,
+                i -> dbHelper.searchTransactions("groceries", TransactionFilter.all(), null, 50));
+        record(report, "getTransactionsByAccount", SCAN_SAMPLES, 1, i -> dbHelper.getTransactionsByAccount(accountId));
+        record(report, "getAllTransactions", SCAN_SAMPLES, 1, i -> dbHelper.getAllTransactions());
+    }
+
+    private void record(BenchmarkReport report, String method, int samples, int warmupRuns, Operation operation) {
+        for (int i = 0; i < warmupRuns; i++) {
+            operation.run(i);
+        }
+        long[] nanos = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            operation.run(i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        print(report.add(method, rowCount, nanos));
+    }
+
+    private Transaction newTransaction(String description) {
+        return new Transaction(
+                100 + random.nextInt(100_000),
+                random.nextInt(5) == 0 ? "INCOME" : "EXPENSE",
+                random.nextBoolean() ? "Food" : "Transport",
+                description,
+                START_MILLIS + (long) (random.nextDouble() * (END_MILLIS - START_MILLIS)),
+                accountIds[random.nextInt(ACCOUNT_COUNT)],
+                null);
+    }
+
+    private static void print(BenchmarkReport.Result result) {
+        System.out.println(result);
+    }
+}
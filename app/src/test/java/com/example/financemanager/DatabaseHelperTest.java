@@ -0,0 +1,235 @@
+package com.example.financemanager;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.financemanager.data.DateRange;
+import com.example.financemanager.data.PageKey;
+import com.example.financemanager.data.ReportSnapshot;
+import com.example.financemanager.data.SearchKey;
+import com.example.financemanager.data.SearchPage;
+import com.example.financemanager.data.TransactionFilter;
+import com.example.financemanager.models.Account;
+import com.example.financemanager.models.Transaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that balances and rollups stay consistent with the transactions across writes
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DatabaseHelperTest {
+
+    // 2025-01-31T20:00:00Z, already February 1st in Tokyo
+    private static final long MONTH_END_MILLIS = 1_738_353_600_000L;
+
+    private TimeZone defaultTimeZone;
+    private DatabaseHelper dbHelper;
+    private int accountId;
+
+    @Before
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        // In-memory database
+        dbHelper = new DatabaseHelper(RuntimeEnvironment.getApplication(), null);
+        accountId = (int) dbHelper.addAccount(new Account("Wallet", 0, "Cash", "USD", null));
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    @Test
+    public void deleteAfterTimeZoneChangeEmptiesRollups() {
+        long id = dbHelper.addTransaction(expense(1_500, MONTH_END_MILLIS));
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        assertEquals(1, dbHelper.deleteTransaction((int) id));
+
+        assertEquals(0, rollupRows("rollup_daily"));
+        assertEquals(0, rollupRows("rollup_monthly"));
+    }
+
+    @Test
+    public void updateAfterTimeZoneChangeMovesRollups() {
+        long id = dbHelper.addTransaction(expense(1_500, MONTH_END_MILLIS));
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        Transaction changed = expense(2_000, MONTH_END_MILLIS);
+        changed.setId((int) id);
+        assertEquals(1, dbHelper.updateTransaction(changed));
+
+        // Only the row under the new zone's day and month is left
+        assertEquals(1, rollupRows("rollup_daily"));
+        assertEquals(1, rollupRows("rollup_monthly"));
+        ReportSnapshot snapshot = dbHelper.getReportSnapshot(accountId, DateRange.all());
+        assertEquals(2_000, snapshot.getTotalExpense());
+    }
+
+    @Test
+    public void updateTransactionsAppliesRepeatedIdOnce() {
+        long id = dbHelper.addTransaction(expense(1_500, MONTH_END_MILLIS));
+        Transaction first = expense(2_000, MONTH_END_MILLIS);
+        first.setId((int) id);
+        Transaction last = expense(3_000, MONTH_END_MILLIS);
+        last.setId((int) id);
+
+        assertEquals(1, dbHelper.updateTransactions(Arrays.asList(first, last)));
+
+        assertEquals(-3_000, dbHelper.getAccount(accountId).getBalanceMinor());
+        assertEquals(3_000, dbHelper.getReportSnapshot(accountId, DateRange.all()).getTotalExpense());
+        assertEquals(3_000, dbHelper.getTransaction((int) id).getAmountMinor());
+    }
+
+    @Test
+    public void deleteTransactionsReversesRepeatedIdOnce() {
+        long id = dbHelper.addTransaction(expense(1_500, MONTH_END_MILLIS));
+        // Listed rows are cached, which must not let the repeated id be reversed twice
+        dbHelper.getTransaction((int) id);
+
+        assertEquals(1, dbHelper.deleteTransactions(Arrays.asList((int) id, (int) id)));
+
+        assertEquals(0, dbHelper.getAccount(accountId).getBalanceMinor());
+        assertEquals(0, rollupRows("rollup_daily"));
+    }
+
+    @Test
+    public void updateAccountRefusesCurrencyChangeWithTransactions() {
+        Account account = dbHelper.getAccount(accountId);
+        account.setCurrency("JPY");
+        assertEquals(1, dbHelper.updateAccount(account));
+
+        dbHelper.addTransaction(expense(1_500, MONTH_END_MILLIS));
+        account = dbHelper.getAccount(accountId);
+        account.setCurrency("EUR");
+        assertEquals(0, dbHelper.updateAccount(account));
+        assertEquals("JPY", dbHelper.getAccount(accountId).getCurrency());
+    }
+
+    @Test
+    public void blankCategoriesShareTheUncategorizedRow() {
+        dbHelper.addTransaction(new Transaction(1_000, "EXPENSE", null, "Cash", MONTH_END_MILLIS, accountId, null));
+        dbHelper.addTransaction(new Transaction(2_000, "EXPENSE", "", "Cash", MONTH_END_MILLIS, accountId, null));
+        dbHelper.addTransactions(Arrays.asList(
+                new Transaction(3_000, "EXPENSE", " ", "Cash", MONTH_END_MILLIS, accountId, null)));
+
+        List<DatabaseHelper.CategorySummary> expenses = dbHelper.getExpensesByCategory();
+        assertEquals(1, expenses.size());
+        assertEquals("", expenses.get(0).getCategory());
+        assertEquals(6_000, expenses.get(0).getAmountMinor());
+    }
+
+    @Test
+    public void pagesOfEqualDatesHaveNoGapsOrDuplicates() {
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            expected.add(0, (int) dbHelper.addTransaction(expense(100, MONTH_END_MILLIS)));
+        }
+        int older = (int) dbHelper.addTransaction(expense(100, MONTH_END_MILLIS - 1));
+
+        List<Transaction> page = dbHelper.getTransactionsPage(accountId, null, 3);
+        List<Integer> found = new ArrayList<>();
+        for (Transaction transaction : page) {
+            found.add(transaction.getId());
+        }
+        // A row added on the same date sorts before the cursor, and one dated just before it
+        // lands in a later page
+        dbHelper.addTransaction(expense(100, MONTH_END_MILLIS));
+        int between = (int) dbHelper.addTransaction(expense(100, MONTH_END_MILLIS - 1));
+        expected.add(between);
+        expected.add(older);
+
+        while (!page.isEmpty()) {
+            page = dbHelper.getTransactionsPage(accountId, PageKey.after(page.get(page.size() - 1)), 3);
+            for (Transaction transaction : page) {
+                found.add(transaction.getId());
+            }
+        }
+
+        assertEquals(expected, found);
+    }
+
+    @Test
+    public void matchExpressionQuotesEveryWordAsPrefix() {
+        assertEquals("\"coffee*\"", DatabaseHelper.toMatchExpression("coffee"));
+        // Operators are searched as words
+        assertEquals("\"tea*\" \"OR*\" \"coffee*\"", DatabaseHelper.toMatchExpression("tea OR coffee"));
+        assertEquals("\"NOT*\" \"paid*\"", DatabaseHelper.toMatchExpression("NOT paid"));
+        assertEquals("\"caf\u00e9*\" \"2024*\" \"b*\"",
+                DatabaseHelper.toMatchExpression(" \"caf\u00e9\", 2024-b* "));
+        assertNull(DatabaseHelper.toMatchExpression("-*\" ()"));
+        assertNull(DatabaseHelper.toMatchExpression(null));
+    }
+
+    @Test
+    public void searchPagesContinueAcrossEqualRanks() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // Rows 0, 3 and 6 mention the term twice; the dates repeat in pairs
+            String description = i % 3 == 0 ? "Coffee and coffee beans" : "Coffee";
+            transactions.add(new Transaction(100, "EXPENSE", "Food", description,
+                    MONTH_END_MILLIS + i / 2, accountId, null));
+        }
+        long[] ids = dbHelper.addTransactions(transactions);
+
+        List<Integer> found = new ArrayList<>();
+        SearchKey after = null;
+        SearchPage page;
+        do {
+            page = dbHelper.searchTransactions("coff", TransactionFilter.all(), after, 2);
+            for (Transaction transaction : page.getTransactions()) {
+                found.add(transaction.getId());
+            }
+            after = page.getLastKey();
+        } while (after != null);
+
+        // Twice-mentioned rows first, then each rank newest first with the higher id first on equal dates
+        List<Integer> expected = Arrays.asList((int) ids[6], (int) ids[3], (int) ids[0],
+                (int) ids[5], (int) ids[4], (int) ids[2], (int) ids[1]);
+        assertEquals(expected, found);
+    }
+
+    @Test
+    public void searchRanksOnlyTheNewestMatches() {
+        List<Transaction> transactions = new ArrayList<>();
+        // The oldest row would rank first but falls outside the candidates
+        transactions.add(new Transaction(100, "EXPENSE", "Food", "Coffee coffee", MONTH_END_MILLIS, accountId, null));
+        for (int i = 1; i <= DatabaseHelper.SEARCH_CANDIDATE_LIMIT; i++) {
+            transactions.add(new Transaction(100, "EXPENSE", "Food", "Coffee", MONTH_END_MILLIS + i, accountId, null));
+        }
+        long[] ids = dbHelper.addTransactions(transactions);
+
+        SearchPage page = dbHelper.searchTransactions("coffee", TransactionFilter.all(), null,
+                DatabaseHelper.SEARCH_CANDIDATE_LIMIT + 1);
+
+        assertEquals(DatabaseHelper.SEARCH_CANDIDATE_LIMIT, page.getTransactions().size());
+        assertEquals((int) ids[ids.length - 1], page.getTransactions().get(0).getId());
+    }
+
+    private Transaction expense(long amount, long dateMillis) {
+        return new Transaction(amount, "EXPENSE", "Food", "Dinner", dateMillis, accountId, null);
+    }
+
+    private long rollupRows(String table) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        return DatabaseUtils.queryNumEntries(db, table);
+    }
+}
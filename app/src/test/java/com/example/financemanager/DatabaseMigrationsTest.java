@@ -0,0 +1,308 @@
+package com.example.financemanager;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.financemanager.data.DateRange;
+import com.example.financemanager.data.ReportSnapshot;
+import com.example.financemanager.data.SearchPage;
+import com.example.financemanager.data.TransactionFilter;
+import com.example.financemanager.models.Transaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Upgrades databases written by older versions of the app and checks that the data survives
+ * every migration step with its values converted
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DatabaseMigrationsTest {
+
+    private static final String DATABASE_NAME = "migration_test.db";
+
+    // Schema of the first release, version 2: REAL money, text dates and free-text categories
+    private static final String[] SCHEMA_V2 = {
+            "CREATE TABLE accounts(id INTEGER PRIMARY KEY AUTOINCREMENT,name TEXT,balance REAL,"
+                    + "account_type TEXT,currency TEXT,notes TEXT)",
+            "CREATE TABLE transactions(id INTEGER PRIMARY KEY AUTOINCREMENT,amount REAL,type TEXT,"
+                    + "category TEXT,description TEXT,date TEXT,account_id INTEGER,"
+                    + "FOREIGN KEY(account_id) REFERENCES accounts(id))"
+    };
+
+    // Version 3 adds indexes to the first schema
+    private static final String[] SCHEMA_V3 = {
+            SCHEMA_V2[0],
+            SCHEMA_V2[1],
+            "CREATE INDEX idx_transactions_account_date ON transactions(account_id, date)",
+            "CREATE INDEX idx_transactions_date ON transactions(date)",
+            "CREATE INDEX idx_transactions_type_category ON transactions(type, category, amount)"
+    };
+
+    // Version 4: integer minor units, dates still stored as text
+    private static final String[] SCHEMA_V4 = {
+            "CREATE TABLE accounts(id INTEGER PRIMARY KEY AUTOINCREMENT,name TEXT,"
+                    + "balance INTEGER NOT NULL DEFAULT 0,account_type TEXT,currency TEXT,notes TEXT)",
+            "CREATE TABLE transactions(id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + "amount INTEGER NOT NULL DEFAULT 0,type TEXT,category TEXT,description TEXT,date TEXT,"
+                    + "account_id INTEGER,FOREIGN KEY(account_id) REFERENCES accounts(id))"
+    };
+
+    // Version 5: integer minor units and epoch dates, categories still stored as text
+    private static final String[] SCHEMA_V5 = {
+            "CREATE TABLE accounts(id INTEGER PRIMARY KEY AUTOINCREMENT,name TEXT,"
+                    + "balance INTEGER NOT NULL DEFAULT 0,account_type TEXT,currency TEXT,notes TEXT)",
+            "CREATE TABLE transactions(id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + "amount INTEGER NOT NULL DEFAULT 0,type TEXT,category TEXT,description TEXT,"
+                    + "date INTEGER NOT NULL DEFAULT 0,account_id INTEGER,"
+                    + "FOREIGN KEY(account_id) REFERENCES accounts(id))",
+            "CREATE INDEX idx_transactions_account_date ON transactions(account_id, date)",
+            "CREATE INDEX idx_transactions_date ON transactions(date)",
+            "CREATE INDEX idx_transactions_type_category ON transactions(type, category, amount)"
+    };
+
+    // 2024-03-05T12:30:00Z and 2024-04-01T08:00:00Z
+    private static final long MARCH_5_MILLIS = 1_709_641_800_000L;
+    private static final long APRIL_1_MILLIS = 1_711_958_400_000L;
+
+    private Context context;
+    private TimeZone defaultTimeZone;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (dbHelper != null) {
+            dbHelper.close();
+        }
+        context.deleteDatabase(DATABASE_NAME);
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    @Test
+    public void upgradeFromVersion2KeepsEveryRow() {
+        SQLiteDatabase old = createDatabase(2, SCHEMA_V2);
+        old.execSQL("INSERT INTO accounts (name, balance, account_type, currency, notes) VALUES "
+                + "('Wallet', 12.34, 'Cash', 'USD', 'Daily'), ('Savings', 150000.5, 'Savings', 'IDR', NULL), "
+                + "('Tokyo', 5000.0, 'Cash', 'JPY', NULL), ('Unknown', 7.5, 'Cash', NULL, NULL)");
+        old.execSQL("INSERT INTO transactions (amount, type, category, description, date, account_id) VALUES "
+                + "(19.99, 'EXPENSE', 'Food', 'Ramen dinner', '2024-03-05 12:30:00', 1), "
+                + "(50000.25, 'INCOME', 'Salary', 'March salary', '2024-04-01 08:00:00', 2), "
+                + "(5.5, 'EXPENSE', 'Food', 'Deleted coffee', '2024-04-01 08:00:00', 1)");
+        // The deleted row leaves a gap that the new tables must not reuse
+        old.execSQL("DELETE FROM transactions WHERE id = 3");
+        old.close();
+
+        dbHelper = new DatabaseHelper(context, DATABASE_NAME);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        assertEquals(12, db.getVersion());
+        assertEquals(1234, dbHelper.getAccount(1).getBalanceMinor());
+        assertEquals(15_000_050, dbHelper.getAccount(2).getBalanceMinor());
+        assertEquals(5000, dbHelper.getAccount(3).getBalanceMinor());
+        // Accounts without a currency use the default two decimals
+        assertEquals(750, dbHelper.getAccount(4).getBalanceMinor());
+        assertEquals("Daily", dbHelper.getAccount(1).getNotes());
+
+        Transaction dinner = dbHelper.getTransaction(1);
+        assertEquals(1999, dinner.getAmountMinor());
+        assertEquals(MARCH_5_MILLIS, dinner.getDateMillis());
+        assertEquals("Food", dinner.getCategory());
+        Transaction salary = dbHelper.getTransaction(2);
+        assertEquals(5_000_025, salary.getAmountMinor());
+        assertEquals(APRIL_1_MILLIS, salary.getDateMillis());
+        assertEquals("Salary", salary.getCategory());
+        assertNull(dbHelper.getTransaction(3));
+        assertEquals(longQuery(db, "SELECT id FROM categories WHERE name = 'Food'"),
+                longQuery(db, "SELECT category_id FROM transactions WHERE id = 1"));
+
+        // Opening balances leave out the effect of the existing transactions
+        assertEquals(1234 + 1999, longQuery(db, "SELECT opening_balance FROM accounts WHERE id = 1"));
+        assertEquals(15_000_050 - 5_000_025, longQuery(db, "SELECT opening_balance FROM accounts WHERE id = 2"));
+        assertEquals(5000, longQuery(db, "SELECT opening_balance FROM accounts WHERE id = 3"));
+
+        assertEquals(3, longQuery(db, "SELECT seq FROM sqlite_sequence WHERE name = 'transactions'"));
+        assertEquals(4, dbHelper.addTransaction(new Transaction(100, "EXPENSE", "Food", "Tea",
+                APRIL_1_MILLIS, 1, null)));
+        dbHelper.deleteTransaction(4);
+
+        assertRollupsAndSearch(db);
+    }
+
+    @Test
+    public void upgradeFromVersion3ScalesAmountsByAccountCurrency() {
+        SQLiteDatabase old = createDatabase(3, SCHEMA_V3);
+        old.execSQL("INSERT INTO accounts (name, balance, account_type, currency, notes) VALUES "
+                + "('Tokyo', 5000.0, 'Cash', 'JPY', NULL), ('Savings', 150000.5, 'Savings', 'IDR', NULL), "
+                + "('Wallet', 12.34, 'Cash', 'USD', NULL), ('Unknown', 7.5, 'Cash', NULL, NULL), "
+                + "('Invalid', 1.25, 'Cash', 'DOLLARS', NULL)");
+        old.execSQL("INSERT INTO transactions (amount, type, category, description, date, account_id) VALUES "
+                + "(1200.4, 'EXPENSE', 'Food', 'Ramen', '2024-03-05 12:30:00', 1), "
+                + "(50000.25, 'INCOME', 'Salary', 'Gaji', '2024-03-05 12:30:00', 2), "
+                + "(19.99, 'EXPENSE', 'Food', 'Groceries', '2024-03-05 12:30:00', 3), "
+                + "(2.5, 'EXPENSE', 'Food', 'Cash', '2024-03-05 12:30:00', 4), "
+                + "(0.75, 'EXPENSE', 'Food', 'Snack', '2024-03-05 12:30:00', 5), "
+                + "(3.75, 'EXPENSE', 'Food', 'No account', '2024-03-05 12:30:00', NULL)");
+        old.close();
+
+        dbHelper = new DatabaseHelper(context, DATABASE_NAME);
+
+        // JPY has no minor unit, so the fraction is rounded away
+        assertEquals(5000, dbHelper.getAccount(1).getBalanceMinor());
+        assertEquals(1200, dbHelper.getTransaction(1).getAmountMinor());
+        assertEquals(15_000_050, dbHelper.getAccount(2).getBalanceMinor());
+        assertEquals(5_000_025, dbHelper.getTransaction(2).getAmountMinor());
+        assertEquals(1234, dbHelper.getAccount(3).getBalanceMinor());
+        assertEquals(1999, dbHelper.getTransaction(3).getAmountMinor());
+        // Missing and unknown currencies use two decimals
+        assertEquals(750, dbHelper.getAccount(4).getBalanceMinor());
+        assertEquals(250, dbHelper.getTransaction(4).getAmountMinor());
+        assertEquals(125, dbHelper.getAccount(5).getBalanceMinor());
+        assertEquals(75, dbHelper.getTransaction(5).getAmountMinor());
+        assertEquals(375, DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(),
+                "SELECT amount FROM transactions WHERE id = 6", null));
+    }
+
+    @Test
+    public void textDatesRoundTripInTheDeviceTimeZone() {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Sao_Paulo"));
+        // Dates at UTC-3, under the daylight saving time dropped in 2019, and the last second of a UTC day
+        long[] dates = { MARCH_5_MILLIS, 1_543_665_600_000L, 1_711_929_599_000L };
+        SimpleDateFormat format = new SimpleDateFormat(DatabaseMigrations.TEXT_DATE_PATTERN, Locale.getDefault());
+        SQLiteDatabase old = createDatabase(4, SCHEMA_V4);
+        old.execSQL("INSERT INTO accounts (name, balance, account_type, currency) VALUES ('Wallet', 0, 'Cash', 'USD')");
+        for (long date : dates) {
+            old.execSQL("INSERT INTO transactions (amount, type, category, description, date, account_id) "
+                    + "VALUES (100, 'EXPENSE', 'Food', 'Dinner', ?, 1)", new Object[] { format.format(new Date(date)) });
+        }
+        old.close();
+
+        dbHelper = new DatabaseHelper(context, DATABASE_NAME);
+
+        for (int i = 0; i < dates.length; i++) {
+            assertEquals(dates[i], dbHelper.getTransaction(i + 1).getDateMillis());
+        }
+    }
+
+    @Test
+    public void unreadableDateFailsTheUpgradeAndKeepsTheOldData() {
+        SQLiteDatabase old = createDatabase(4, SCHEMA_V4);
+        old.execSQL("INSERT INTO accounts (name, balance, account_type, currency) VALUES ('Wallet', 0, 'Cash', 'USD')");
+        old.execSQL("INSERT INTO transactions (amount, type, category, description, date, account_id) VALUES "
+                + "(100, 'EXPENSE', 'Food', 'Dinner', '2024-03-05 12:30:00', 1), "
+                + "(200, 'EXPENSE', 'Food', 'Lunch', 'yesterday', 1)");
+        old.close();
+
+        dbHelper = new DatabaseHelper(context, DATABASE_NAME);
+        try {
+            dbHelper.getWritableDatabase();
+            fail("The upgrade should fail on the unreadable date");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("yesterday"));
+        }
+        dbHelper.close();
+        dbHelper = null;
+
+        old = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DATABASE_NAME), null);
+        try {
+            assertEquals(4, old.getVersion());
+            assertEquals("2024-03-05 12:30:00", DatabaseUtils.stringForQuery(old,
+                    "SELECT date FROM transactions WHERE id = 1", null));
+            assertEquals(2, DatabaseUtils.queryNumEntries(old, "transactions"));
+        } finally {
+            old.close();
+        }
+    }
+
+    @Test
+    public void upgradeFromVersion5KeepsEveryRow() {
+        SQLiteDatabase old = createDatabase(5, SCHEMA_V5);
+        old.execSQL("INSERT INTO accounts (name, balance, account_type, currency, notes) VALUES "
+                + "('Wallet', 1234, 'Cash', 'USD', 'Daily'), ('Savings', 15000050, 'Savings', 'IDR', NULL)");
+        old.execSQL("INSERT INTO transactions (amount, type, category, description, date, account_id) VALUES "
+                + "(1999, 'EXPENSE', 'Food', 'Ramen dinner', ?, 1), "
+                + "(5000025, 'INCOME', 'Salary', 'March salary', ?, 2)",
+                new Object[] { MARCH_5_MILLIS, APRIL_1_MILLIS });
+        old.close();
+
+        dbHelper = new DatabaseHelper(context, DATABASE_NAME);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        assertEquals(12, db.getVersion());
+        assertEquals(1234, dbHelper.getAccount(1).getBalanceMinor());
+        assertEquals(1999, dbHelper.getTransaction(1).getAmountMinor());
+        assertEquals(MARCH_5_MILLIS, dbHelper.getTransaction(1).getDateMillis());
+        assertEquals("Salary", dbHelper.getTransaction(2).getCategory());
+        assertEquals(1234 + 1999, longQuery(db, "SELECT opening_balance FROM accounts WHERE id = 1"));
+
+        assertRollupsAndSearch(db);
+    }
+
+    /**
+     * Check the rollups and search index rebuilt from the migrated dinner and salary rows
+     */
+    private void assertRollupsAndSearch(SQLiteDatabase db) {
+        assertEquals(2, DatabaseUtils.queryNumEntries(db, "rollup_daily"));
+        assertEquals(2, DatabaseUtils.queryNumEntries(db, "rollup_monthly"));
+        assertEquals(20240305, longQuery(db, "SELECT period FROM rollup_daily WHERE account_id = 1"));
+        assertEquals(202404, longQuery(db, "SELECT period FROM rollup_monthly WHERE account_id = 2"));
+        ReportSnapshot snapshot = dbHelper.getReportSnapshot(DatabaseHelper.ALL_ACCOUNTS, DateRange.all());
+        assertEquals(1999, snapshot.getTotalExpense());
+        assertEquals(5_000_025, snapshot.getTotalIncome());
+
+        assertEquals(2, DatabaseUtils.queryNumEntries(db, "transactions_fts"));
+        assertSearchFinds("ramen", 1);
+        assertSearchFinds("salary", 2);
+        // Category names are indexed along with the descriptions
+        assertSearchFinds("food", 1);
+    }
+
+    private void assertSearchFinds(String query, int transactionId) {
+        SearchPage page = dbHelper.searchTransactions(query, TransactionFilter.all(), null, 10);
+        assertEquals(1, page.getTransactions().size());
+        assertEquals(transactionId, page.getTransactions().get(0).getId());
+    }
+
+    /**
+     * Create the database file as an older version of the app left it
+     */
+    private SQLiteDatabase createDatabase(int version, String[] schema) {
+        File file = context.getDatabasePath(DATABASE_NAME);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        for (String statement : schema) {
+            db.execSQL(statement);
+        }
+        db.setVersion(version);
+        return db;
+    }
+
+    private static long longQuery(SQLiteDatabase db, String sql) {
+        return DatabaseUtils.longForQuery(db, sql, null);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.financemanager.data;
+
+import com.example.financemanager.models.Transaction;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that generated ledgers are reproducible and cover what load tests rely on
+ */
+public class LedgerGeneratorTest {
+
+    private static final long END_MILLIS = 1_767_225_599_000L; // 2025-12-31T23:59:59Z
+    private static final long START_MILLIS = 1_672_531_200_000L; // 2023-01-01T00:00:00Z
+    private static final int[] ACCOUNT_IDS = { 1, 2, 3 };
+
+    @Test
+    public void sameSeedGivesSameLedger() {
+        List<Transaction> first = generate(7, 25_000);
+        List<Transaction> second = generate(7, 25_000);
+
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            Transaction a = first.get(i);
+            Transaction b = second.get(i);
+            assertEquals(a.getAmountMinor(), b.getAmountMinor());
+            assertEquals(a.getType(), b.getType());
+            assertEquals(a.getCategory(), b.getCategory());
+            assertEquals(a.getDescription(), b.getDescription());
+            assertEquals(a.getDateMillis(), b.getDateMillis());
+            assertEquals(a.getAccountId(), b.getAccountId());
+        }
+    }
+
+    @Test
+    public void generatesRequestedCountWithinRange() {
+        Set<String> categories = new HashSet<>();
+        Set<Integer> accounts = new HashSet<>();
+        List<Transaction> transactions = generate(42, 12_345);
+
+        assertEquals(12_345, transactions.size());
+        for (Transaction transaction : transactions) {
+            assertTrue(transaction.getDateMillis() >= START_MILLIS);
+            assertTrue(transaction.getDateMillis() <= END_MILLIS);
+            assertTrue(transaction.getAmountMinor() > 0);
+            categories.add(transaction.getCategory());
+            accounts.add(transaction.getAccountId());
+        }
+        // Recurring transactions and the spending mix
+        assertTrue(categories.contains("Salary"));
+        assertTrue(categories.contains("Rent"));
+        assertTrue(categories.contains("Food"));
+        assertEquals(ACCOUNT_IDS.length, accounts.size());
+    }
+
+    @Test
+    public void batchesAreBounded() {
+        List<Integer> sizes = new ArrayList<>();
+        new LedgerGenerator(1, ACCOUNT_IDS.length, 36, END_MILLIS)
+                .generateTransactions(ACCOUNT_IDS, 2 * LedgerGenerator.BATCH_SIZE + 1, batch -> sizes.add(batch.size()));
+
+        int total = 0;
+        for (int size : sizes) {
+            assertTrue(size <= LedgerGenerator.BATCH_SIZE);
+            total += size;
+        }
+        assertEquals(2 * LedgerGenerator.BATCH_SIZE + 1, total);
+    }
+
+    private static List<Transaction> generate(long seed, int count) {
+        List<Transaction> transactions = new ArrayList<>();
+        new LedgerGenerator(seed, ACCOUNT_IDS.length, 36, END_MILLIS)
+                .generateTransactions(ACCOUNT_IDS, count, transactions::addAll);
+        return transactions;
+    }
+}
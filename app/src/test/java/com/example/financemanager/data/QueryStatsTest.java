@@ -0,0 +1,118 @@
+package com.example.financemanager.data;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the latency histogram, its percentiles and the slow query ring buffer
+ */
+public class QueryStatsTest {
+
+    @Test
+    public void callsLandInTheBucketOfTheirLatency() {
+        QueryStats stats = new QueryStats();
+        // 300 us is above the 250 us bound and within the 500 us one
+        stats.record("getAccounts", startedMicrosAgo(300), 3, "SELECT 1", 0);
+        stats.record("getAccounts", startedMicrosAgo(300), 2, "SELECT 1", 0);
+
+        QueryStats.MethodSummary summary = stats.snapshot().getMethods().get(0);
+        assertEquals("getAccounts", summary.getMethod());
+        assertEquals(2, summary.getCalls());
+        assertEquals(5, summary.getRows());
+        long[] buckets = summary.getBuckets();
+        assertEquals(QueryStats.BUCKET_BOUNDS_MICROS.length + 1, buckets.length);
+        assertEquals(2, buckets[bucketOf(500)]);
+        assertTrue(summary.getMaxNanos() >= 300_000);
+    }
+
+    @Test
+    public void percentilesReportTheBucketBound() {
+        QueryStats stats = new QueryStats();
+        for (int i = 0; i < 9; i++) {
+            stats.record("getTransaction", startedMicrosAgo(2_000), 1, null, 1);
+        }
+        stats.record("getTransaction", startedMicrosAgo(20_000), 1, null, 1);
+
+        QueryStats.MethodSummary summary = stats.snapshot().getMethods().get(0);
+        assertEquals(2_500, summary.getPercentileMicros(0.5));
+        assertEquals(2_500, summary.getPercentileMicros(0.9));
+        // The highest bucket is capped at the slowest call
+        assertEquals(summary.getMaxNanos() / 1000, summary.getPercentileMicros(0.99));
+    }
+
+    @Test
+    public void slowLogKeepsTheNewestCalls() {
+        QueryStats stats = new QueryStats();
+        stats.setSlowQueryMillis(0);
+        int calls = QueryStats.SLOW_LOG_SIZE + 5;
+        for (int i = 0; i < calls; i++) {
+            stats.record("call" + i, startedMicrosAgo(10), i, "SELECT " + i, 0);
+        }
+
+        QueryStatsSnapshot snapshot = stats.snapshot();
+        List<QueryStats.SlowQuery> slowQueries = snapshot.getSlowQueries();
+        assertEquals(calls, snapshot.getSlowQueryCount());
+        assertEquals(QueryStats.SLOW_LOG_SIZE, slowQueries.size());
+        assertEquals("call" + (calls - 1), slowQueries.get(0).getMethod());
+        assertEquals("call5", slowQueries.get(slowQueries.size() - 1).getMethod());
+        assertEquals("SELECT 5", slowQueries.get(slowQueries.size() - 1).getSql());
+    }
+
+    @Test
+    public void fastCallsStayOutOfTheSlowLog() {
+        QueryStats stats = new QueryStats();
+        stats.record("addTransaction", startedMicrosAgo(10), 1, null, 7);
+        stats.record("getAllTransactions", startedMicrosAgo(60_000), 100, "SELECT * FROM transactions", 0);
+
+        List<QueryStats.SlowQuery> slowQueries = stats.snapshot().getSlowQueries();
+        assertEquals(1, slowQueries.size());
+        assertEquals("getAllTransactions", slowQueries.get(0).getMethod());
+    }
+
+    @Test
+    public void nothingIsRecordedWhileDisabled() {
+        QueryStats stats = new QueryStats();
+        stats.record("getAccounts", stats.start(), 1, "SELECT 1", 0);
+        assertTrue(stats.snapshot().getMethods().isEmpty());
+
+        stats.setEnabled(true);
+        stats.record("getAccounts", stats.start(), 1, "SELECT 1", 0);
+        assertEquals(1, stats.snapshot().getMethods().size());
+    }
+
+    @Test
+    public void resetClearsMethodsAndSlowLog() {
+        QueryStats stats = new QueryStats();
+        stats.setSlowQueryMillis(0);
+        stats.record("getAccounts", startedMicrosAgo(10), 1, null, 0);
+        stats.reset();
+
+        QueryStatsSnapshot snapshot = stats.snapshot();
+        assertTrue(snapshot.getMethods().isEmpty());
+        assertTrue(snapshot.getSlowQueries().isEmpty());
+        assertEquals(0, snapshot.getSlowQueryCount());
+        stats.record("getAccounts", startedMicrosAgo(10), 1, null, 0);
+        assertNull(stats.snapshot().getSlowQueries().get(0).getSql());
+    }
+
+    /**
+     * @return Start time of a call that has been running for the given time
+     */
+    private static long startedMicrosAgo(long micros) {
+        return System.nanoTime() - micros * 1000;
+    }
+
+    private static int bucketOf(long boundMicros) {
+        for (int i = 0; i < QueryStats.BUCKET_BOUNDS_MICROS.length; i++) {
+            if (QueryStats.BUCKET_BOUNDS_MICROS[i] == boundMicros) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No bucket ends at " + boundMicros);
+    }
+}
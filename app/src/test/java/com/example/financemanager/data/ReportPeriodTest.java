@@ -0,0 +1,72 @@
+package com.example.financemanager.data;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that report periods cover the expected days and line up with the rollup periods
+ */
+public class ReportPeriodTest {
+
+    private static final long NOW_MILLIS = 1_741_262_400_000L; // 2025-03-06T12:00:00Z
+
+    @Test
+    public void monthPeriodsStartAndEndOnMonths() {
+        PeriodKeys periodKeys = new PeriodKeys();
+        for (ReportPeriod period : new ReportPeriod[] { ReportPeriod.THIS_MONTH, ReportPeriod.LAST_MONTH, ReportPeriod.THIS_YEAR }) {
+            DateRange range = period.toRange(NOW_MILLIS);
+            assertTrue(period.name(), periodKeys.isStartOfMonth(range.getFromMillis()));
+            assertTrue(period.name(), periodKeys.isStartOfMonth(range.getToMillis()));
+        }
+        DateRange lastMonth = ReportPeriod.LAST_MONTH.toRange(NOW_MILLIS);
+        assertEquals(periodKeys.month(NOW_MILLIS), periodKeys.month(lastMonth.getToMillis()));
+        assertEquals(1, periodKeys.month(lastMonth.getToMillis()) - periodKeys.month(lastMonth.getFromMillis()));
+    }
+
+    @Test
+    public void dayPeriodsEndAfterToday() {
+        PeriodKeys periodKeys = new PeriodKeys();
+        DateRange range = ReportPeriod.LAST_90_DAYS.toRange(NOW_MILLIS);
+
+        assertTrue(periodKeys.isStartOfDay(range.getFromMillis()));
+        assertTrue(periodKeys.isStartOfDay(range.getToMillis()));
+        assertTrue(range.getFromMillis() <= NOW_MILLIS && NOW_MILLIS < range.getToMillis());
+        assertEquals(90, daysBetween(range.getFromMillis(), range.getToMillis()));
+        assertEquals(30, daysBetween(ReportPeriod.LAST_30_DAYS.toRange(NOW_MILLIS).getFromMillis(), range.getToMillis()));
+    }
+
+    @Test
+    public void customDaysIncludeTheLastDay() {
+        long day = 24 * 60 * 60 * 1000L;
+        DateRange range = ReportPeriod.days(NOW_MILLIS + 2 * day, NOW_MILLIS);
+
+        assertTrue(range.getFromMillis() <= NOW_MILLIS);
+        assertTrue(range.getToMillis() > NOW_MILLIS + 2 * day);
+        assertEquals(3, daysBetween(range.getFromMillis(), range.getToMillis()));
+    }
+
+    @Test
+    public void allTimeIsUnbounded() {
+        assertTrue(ReportPeriod.ALL_TIME.toRange(NOW_MILLIS).isAll());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void customHasNoPresetDates() {
+        ReportPeriod.CUSTOM.toRange(NOW_MILLIS);
+    }
+
+    private static int daysBetween(long fromMillis, long toMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(fromMillis);
+        int days = 0;
+        while (calendar.getTimeInMillis() < toMillis) {
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            days++;
+        }
+        return days;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.financemanager.data;
+
+import com.example.financemanager.models.Transaction;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that reads racing a write never cache the old row, and the cache counters
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class TransactionCacheTest {
+
+    @Test
+    public void readStartedBeforeWriteDoesNotCacheOldRow() {
+        TransactionCache cache = new TransactionCache(TransactionCache.DEFAULT_MAX_ENTRIES);
+        long token = cache.beginRead();
+        // The write commits while the query is still reading the old row
+        cache.beginWrite();
+        cache.endWrite(Collections.singletonList(1));
+        cache.putAll(token, Collections.singletonList(row(1, 1_500)));
+
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void readStartedDuringWriteDoesNotCacheRows() {
+        TransactionCache cache = new TransactionCache(TransactionCache.DEFAULT_MAX_ENTRIES);
+        cache.beginWrite();
+        long token = cache.beginRead();
+        cache.endWrite(Collections.singletonList(1));
+        cache.putAll(token, Collections.singletonList(row(1, 1_500)));
+        assertEquals(0, cache.size());
+
+        // A read started after the write fills the cache
+        token = cache.beginRead();
+        cache.putAll(token, Collections.singletonList(row(1, 2_000)));
+        assertEquals(2_000, cache.get(1).getAmountMinor());
+    }
+
+    @Test
+    public void countersTrackHitsMissesAndEvictions() {
+        TransactionCache cache = new TransactionCache(2);
+        cache.putAll(cache.beginRead(), Arrays.asList(row(1, 100), row(2, 200), row(3, 300)));
+
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.maxSize());
+        assertEquals(1, cache.evictionCount());
+        // The least recently added row was evicted
+        assertNull(cache.get(1));
+        assertEquals(300, cache.get(3).getAmountMinor());
+        assertEquals(200, cache.get(2).getAmountMinor());
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+
+        // Removals by a write are not evictions
+        cache.beginWrite();
+        cache.endWrite(Collections.singletonList(2));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void cachedRowsAreCopies() {
+        TransactionCache cache = new TransactionCache(TransactionCache.DEFAULT_MAX_ENTRIES);
+        Transaction read = row(1, 100);
+        cache.putAll(cache.beginRead(), Collections.singletonList(read));
+        read.setAmountMinor(500);
+        cache.get(1).setAmountMinor(900);
+
+        assertEquals(100, cache.get(1).getAmountMinor());
+    }
+
+    private static Transaction row(int id, long amount) {
+        return new Transaction(id, amount, "EXPENSE", "Food", "Dinner", 0, 1, "Wallet");
+    }
+}